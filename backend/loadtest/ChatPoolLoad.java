@@ -0,0 +1,135 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives concurrent POST /api/chats/{id}/messages and samples the Hikari pool while they run.
+ *
+ * Start the backend with simulated LLM latency and compare runs, e.g.
+ *   PROMPTLINE_LLM_NOOP_LATENCY_MS=0    -> run
+ *   PROMPTLINE_LLM_NOOP_LATENCY_MS=500  -> run
+ *   PROMPTLINE_LLM_NOOP_LATENCY_MS=2000 -> run
+ * hikaricp.connections.active / .pending should stay flat while request latency grows.
+ *
+ *   java backend/loadtest/ChatPoolLoad.java --backend http://localhost:8080 --concurrency 50 --requests 500
+ */
+public class ChatPoolLoad {
+
+    private static final Pattern VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+]+)");
+    private static final Pattern CHAT_ID = Pattern.compile("\"chatId\"\\s*:\\s*\"([0-9a-f-]+)\"");
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> a = parseArgs(argv);
+        String backend = a.getOrDefault("backend", "http://localhost:8080");
+        int concurrency = Integer.parseInt(a.getOrDefault("concurrency", "50"));
+        int requests = Integer.parseInt(a.getOrDefault("requests", "500"));
+
+        HttpClient http = HttpClient.newHttpClient();
+
+        List<String> chats = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) chats.add(createChat(http, backend));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<double[]> samples = new ArrayList<>();
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (running.get()) {
+                double active = metric(http, backend, "hikaricp.connections.active");
+                double pending = metric(http, backend, "hikaricp.connections.pending");
+                synchronized (samples) { samples.add(new double[]{active, pending}); }
+                try { Thread.sleep(100); } catch (InterruptedException e) { return; }
+            }
+        });
+
+        long[] latenciesMs = new long[requests];
+        int[] failures = {0};
+        long t0 = System.nanoTime();
+        try (ExecutorService pool = Executors.newFixedThreadPool(concurrency)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                int n = i;
+                futures.add(pool.submit(() -> {
+                    long start = System.nanoTime();
+                    boolean ok = sendMessage(http, backend, chats.get(n % chats.size()), "load message " + n);
+                    latenciesMs[n] = (System.nanoTime() - start) / 1_000_000;
+                    if (!ok) synchronized (failures) { failures[0]++; }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        }
+        long wallMs = (System.nanoTime() - t0) / 1_000_000;
+        running.set(false);
+        sampler.join();
+
+        java.util.Arrays.sort(latenciesMs);
+        double maxActive = 0, sumActive = 0, maxPending = 0;
+        synchronized (samples) {
+            for (double[] s : samples) {
+                maxActive = Math.max(maxActive, s[0]);
+                maxPending = Math.max(maxPending, s[1]);
+                sumActive += s[0];
+            }
+        }
+
+        System.out.printf("requests=%d concurrency=%d failures=%d wall=%d ms%n", requests, concurrency, failures[0], wallMs);
+        System.out.printf("request latency p50=%d ms p99=%d ms%n",
+                latenciesMs[requests / 2], latenciesMs[Math.min(requests - 1, (int) Math.ceil(requests * 0.99) - 1)]);
+        System.out.printf("hikari active avg=%.2f max=%.0f, pending max=%.0f (%d samples)%n",
+                samples.isEmpty() ? 0 : sumActive / samples.size(), maxActive, maxPending, samples.size());
+    }
+
+    private static String createChat(HttpClient http, String backend) throws Exception {
+        HttpResponse<String> res = http.send(
+                HttpRequest.newBuilder(URI.create(backend + "/api/chats"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher m = CHAT_ID.matcher(res.body());
+        if (!m.find()) throw new IllegalStateException("unexpected create chat response: " + res.body());
+        return m.group(1);
+    }
+
+    private static boolean sendMessage(HttpClient http, String backend, String chatId, String content) {
+        try {
+            HttpResponse<String> res = http.send(
+                    HttpRequest.newBuilder(URI.create(backend + "/api/chats/" + chatId + "/messages"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"" + content + "\"}"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return res.statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static double metric(HttpClient http, String backend, String name) {
+        try {
+            HttpResponse<String> res = http.send(
+                    HttpRequest.newBuilder(URI.create(backend + "/actuator/metrics/" + name)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = VALUE.matcher(res.body());
+            return m.find() ? Double.parseDouble(m.group(1)) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i + 1 < argv.length; i += 2) {
+            out.put(argv[i].replaceFirst("^--", ""), argv[i + 1]);
+        }
+        return out;
+    }
+}
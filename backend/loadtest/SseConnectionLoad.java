@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Opens many idle SSE connections against /events and measures:
+ * - backend memory per connection (actuator jvm.memory.used + jvm.buffer.memory.used delta)
+ * - broadcast latency p50/p99 from POST /internal/config-updated to receipt on every connection
+ *
+ * Run (JDK 21, no build needed):
+ *   java backend/loadtest/SseConnectionLoad.java \
+ *     --port 8081 --connections 100000 --source-ips 4 \
+ *     --backend http://localhost:8080 --token "$INTERNAL_NOTIFY_TOKEN"
+ *
+ * A single source IP only has ~28k ephemeral ports; --source-ips spreads connections over
+ * 127.0.0.1..127.0.0.N. Raise the open-file limit first (ulimit -n 200000), on both sides.
+ */
+public class SseConnectionLoad {
+
+    private static final Pattern SEQ = Pattern.compile("lt-(\\d+)");
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> a = parseArgs(argv);
+        String host = a.getOrDefault("host", "127.0.0.1");
+        int port = Integer.parseInt(a.getOrDefault("port", "8081"));
+        String path = a.getOrDefault("path", "/events");
+        int connections = Integer.parseInt(a.getOrDefault("connections", "100000"));
+        int sourceIps = Integer.parseInt(a.getOrDefault("source-ips", "4"));
+        String backend = a.getOrDefault("backend", "http://localhost:8080");
+        String token = a.getOrDefault("token", "");
+        int broadcasts = Integer.parseInt(a.getOrDefault("broadcasts", "50"));
+        long intervalMs = Long.parseLong(a.getOrDefault("interval-ms", "200"));
+
+        HttpClient http = HttpClient.newHttpClient();
+        long memBefore = backendMemory(http, backend);
+
+        Selector selector = Selector.open();
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\nAccept: text/event-stream\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        AtomicLong connected = new AtomicLong();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            SocketChannel ch = SocketChannel.open();
+            ch.configureBlocking(false);
+            ch.bind(new InetSocketAddress("127.0.0." + (1 + i % sourceIps), 0));
+            ch.connect(new InetSocketAddress(host, port));
+            ch.register(selector, SelectionKey.OP_CONNECT, new Conn(ByteBuffer.wrap(request)));
+
+            // keep the accept backlog bounded
+            if (i % 1000 == 999) pump(selector, 10, null, connected);
+        }
+        while (connected.get() < connections && elapsedMs(t0) < 120_000) {
+            pump(selector, 100, null, connected);
+        }
+        System.out.printf("connected %d/%d in %d ms%n", connected.get(), connections, elapsedMs(t0));
+
+        Thread.sleep(5000); // let the backend settle before sampling
+        long memAfter = backendMemory(http, backend);
+        if (memBefore >= 0 && memAfter >= 0 && connected.get() > 0) {
+            System.out.printf("backend memory: %.1f KiB per connection (%d -> %d bytes)%n",
+                    (memAfter - memBefore) / 1024.0 / connected.get(), memBefore, memAfter);
+        }
+
+        long[] sentAt = new long[broadcasts];
+        int[] histogramMs = new int[60_001];
+        long expected = (long) broadcasts * connected.get();
+        long[] received = {0};
+
+        for (int seq = 0; seq < broadcasts; seq++) {
+            sentAt[seq] = System.nanoTime();
+            String body = "{\"env\":\"loadtest\",\"updated\":[],\"version\":\"lt-" + seq + "\"}";
+            HttpRequest req = HttpRequest.newBuilder(URI.create(backend + "/internal/config-updated"))
+                    .header("Content-Type", "application/json")
+                    .header("X-Internal-Token", token)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            http.sendAsync(req, HttpResponse.BodyHandlers.discarding());
+
+            long until = System.nanoTime() + intervalMs * 1_000_000;
+            while (System.nanoTime() < until) {
+                pump(selector, 10, (s) -> record(s, sentAt, histogramMs, received), connected);
+            }
+        }
+        long drainStart = System.nanoTime();
+        while (received[0] < expected && elapsedMs(drainStart) < 30_000) {
+            pump(selector, 50, (s) -> record(s, sentAt, histogramMs, received), connected);
+        }
+
+        System.out.printf("received %d/%d broadcast deliveries%n", received[0], expected);
+        System.out.printf("broadcast latency p50=%d ms p99=%d ms max=%d ms%n",
+                percentile(histogramMs, received[0], 0.50),
+                percentile(histogramMs, received[0], 0.99),
+                percentile(histogramMs, received[0], 1.0));
+    }
+
+    private static final class Conn {
+        final ByteBuffer out;
+        String carry = "";
+
+        Conn(ByteBuffer out) { this.out = out; }
+    }
+
+    private interface SeqSink { void accept(int seq); }
+
+    private static void pump(Selector selector, long timeoutMs, SeqSink sink, AtomicLong connected) throws IOException {
+        selector.select(timeoutMs);
+        ByteBuffer buf = ByteBuffer.allocate(16 * 1024);
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            SocketChannel ch = (SocketChannel) key.channel();
+            Conn c = (Conn) key.attachment();
+            try {
+                if (key.isConnectable() && ch.finishConnect()) {
+                    ch.write(c.out);
+                    key.interestOps(SelectionKey.OP_READ);
+                    connected.incrementAndGet();
+                } else if (key.isReadable()) {
+                    buf.clear();
+                    int n = ch.read(buf);
+                    if (n < 0) {
+                        key.cancel();
+                        ch.close();
+                        continue;
+                    }
+                    String text = c.carry + new String(buf.array(), 0, n, StandardCharsets.UTF_8);
+                    if (sink != null) {
+                        Matcher m = SEQ.matcher(text);
+                        int lastEnd = 0;
+                        while (m.find()) {
+                            // a match touching the end may still be growing; keep it for the next read
+                            if (m.end() == text.length()) break;
+                            sink.accept(Integer.parseInt(m.group(1)));
+                            lastEnd = m.end();
+                        }
+                        text = text.substring(lastEnd);
+                    }
+                    c.carry = text.length() > 32 ? text.substring(text.length() - 32) : text;
+                }
+            } catch (IOException e) {
+                key.cancel();
+                ch.close();
+            }
+        }
+    }
+
+    private static void record(int seq, long[] sentAt, int[] histogramMs, long[] received) {
+        if (seq < 0 || seq >= sentAt.length) return;
+        int ms = (int) Math.min(histogramMs.length - 1, (System.nanoTime() - sentAt[seq]) / 1_000_000);
+        histogramMs[ms]++;
+        received[0]++;
+    }
+
+    private static long percentile(int[] histogramMs, long total, double q) {
+        if (total == 0) return -1;
+        long target = (long) Math.ceil(total * q);
+        long seen = 0;
+        for (int i = 0; i < histogramMs.length; i++) {
+            seen += histogramMs[i];
+            if (seen >= target) return i;
+        }
+        return histogramMs.length - 1;
+    }
+
+    private static long backendMemory(HttpClient http, String backend) {
+        long heap = metric(http, backend, "jvm.memory.used");
+        long buffers = metric(http, backend, "jvm.buffer.memory.used");
+        return (heap < 0 || buffers < 0) ? -1 : heap + buffers;
+    }
+
+    private static long metric(HttpClient http, String backend, String name) {
+        try {
+            HttpResponse<String> res = http.send(
+                    HttpRequest.newBuilder(URI.create(backend + "/actuator/metrics/" + name)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+]+)").matcher(res.body());
+            return m.find() ? (long) Double.parseDouble(m.group(1)) : -1;
+        } catch (Exception e) {
+            System.err.println("metric " + name + " unavailable: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i + 1 < argv.length; i += 2) {
+            out.put(argv[i].replaceFirst("^--", ""), argv[i + 1]);
+        }
+        return out;
+    }
+}
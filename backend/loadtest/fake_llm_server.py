@@ -0,0 +1,166 @@
+#!/usr/bin/env python3
+"""
+Local stand-in for an OpenAI-compatible /chat/completions endpoint (OpenRouter shape).
+
+- answers the router / title / plan / reply / one-shot prompts with canned but valid JSON
+- supports "stream": true (server-sent chunks, one word per chunk, then [DONE])
+- returns a usage block so token accounting can be exercised
+- injects failures (--error-rate) and slow responses (--slow-rate / --slow-ms) for routing tests
+- appends prose after JSON answers (--json-trailer-words) to exercise early stream abort
+
+Run:
+  python3 backend/loadtest/fake_llm_server.py --port 9099 --token-delay-ms 30
+
+Point the backend at it:
+  PROMPTLINE_LLM_PROVIDER=openrouter OPENROUTER_BASE_URL=http://localhost:9099 \
+  OPENROUTER_API_KEY=dummy PROMPTLINE_LLM_STREAMING=true
+"""
+import argparse
+import json
+import random
+import time
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+ARGS = None
+
+PLAN = {
+    "planVersion": "v1",
+    "intent": "runtime_config_change",
+    "env": "live",
+    "summary": "Set UI theme to dark",
+    "requiresConfirmation": True,
+    "changes": [{"target": "ui", "op": "set", "path": "theme", "value": "dark"}],
+}
+
+
+def answer_for(system_prompt, user_prompt):
+    s = system_prompt.lower()
+    if "combined response" in s:
+        wants_plan = "set " in user_prompt.lower()
+        out = {"proposePlan": wants_plan}
+        if "set \"title\"" in s:
+            out["title"] = "Stand in chat title"
+        if wants_plan:
+            out["plan"] = PLAN
+        else:
+            out["reply"] = "One-shot stand-in reply from the local fake LLM server."
+        return json.dumps(out)
+    if "router" in s:
+        return json.dumps({"proposePlan": "set " in user_prompt.lower()})
+    if "chat title" in s:
+        return json.dumps({"title": "Stand in chat title"})
+    if "plan json" in s:
+        return json.dumps(PLAN)
+    if "plain text" in s:
+        return "This is a streamed stand-in reply from the local fake LLM server."
+    return json.dumps({"reply": "Stand-in reply from the local fake LLM server."})
+
+
+class Handler(BaseHTTPRequestHandler):
+    protocol_version = "HTTP/1.1"
+
+    def log_message(self, fmt, *args):
+        if ARGS.verbose:
+            super().log_message(fmt, *args)
+
+    def do_POST(self):
+        if not self.path.endswith("/chat/completions"):
+            self.send_error(404)
+            return
+
+        length = int(self.headers.get("Content-Length", "0"))
+        req = json.loads(self.rfile.read(length) or b"{}")
+        messages = req.get("messages", [])
+        system = next((m["content"] for m in messages if m.get("role") == "system"), "")
+        user = next((m["content"] for m in reversed(messages) if m.get("role") == "user"), "")
+        content = answer_for(system, user)
+        if ARGS.json_trailer_words and content.startswith("{"):
+            content += "\n\nExplanation:" + " lorem" * ARGS.json_trailer_words
+
+        if random.random() < ARGS.error_rate:
+            body = json.dumps({"error": {"message": "injected failure", "code": ARGS.error_status}}).encode()
+            self.send_response(ARGS.error_status)
+            self.send_header("Content-Type", "application/json")
+            self.send_header("Content-Length", str(len(body)))
+            self.end_headers()
+            self.wfile.write(body)
+            return
+
+        if ARGS.latency_ms:
+            time.sleep(ARGS.latency_ms / 1000.0)
+        if ARGS.slow_ms and random.random() < ARGS.slow_rate:
+            time.sleep(ARGS.slow_ms / 1000.0)
+
+        usage = {
+            "prompt_tokens": sum(len(m.get("content", "")) for m in messages) // 4,
+            "completion_tokens": max(1, len(content) // 4),
+        }
+        usage["total_tokens"] = usage["prompt_tokens"] + usage["completion_tokens"]
+
+        try:
+            if req.get("stream"):
+                self.stream(req, content, usage)
+            else:
+                self.complete(req, content, usage)
+        except (BrokenPipeError, ConnectionResetError):
+            pass  # client aborted (e.g. cancelled or early-abort); nothing to do
+
+    def complete(self, req, content, usage):
+        body = json.dumps({
+            "id": "fake-1",
+            "model": req.get("model", "fake"),
+            "choices": [{"index": 0, "message": {"role": "assistant", "content": content}, "finish_reason": "stop"}],
+            "usage": usage,
+        }).encode()
+        self.send_response(200)
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(body)))
+        self.end_headers()
+        self.wfile.write(body)
+
+    def stream(self, req, content, usage):
+        self.send_response(200)
+        self.send_header("Content-Type", "text/event-stream")
+        self.send_header("Cache-Control", "no-cache")
+        self.send_header("Connection", "close")
+        self.end_headers()
+        self.close_connection = True
+
+        self.wfile.write(b": OPENROUTER PROCESSING\n\n")
+        words = content.split(" ")
+        for i, w in enumerate(words):
+            delta = w if i == 0 else " " + w
+            chunk = {"model": req.get("model", "fake"), "choices": [{"index": 0, "delta": {"content": delta}}]}
+            self.wfile.write(("data: " + json.dumps(chunk) + "\n\n").encode())
+            self.wfile.flush()
+            if ARGS.token_delay_ms:
+                time.sleep(ARGS.token_delay_ms / 1000.0)
+
+        final = {"model": req.get("model", "fake"), "choices": [], "usage": usage}
+        self.wfile.write(("data: " + json.dumps(final) + "\n\n").encode())
+        self.wfile.write(b"data: [DONE]\n\n")
+        self.wfile.flush()
+
+
+def main():
+    global ARGS
+    p = argparse.ArgumentParser()
+    p.add_argument("--port", type=int, default=9099)
+    p.add_argument("--latency-ms", type=int, default=0, help="delay before the first byte")
+    p.add_argument("--token-delay-ms", type=int, default=30, help="delay between streamed chunks")
+    p.add_argument("--error-rate", type=float, default=0.0, help="fraction of requests answered with --error-status")
+    p.add_argument("--error-status", type=int, default=500)
+    p.add_argument("--slow-rate", type=float, default=0.0, help="fraction of requests delayed by --slow-ms")
+    p.add_argument("--slow-ms", type=int, default=0)
+    p.add_argument("--json-trailer-words", type=int, default=0,
+                   help="words of prose after JSON answers (a streamed plan should stop before them)")
+    p.add_argument("--verbose", action="store_true")
+    ARGS = p.parse_args()
+
+    server = ThreadingHTTPServer(("127.0.0.1", ARGS.port), Handler)
+    print(f"fake LLM server on http://127.0.0.1:{ARGS.port}")
+    server.serve_forever()
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+# Three local stand-in endpoints with different health for RoutingLlmClient:
+#   9101 healthy and fast, 9102 slow tail, 9103 failing half the time.
+# Start the backend with the printed env, drive traffic (e.g. ChatPoolLoad.java) and watch
+#   /actuator/metrics/llm.endpoint.calls, llm.endpoint.latency.ewma, llm.endpoint.ejected
+# Ctrl-C stops all three servers.
+set -euo pipefail
+DIR="$(cd "$(dirname "$0")" && pwd)"
+
+python3 "$DIR/fake_llm_server.py" --port 9101 --latency-ms 50 &
+python3 "$DIR/fake_llm_server.py" --port 9102 --latency-ms 50 --slow-rate 0.3 --slow-ms 2000 &
+python3 "$DIR/fake_llm_server.py" --port 9103 --latency-ms 50 --error-rate 0.5 &
+trap 'kill $(jobs -p) 2>/dev/null' EXIT
+
+cat <<ENV
+PROMPTLINE_LLM_PROVIDER=openrouter
+OPENROUTER_API_KEY=dummy
+PROMPTLINE_LLM_ENDPOINTS_0_NAME=fast      PROMPTLINE_LLM_ENDPOINTS_0_BASEURL=http://127.0.0.1:9101
+PROMPTLINE_LLM_ENDPOINTS_1_NAME=slow      PROMPTLINE_LLM_ENDPOINTS_1_BASEURL=http://127.0.0.1:9102
+PROMPTLINE_LLM_ENDPOINTS_2_NAME=flaky     PROMPTLINE_LLM_ENDPOINTS_2_BASEURL=http://127.0.0.1:9103
+ENV
+wait
@@ -1,15 +1,23 @@
 package com.promptline.backend;
 
+import com.promptline.backend.chat.PromptlineChatProperties;
+import com.promptline.backend.http.PromptlineHttpProperties;
 import com.promptline.backend.llm.PromptlineLlmProperties;
 import com.promptline.backend.mcp.PromptlineMcpProperties;
+import com.promptline.backend.sse.PromptlineSseProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @EnableConfigurationProperties({
+        PromptlineChatProperties.class,
+        PromptlineHttpProperties.class,
         PromptlineLlmProperties.class,
-        PromptlineMcpProperties.class
+        PromptlineMcpProperties.class,
+        PromptlineSseProperties.class
 })
 public class PromptlineBackendApplication {
     public static void main(String[] args) {
@@ -6,15 +6,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/chats")
 public class ChatController {
 
     private final ChatService service;
+    private final MessageSubmissions submissions;
 
-    public ChatController(ChatService service) {
+    public ChatController(ChatService service, MessageSubmissions submissions) {
         this.service = service;
+        this.submissions = submissions;
     }
 
     @PostMapping
@@ -24,8 +27,11 @@ public class ChatController {
     }
 
     @GetMapping
-    public List<ChatEntity> listChats() {
-        return service.listChats();
+    public ChatPage listChats(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor
+    ) {
+        return service.listChats(limit, cursor);
     }
 
     @GetMapping("/{chatId}/messages")
@@ -34,21 +40,25 @@ public class ChatController {
     }
 
     @PostMapping("/{chatId}/messages")
-    public Map<String, Object> sendMessage(
+    public CompletableFuture<Map<String, Object>> sendMessage(
             @PathVariable UUID chatId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody Map<String, String> body
     ) {
         String content = body.get("content");
         if (content == null || content.isBlank()) {
-            return Map.of("status", "error", "message", "content is required");
+            return CompletableFuture.completedFuture(Map.of("status", "error", "message", "content is required"));
         }
 
-        PlanProposedResponse out = service.addUserMessageAuto(chatId, content);
-
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("assistantMessage", out.assistantMessage());
-        resp.put("plan", out.plan()); // null is fine here
-        resp.put("status", "ok");
-        return resp;
+        // the servlet thread is released while the turn waits on the LLM;
+        // a retry / double click gets the original turn instead of starting another
+        return submissions.submit(chatId, idempotencyKey, content,
+                () -> service.addUserMessageAutoAsync(chatId, content)).thenApply(out -> {
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("assistantMessage", out.assistantMessage());
+            resp.put("plan", out.plan()); // null is fine here
+            resp.put("status", "ok");
+            return resp;
+        });
     }
 }
@@ -1,11 +1,18 @@
 package com.promptline.backend.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chats")
+@Table(
+    name = "chats",
+    indexes = {
+        // chat list: newest first, keyset on (updated_at, id); see ChatRepository.findPage*
+        @Index(name = "idx_chats_updated_id", columnList = "updated_at desc, id desc")
+    }
+)
 public class ChatEntity {
 
     @Id
@@ -24,6 +31,22 @@ public class ChatEntity {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    // Rolling summary of the messages up to (summary_through_at, summary_through_id); see ChatSummarizer.
+    // Written only by ChatRepository.updateSummary: updatable = false keeps a turn that saves this
+    // entity from writing back a summary it read before a concurrent fold.
+    @Column(columnDefinition = "text", updatable = false)
+    private String summary;
+
+    @Column(name = "summary_through_at", updatable = false)
+    private Instant summaryThroughAt;
+
+    @Column(name = "summary_through_id", columnDefinition = "uuid", updatable = false)
+    private UUID summaryThroughId;
+
+    @Column(name = "summary_messages", nullable = false, updatable = false,
+            columnDefinition = "integer not null default 0")
+    private int summaryMessages;
+
     protected ChatEntity() {}
 
     @PrePersist
@@ -45,6 +68,12 @@ public class ChatEntity {
     public Instant getCreatedAt() { return createdAt; }
     public Instant getUpdatedAt() { return updatedAt; }
 
+    // prompt-side state, not part of the chat API
+    @JsonIgnore public String getSummary() { return summary; }
+    @JsonIgnore public Instant getSummaryThroughAt() { return summaryThroughAt; }
+    @JsonIgnore public UUID getSummaryThroughId() { return summaryThroughId; }
+    @JsonIgnore public int getSummaryMessages() { return summaryMessages; }
+
     public void setTitle(String title) { this.title = title; }
     public void setFirstUserMessage(String firstUserMessage) { this.firstUserMessage = firstUserMessage; }
     public void touch() { this.updatedAt = Instant.now(); }
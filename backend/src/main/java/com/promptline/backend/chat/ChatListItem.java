@@ -0,0 +1,7 @@
+package com.promptline.backend.chat;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** One row of the chat list (GET /api/chats); read as a projection, not the entity. */
+public record ChatListItem(UUID id, String title, Instant updatedAt) {}
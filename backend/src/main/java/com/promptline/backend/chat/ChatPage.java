@@ -0,0 +1,6 @@
+package com.promptline.backend.chat;
+
+import java.util.List;
+
+/** A page of the chat list; nextCursor is null on the last page. */
+public record ChatPage(List<ChatListItem> chats, String nextCursor) {}
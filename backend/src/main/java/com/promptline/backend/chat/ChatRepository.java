@@ -1,8 +1,53 @@
 package com.promptline.backend.chat;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 public interface ChatRepository extends JpaRepository<ChatEntity, UUID> {
+
+  // Chat list pages, newest first: first page, then keyset after the last row. The row comparison
+  // matches the index order, so each page is one range scan on idx_chats_updated_id.
+  @Query("""
+    select new com.promptline.backend.chat.ChatListItem(c.id, c.title, c.updatedAt)
+    from ChatEntity c
+    order by c.updatedAt desc, c.id desc
+  """)
+  List<ChatListItem> findPage(Pageable page);
+
+  @Query("""
+    select new com.promptline.backend.chat.ChatListItem(c.id, c.title, c.updatedAt)
+    from ChatEntity c
+    where (c.updatedAt, c.id) < (:afterAt, :afterId)
+    order by c.updatedAt desc, c.id desc
+  """)
+  List<ChatListItem> findPageAfter(@Param("afterAt") Instant afterAt,
+                                   @Param("afterId") UUID afterId,
+                                   Pageable page);
+
+  /*
+   * Bulk update on purpose: it bypasses @PreUpdate, so summarizing does not bump updated_at
+   * (chat list order). Only applies if nobody folded messages since `expectedMessages` was read.
+   */
+  @Modifying
+  @Query("""
+    update ChatEntity c
+    set c.summary = :summary,
+        c.summaryThroughAt = :throughAt,
+        c.summaryThroughId = :throughId,
+        c.summaryMessages = c.summaryMessages + :folded
+    where c.id = :chatId
+      and c.summaryMessages = :expectedMessages
+  """)
+  int updateSummary(@Param("chatId") UUID chatId,
+                    @Param("summary") String summary,
+                    @Param("throughAt") Instant throughAt,
+                    @Param("throughId") UUID throughId,
+                    @Param("folded") int folded,
+                    @Param("expectedMessages") int expectedMessages);
 }
-    
\ No newline at end of file
@@ -1,55 +1,162 @@
 package com.promptline.backend.chat;
 
+import com.promptline.backend.llm.AsyncLlmClient;
 import com.promptline.backend.llm.LlmClient;
+import com.promptline.backend.llm.OneShotReply;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import com.promptline.backend.llm.usage.LlmCallContext;
 import com.promptline.backend.mcp.McpPlanService;
 import com.promptline.backend.mcp.PlanEntity;
+import com.promptline.backend.mcp.PlanOrigin;
+import com.promptline.backend.mcp.plan.PlanCompiler;
+import com.promptline.backend.mcp.plan.PlanParser;
+import com.promptline.backend.mcp.plan.PlanTemplateCache;
+import com.promptline.backend.mcp.plan.PlanValidator;
+import com.promptline.backend.outbox.EventOutbox;
+import com.promptline.backend.sse.SseHub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import com.promptline.backend.sse.SseHub;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Map;
 
+/**
+ * Chat pipeline. Every message runs as:
+ * 1) short transaction: persist the user message, snapshot what the LLM needs
+ * 2) LLM calls with no transaction and no pooled connection held
+ * 3) short transaction: persist the assistant message / plan and enqueue events
+ */
 @Service
 public class ChatService {
 
     private final ChatRepository chatRepo;
     private final MessageRepository messageRepo;
+    private final ConversationContextBuilder contextBuilder;
+    private final ChatSummarizer summarizer;
+    private final PlanTemplateCache planTemplates;
+    private final PlanCompiler planCompiler;
     private final LlmClient llm;
+    private final AsyncLlmClient asyncLlm;
     private final McpPlanService mcpPlanService;
+    private final EventOutbox outbox;
+    private final TransactionTemplate tx;
     private final SseHub hub;
     private final ObjectMapper om;
-
+    private final boolean streaming;
+    private final boolean speculative;
+    private final boolean oneShot;
+    private final PlanParser planParser;
+    private final PlanValidator planValidator = new PlanValidator();
+    // largest chat list page (GET /api/chats?limit=)
+    private static final int MAX_CHAT_PAGE = 200;
+    // Turns started through addUserMessageAutoAsync; one virtual thread each
+    private final ExecutorService turnExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Snapshot taken in step 1; everything the LLM calls need, detached from the session
+    private record Turn(UUID chatId, String chatTitle, boolean needsTitle, List<String> history, String userContent) {}
+
+    // Plan JSON plus where it came from (recorded on the plans row)
+    private record PlanDraft(String json, PlanOrigin origin, UUID templateSourceId) {}
 
     public ChatService(
             ChatRepository chatRepo,
             MessageRepository messageRepo,
+            ConversationContextBuilder contextBuilder,
+            ChatSummarizer summarizer,
+            PlanTemplateCache planTemplates,
+            PlanCompiler planCompiler,
             LlmClient llm,
+            AsyncLlmClient asyncLlm,
             McpPlanService mcpPlanService,
+            EventOutbox outbox,
+            TransactionTemplate tx,
             SseHub hub,
-            ObjectMapper om
+            ObjectMapper om,
+            PromptlineLlmProperties llmProps
     ) {
         this.chatRepo = chatRepo;
         this.messageRepo = messageRepo;
+        this.contextBuilder = contextBuilder;
+        this.summarizer = summarizer;
+        this.planTemplates = planTemplates;
+        this.planCompiler = planCompiler;
         this.llm = llm;
+        this.asyncLlm = asyncLlm;
         this.mcpPlanService = mcpPlanService;
+        this.outbox = outbox;
+        this.tx = tx;
         this.hub = hub;
         this.om = om;
+        this.streaming = llmProps.isStreaming();
+        this.speculative = llmProps.isSpeculative();
+        this.oneShot = llmProps.isOneShot();
+        this.planParser = new PlanParser(om);
         System.out.println("LLM client wired: " + llm.getClass().getName());
     }
 
 
+    @PreDestroy
+    public void shutdown() {
+        turnExecutor.shutdownNow();
+    }
+
     public ChatEntity createChat() {
         return chatRepo.save(new ChatEntity());
     }
 
-    public List<ChatEntity> listChats() {
-        return chatRepo.findAll()
-                .stream()
-                .sorted((a, b) -> b.getUpdatedAt().compareTo(a.getUpdatedAt()))
-                .toList();
+    /**
+     * One page of the chat list, most recently updated first. `cursor` is the nextCursor of the
+     * previous page (null for the first); pages are keyset reads on idx_chats_updated_id, so the
+     * cost does not grow with the number of chats or with how far the client has scrolled.
+     */
+    @Transactional(readOnly = true)
+    public ChatPage listChats(int limit, String cursor) {
+        int size = Math.max(1, Math.min(limit, MAX_CHAT_PAGE));
+        // one extra row tells whether there is a next page
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<ChatListItem> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = chatRepo.findPage(page);
+        } else {
+            ChatListItem after = decodeCursor(cursor);
+            rows = chatRepo.findPageAfter(after.updatedAt(), after.id(), page);
+        }
+
+        if (rows.size() <= size) return new ChatPage(rows, null);
+        rows = rows.subList(0, size);
+        return new ChatPage(rows, encodeCursor(rows.get(size - 1)));
+    }
+
+    // opaque to clients: base64url("<updatedAt>|<id>") of the last row of a page
+    private static String encodeCursor(ChatListItem last) {
+        String raw = last.updatedAt() + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ChatListItem decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new ChatListItem(UUID.fromString(raw.substring(sep + 1)), null, Instant.parse(raw.substring(0, sep)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     @Transactional(readOnly = true)
@@ -59,20 +166,139 @@ public class ChatService {
 
     // ---- Router entrypoint (the key change) ----
 
-    @Transactional
     public PlanProposedResponse addUserMessageAuto(UUID chatId, String userContent) {
-        ChatEntity chat = chatRepo.findById(chatId)
-                .orElseThrow(() -> new IllegalArgumentException("Chat not found"));
+        // LLM usage records made during this turn are attributed to the chat
+        return LlmCallContext.withChat(chatId, () -> routeTurn(beginTurn(chatId, userContent)));
+    }
 
-        List<String> history = buildHistory(chatId, 20);
+    /**
+     * addUserMessageAuto on a virtual thread, so the servlet thread is released while the turn
+     * waits on the database and the LLM (ChatController returns the future).
+     */
+    public CompletableFuture<PlanProposedResponse> addUserMessageAutoAsync(UUID chatId, String userContent) {
+        return CompletableFuture.supplyAsync(() -> addUserMessageAuto(chatId, userContent), turnExecutor);
+    }
+
+    private PlanProposedResponse routeTurn(Turn turn) {
+        // A confirmed plan for an equivalent request, or a request the compiler can parse,
+        // settles the turn: no router, no plan call. Looked up once; the draft is reused as is.
+        PlanDraft local = localPlan(turn);
+        if (local != null) {
+            return proposePlan(turn, local, local.origin() == PlanOrigin.TEMPLATE ? TurnRoute.TEMPLATE : TurnRoute.COMPILED);
+        }
 
-        boolean proposePlan = this.llm.shouldProposePlan(chat.getTitle(), history, userContent);
+        if (oneShot) {
+            PlanProposedResponse res = tryOneShot(turn);
+            if (res != null) return res;
+        }
+
+        if (speculative) {
+            return speculate(turn);
+        }
+
+        boolean proposePlan = this.llm.shouldProposePlan(turn.chatTitle(), turn.history(), turn.userContent());
 
         if (proposePlan) {
-            return addUserMessageAndProposePlan(chatId, userContent);
+            // routeTurn already tried the template / compiler, so the LLM writes the plan
+            return proposePlan(turn, null, routerRoute());
         } else {
-            MessageEntity assistant = addUserMessageAndRespond(chatId, userContent);
-            return new PlanProposedResponse(assistant, null);
+            return respond(turn, routerRoute());
+        }
+    }
+
+    /** Who answered shouldProposePlan in this turn: the intent classifier or the LLM router. */
+    private static TurnRoute routerRoute() {
+        return LlmCallContext.routedWithoutLlm() ? TurnRoute.CLASSIFIER : TurnRoute.LLM;
+    }
+
+    /**
+     * One combined LLM call instead of router + title + reply/plan. Any unusable output
+     * (no combined mode, unparsable JSON, a plan that fails PlanValidator) returns null and
+     * the caller runs the multi-call path for this turn.
+     */
+    private PlanProposedResponse tryOneShot(Turn turn) {
+        OneShotReply r = this.llm.respondOneShot(turn.chatTitle(), turn.history(), turn.userContent(), turn.needsTitle());
+        if (r == null) {
+            System.out.println("One-shot LLM output unusable, falling back to separate calls");
+            return null;
+        }
+
+        if (r.proposePlan()) {
+            List<String> errs;
+            try {
+                errs = planValidator.validate(planParser.parse(r.planJson()));
+            } catch (Exception e) {
+                errs = List.of("unparsable plan: " + e.getMessage());
+            }
+            if (!errs.isEmpty()) {
+                System.out.println("One-shot plan rejected (" + String.join("; ", errs) + "), falling back to separate calls");
+                return null;
+            }
+        }
+
+        String title = null;
+        if (turn.needsTitle()) {
+            title = (r.title() == null || r.title().isBlank()) ? generateTitleFallback(turn.userContent()) : r.title();
+        }
+
+        if (r.proposePlan()) {
+            return persistPlan(turn, title, new PlanDraft(r.planJson(), PlanOrigin.LLM, null), TurnRoute.LLM);
+        }
+
+        // The combined answer is a JSON envelope, so it cannot stream; publish it as a single delta
+        UUID messageId = UUID.randomUUID();
+        if (streaming) {
+            DeltaBatcher deltas = deltaPublisher(turn.chatId(), messageId);
+            deltas.accept(r.reply());
+            deltas.flush();
+        }
+        return persistReply(turn, title, messageId, r.reply(), TurnRoute.LLM);
+    }
+
+    /**
+     * Title, router, plan and reply all start at once (AsyncLlmClient). The router decides
+     * which branch wins; the other one is cancelled (the interrupt aborts its HTTP request)
+     * and its output never reaches the database or the hub. Persistence then runs exactly as
+     * in the sequential path, so the stored result does not depend on which call finished first.
+     *
+     * Plan/reply prompts use the title the chat had before this turn: on a first message the
+     * new title is derived from that same message, so it adds nothing to those prompts.
+     */
+    private PlanProposedResponse speculate(Turn turn) {
+        UUID messageId = UUID.randomUUID();
+        DeltaBatcher batcher = deltaPublisher(turn.chatId(), messageId);
+        GatedDeltas deltas = new GatedDeltas(batcher);
+
+        // routeTurn already took local plans (template / compiler), so the plan branch is the LLM's
+        CompletableFuture<String> titleF = turn.needsTitle()
+                ? asyncLlm.generateTitleFromFirstUserMessage(turn.userContent())
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Boolean> routerF = asyncLlm.shouldProposePlan(turn.chatTitle(), turn.history(), turn.userContent());
+        CompletableFuture<String> planF = asyncLlm.generatePlanJson(turn.chatTitle(), turn.history(), turn.userContent());
+        CompletableFuture<String> replyF = streaming
+                ? asyncLlm.streamAssistantReply(turn.chatTitle(), turn.userContent(), deltas)
+                : asyncLlm.generateAssistantReply(turn.chatTitle(), turn.userContent());
+
+        try {
+            boolean proposePlan = routerF.get();
+            if (proposePlan) {
+                replyF.cancel(true);
+                return persistPlan(turn, titleOrFallback(turn, titleF.get()), planOrPlaceholder(planF.get()),
+                        routerRoute());
+            }
+            planF.cancel(true);
+            deltas.open(); // replay what the reply streamed so far, then go live
+            String reply = replyOrFallback(replyF.get());
+            batcher.flush();
+            return persistReply(turn, titleOrFallback(turn, titleF.get()), messageId, reply, routerRoute());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the LLM", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } finally {
+            // no-op for completed branches; stops anything still running after a failure
+            for (CompletableFuture<?> f : List.of(titleF, routerF, planF, replyF)) f.cancel(true);
         }
     }
 
@@ -86,29 +312,49 @@ public class ChatService {
      * - save assistant message (content = plan JSON)
      * - persist plans row + tool_calls placeholders
      */
-    @Transactional
     public PlanProposedResponse addUserMessageAndProposePlan(UUID chatId, String userContent) {
-        ChatEntity chat = chatRepo.findById(chatId)
-                .orElseThrow(() -> new IllegalArgumentException("Chat not found"));
-
-        // 1) Save user message
-        MessageEntity userMsg = new MessageEntity();
-        userMsg.setChat(chat);
-        userMsg.setRole("user");
-        userMsg.setContent(userContent);
-        messageRepo.save(userMsg);
+        return LlmCallContext.withChat(chatId, () -> {
+            Turn turn = beginTurn(chatId, userContent);
+            return proposePlan(turn, localPlan(turn), TurnRoute.DIRECT);
+        });
+    }
 
-        // 2) Title once
-        ensureTitle(chat, userContent);
+    /**
+     * @param localPlan a template or compiled plan (see localPlan), or null to have the LLM
+     *                  generate the plan
+     */
+    private PlanProposedResponse proposePlan(Turn turn, PlanDraft localPlan, TurnRoute route) {
+        // Title once
+        String title = resolveTitle(turn);
+
+        PlanDraft plan = localPlan != null
+                ? localPlan
+                : planOrPlaceholder(this.llm.generatePlanJson(title != null ? title : turn.chatTitle(),
+                        turn.history(), turn.userContent()));
+        return persistPlan(turn, title, plan, route);
+    }
 
-        chat.touch();
-        chatRepo.save(chat);
+    /**
+     * A plan without the LLM: a confirmed template when one matches, else a compiled plan for
+     * plain "set X to Y" requests; null otherwise.
+     */
+    private PlanDraft localPlan(Turn turn) {
+        PlanTemplateCache.Match template = planTemplates.lookup(turn.userContent());
+        if (template != null) {
+            System.out.printf("Plan reused from confirmed plan %s (similarity %.2f)%n",
+                    template.sourcePlanId(), template.similarity());
+            return new PlanDraft(template.planJson(), PlanOrigin.TEMPLATE, template.sourcePlanId());
+        }
 
-        // 3) Build history (for regen / context)
-        List<String> history = buildHistory(chatId, 20);
+        String compiled = planCompiler.compileJson(turn.userContent());
+        if (compiled != null) {
+            return new PlanDraft(compiled, PlanOrigin.COMPILED, null);
+        }
+        return null;
+    }
 
-        // 4) Generate plan JSON (RAW JSON string)
-        String planJson = this.llm.generatePlanJson(chat.getTitle(), history, userContent);
+    // the LLM's plan JSON (RAW JSON string), or a placeholder plan when it returned nothing
+    private PlanDraft planOrPlaceholder(String planJson) {
         if (planJson == null || planJson.isBlank()) {
             planJson = """
                 {
@@ -121,37 +367,46 @@ public class ChatService {
                 }
                 """.trim();
         }
+        return new PlanDraft(planJson, PlanOrigin.LLM, null);
+    }
 
-        // 5) Save assistant message (store JSON as message content)
-        MessageEntity assistant = new MessageEntity();
-        assistant.setChat(chat);
-        assistant.setRole("assistant");
-        assistant.setContent(planJson);
-        assistant = messageRepo.save(assistant);
+    private PlanProposedResponse persistPlan(Turn turn, String title, PlanDraft draft, TurnRoute route) {
+        PlanProposedResponse res = tx.execute(status -> {
+            ChatEntity chat = loadChat(turn.chatId());
+            if (title != null) chat.setTitle(title);
 
-        chat.touch();
-        chatRepo.save(chat);
+            // Save assistant message (store JSON as message content)
+            MessageEntity assistant = new MessageEntity();
+            assistant.setChat(chat);
+            assistant.setRole("assistant");
+            assistant.setContent(draft.json());
+            assistant.setRoutedBy(route);
+            assistant = messageRepo.save(assistant);
 
-        // 6) Persist plans + tool_calls placeholders
-        // Supersede any older proposed plan(s) for this chat
-        mcpPlanService.supersedeAllProposed(chatId);
+            chat.touch();
+            chatRepo.save(chat);
 
-        PlanEntity plan = mcpPlanService.createProposedPlan(chat, assistant, planJson);
+            // Persist plans + tool_calls placeholders
+            // Supersede any older proposed plan(s) for this chat
+            mcpPlanService.supersedeAllProposed(turn.chatId());
 
-        try {
-            hub.broadcast("PLAN_PROPOSED", om.writeValueAsString(Map.of(
-                    "chatId", chatId.toString(),
+            PlanEntity plan = mcpPlanService.createProposedPlan(chat, assistant, draft.json(),
+                    turn.userContent(), draft.origin(), draft.templateSourceId());
+
+            // Published by the outbox dispatcher only once this transaction commits
+            outbox.enqueue(turn.chatId(), "PLAN_PROPOSED", Map.of(
+                    "chatId", turn.chatId().toString(),
                     "planId", plan.getId().toString(),
                     "status", plan.getStatus().name(),
+                    "origin", draft.origin().name(),
                     "summary", plan.getProposalJson().path("summary").asText(""),
                     "changes", plan.getProposalJson().path("changes")
-            )));
-        } catch (Exception e) {
-            // never break chat flow due to SSE
-            System.err.println("PLAN_PROPOSED broadcast failed: " + e.getMessage());
-        }
+            ));
 
-        return new PlanProposedResponse(assistant, plan);
+            return new PlanProposedResponse(assistant, plan);
+        });
+        summarizer.onMessagesAdded(turn.chatId());
+        return res;
     }
 
     // ---- Normal chat ----
@@ -163,54 +418,124 @@ public class ChatService {
      * - generates assistant reply via LLM
      * - saves assistant message
      */
-    @Transactional
     public MessageEntity addUserMessageAndRespond(UUID chatId, String userContent) {
-        ChatEntity chat = chatRepo.findById(chatId)
-                .orElseThrow(() -> new IllegalArgumentException("Chat not found"));
+        return LlmCallContext.withChat(chatId, () -> respond(beginTurn(chatId, userContent), TurnRoute.DIRECT)).assistantMessage();
+    }
 
-        // 1) Save user message
-        MessageEntity userMsg = new MessageEntity();
-        userMsg.setChat(chat);
-        userMsg.setRole("user");
-        userMsg.setContent(userContent);
-        messageRepo.save(userMsg);
+    private PlanProposedResponse respond(Turn turn, TurnRoute route) {
+        // Title once
+        String title = resolveTitle(turn);
 
-        // 2) Title once
-        ensureTitle(chat, userContent);
+        UUID messageId = UUID.randomUUID();
+        DeltaBatcher deltas = deltaPublisher(turn.chatId(), messageId);
+        String reply = generateReply(turn, title != null ? title : turn.chatTitle(), deltas);
+        deltas.flush();
+        return persistReply(turn, title, messageId, reply, route);
+    }
 
-        chat.touch();
-        chatRepo.save(chat);
+    /** Assistant reply (streamed to onDelta when enabled; persisted once complete). */
+    private String generateReply(Turn turn, String chatTitle, Consumer<String> onDelta) {
+        return replyOrFallback(streaming
+                ? this.llm.streamAssistantReply(chatTitle, turn.userContent(), onDelta)
+                : this.llm.generateAssistantReply(chatTitle, turn.userContent()));
+    }
 
-        // 3) Assistant reply
-        String reply = this.llm.generateAssistantReply(chat.getTitle(), userContent);
+    private String replyOrFallback(String reply) {
         if (reply == null || reply.isBlank()) {
             reply = "⚠️ LLM returned an empty response";
         }
+        return reply;
+    }
+
+    private PlanProposedResponse persistReply(Turn turn, String title, UUID messageId, String content, TurnRoute route) {
+        MessageEntity assistant = tx.execute(status -> {
+            ChatEntity chat = loadChat(turn.chatId());
+            if (title != null) chat.setTitle(title);
+
+            // Save assistant message
+            MessageEntity msg = new MessageEntity();
+            if (streaming) msg.setId(messageId); // deltas were already published under this id
+            msg.setChat(chat);
+            msg.setRole("assistant");
+            msg.setContent(content);
+            msg.setRoutedBy(route);
+
+            chat.touch();
+            chatRepo.save(chat);
+
+            return messageRepo.save(msg);
+        });
+        summarizer.onMessagesAdded(turn.chatId());
+        return new PlanProposedResponse(assistant, null);
+    }
+
+    // ---- helpers ----
+
+    /**
+     * Step 1: save the user message and snapshot the chat. History is taken before
+     * the new message so it is not repeated next to UserRequest in prompts.
+     */
+    private Turn beginTurn(UUID chatId, String userContent) {
+        return tx.execute(status -> {
+            ChatEntity chat = loadChat(chatId);
+
+            List<String> history = contextBuilder.build(chat);
+
+            MessageEntity userMsg = new MessageEntity();
+            userMsg.setChat(chat);
+            userMsg.setRole("user");
+            userMsg.setContent(userContent);
+            messageRepo.save(userMsg);
 
-        // 4) Save assistant message
-        MessageEntity assistant = new MessageEntity();
-        assistant.setChat(chat);
-        assistant.setRole("assistant");
-        assistant.setContent(reply);
+            boolean needsTitle = chat.getFirstUserMessage() == null;
+            if (needsTitle) chat.setFirstUserMessage(userContent);
 
-        chat.touch();
-        chatRepo.save(chat);
+            chat.touch();
+            chatRepo.save(chat);
 
-        return messageRepo.save(assistant);
+            return new Turn(chatId, chat.getTitle(), needsTitle, history, userContent);
+        });
     }
 
-    // ---- helpers ----
+    /**
+     * Token deltas are transient and high-frequency, and the complete message is persisted (and
+     * returned) once the stream finishes, so they are batched (DeltaBatcher) and sent only to
+     * this node's connections subscribed to the chat: no bus, no replay log. Clients on
+     * other nodes see the reply once it is complete (POST response / chat reload).
+     */
+    private DeltaBatcher deltaPublisher(UUID chatId, UUID messageId) {
+        return new DeltaBatcher((index, delta) -> {
+            try {
+                hub.deliverToChat(chatId, "MESSAGE_DELTA", om.writeValueAsString(Map.of(
+                        "chatId", chatId.toString(),
+                        "messageId", messageId.toString(),
+                        "index", index,
+                        "delta", delta
+                )));
+            } catch (Exception e) {
+                // never break chat flow due to SSE
+                System.err.println("MESSAGE_DELTA delivery failed: " + e.getMessage());
+            }
+        });
+    }
 
-    private void ensureTitle(ChatEntity chat, String userContent) {
-        if (chat.getFirstUserMessage() != null) return;
+    private ChatEntity loadChat(UUID chatId) {
+        return chatRepo.findById(chatId)
+                .orElseThrow(() -> new IllegalArgumentException("Chat not found"));
+    }
 
-        chat.setFirstUserMessage(userContent);
+    /** Generated title for the first message of a chat, or null when the chat already has one. */
+    private String resolveTitle(Turn turn) {
+        if (!turn.needsTitle()) return null;
+        return titleOrFallback(turn, this.llm.generateTitleFromFirstUserMessage(turn.userContent()));
+    }
 
-        String generatedTitle = this.llm.generateTitleFromFirstUserMessage(userContent);
+    private String titleOrFallback(Turn turn, String generatedTitle) {
+        if (!turn.needsTitle()) return null;
         if (generatedTitle == null || generatedTitle.isBlank()) {
-            generatedTitle = generateTitleFallback(userContent);
+            return generateTitleFallback(turn.userContent());
         }
-        chat.setTitle(generatedTitle);
+        return generatedTitle;
     }
 
     private String generateTitleFallback(String content) {
@@ -218,22 +543,5 @@ public class ChatService {
         if (cleaned.isBlank()) return "New chat";
         return cleaned.length() <= 42 ? cleaned : cleaned.substring(0, 42) + "…";
     }
-    private List<String> buildHistory(UUID chatId, int max) {
-        return messageRepo.findMessagesForChat(chatId).stream()
-                .filter(m -> {
-                    if (!"assistant".equals(m.getRole())) return true;
-                    return !isPlanJson(m.getContent());
-                })
-                .limit(max)
-                .map(m -> m.getRole() + ": " + m.getContent())
-                .toList();
-    }
-
-    private boolean isPlanJson(String content) {
-        if (content == null) return false;
-        return content.contains("\"planVersion\"")
-                && content.contains("\"intent\"")
-                && content.contains("\"changes\"");
-    }
 
 }
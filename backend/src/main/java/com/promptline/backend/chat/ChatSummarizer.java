@@ -0,0 +1,124 @@
+package com.promptline.backend.chat;
+
+import com.promptline.backend.llm.LlmClient;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import com.promptline.backend.llm.usage.LlmCallContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps ChatEntity.summary rolling: once `every` messages beyond the newest `keepRecent` are
+ * not covered by the summary, the oldest of them are folded into it with one fast-model call,
+ * and the summary marker moves to the last folded message. ConversationContextBuilder then
+ * sends summary + the messages after the marker, so prompts stop growing with the chat.
+ *
+ * Runs off the request path (one virtual thread per chat, at most one at a time per chat).
+ * A trigger that arrives while that chat is being folded is dropped; the next message
+ * re-checks. The write is conditional on summary_messages, so a concurrent fold on another
+ * replica loses instead of overwriting.
+ *
+ * Metrics: llm.summary.runs{result=updated|conflict|failed}.
+ */
+@Component
+public class ChatSummarizer {
+
+    private static final UUID NIL = new UUID(0, 0);
+
+    private final ChatRepository chatRepo;
+    private final MessageRepository messageRepo;
+    private final LlmClient llm;
+    private final TransactionTemplate tx;
+    private final PromptlineLlmProperties.Summary cfg;
+    private final int maxMessageTokens;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    private final Counter updated;
+    private final Counter conflict;
+    private final Counter failed;
+
+    private record Fold(String previous, int expectedMessages, List<MessageLine> lines) {}
+
+    public ChatSummarizer(ChatRepository chatRepo, MessageRepository messageRepo, LlmClient llm,
+                          TransactionTemplate tx, PromptlineLlmProperties llmProps, MeterRegistry registry) {
+        this.chatRepo = chatRepo;
+        this.messageRepo = messageRepo;
+        this.llm = llm;
+        this.tx = tx;
+        this.cfg = llmProps.getSummary();
+        this.maxMessageTokens = llmProps.getContext().getMaxMessageTokens();
+        this.updated = Counter.builder("llm.summary.runs").tag("result", "updated").register(registry);
+        this.conflict = Counter.builder("llm.summary.runs").tag("result", "conflict").register(registry);
+        this.failed = Counter.builder("llm.summary.runs").tag("result", "failed").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Called after a turn is persisted; cheap when there is nothing to fold. */
+    public void onMessagesAdded(UUID chatId) {
+        if (!cfg.isEnabled() || !running.add(chatId)) return;
+        executor.submit(() -> {
+            try {
+                LlmCallContext.withChat(chatId, () -> {
+                    summarize(chatId);
+                    return null;
+                });
+            } catch (Exception e) {
+                failed.increment();
+                System.err.println("Chat summary failed for " + chatId + ": " + e.getMessage());
+            } finally {
+                running.remove(chatId);
+            }
+        });
+    }
+
+    private void summarize(UUID chatId) {
+        Fold fold = tx.execute(status -> pending(chatId));
+        if (fold == null) return;
+
+        List<String> lines = fold.lines().stream()
+                .map(m -> m.role() + ": " + ConversationContextBuilder.clip(m.content(), maxMessageTokens))
+                .toList();
+        String summary = llm.summarizeConversation(fold.previous(), lines, cfg.getMaxTokens());
+        if (summary == null) return; // client cannot summarize (e.g. noop): context stays raw
+
+        MessageLine last = fold.lines().get(fold.lines().size() - 1);
+        Integer rows = tx.execute(status -> chatRepo.updateSummary(chatId, summary, last.createdAt(), last.id(),
+                fold.lines().size(), fold.expectedMessages()));
+        if (rows != null && rows == 1) updated.increment();
+        else conflict.increment();
+    }
+
+    // The messages to fold now, or null when the unsummarized tail is still short enough
+    private Fold pending(UUID chatId) {
+        ChatEntity chat = chatRepo.findById(chatId).orElse(null);
+        if (chat == null) return null;
+
+        Instant afterAt = chat.getSummaryThroughAt() != null ? chat.getSummaryThroughAt() : Instant.EPOCH;
+        UUID afterId = chat.getSummaryThroughId() != null ? chat.getSummaryThroughId() : NIL;
+
+        long unsummarized = messageRepo.countContextAfter(chatId, afterAt, afterId);
+        if (unsummarized < (long) cfg.getKeepRecent() + cfg.getEvery()) return null;
+
+        int foldCount = (int) Math.min(unsummarized - cfg.getKeepRecent(), cfg.getMaxFoldMessages());
+        List<MessageLine> lines = messageRepo.findContextAfter(chatId, afterAt, afterId, PageRequest.of(0, foldCount));
+        if (lines.isEmpty()) return null;
+        return new Fold(chat.getSummary(), chat.getSummaryMessages(), lines);
+    }
+}
@@ -0,0 +1,106 @@
+package com.promptline.backend.chat;
+
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import com.promptline.backend.llm.TokenEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * History lines for LLM prompts: the most recent messages of a chat that fit a token budget.
+ *
+ * Reads the chat backwards in small keyset pages (MessageRepository.findContextTail*) and stops
+ * as soon as the budget or maxMessages is reached, so the cost depends on the budget, not on
+ * how long the chat is. Lines come back oldest first, formatted "role: content".
+ *
+ * When the chat has a rolling summary (ChatSummarizer), it goes first and takes its share of
+ * the budget, and only messages after the summary marker are read.
+ *
+ * Metrics: llm.context.tokens, llm.context.messages.
+ */
+@Component
+public class ConversationContextBuilder {
+
+    // role prefix + separator per line
+    private static final int LINE_OVERHEAD_TOKENS = 4;
+
+    private final MessageRepository messageRepo;
+    private final PromptlineLlmProperties.Context cfg;
+    private final DistributionSummary tokens;
+    private final DistributionSummary messages;
+
+    public ConversationContextBuilder(MessageRepository messageRepo, PromptlineLlmProperties llmProps,
+                                      MeterRegistry registry) {
+        this.messageRepo = messageRepo;
+        this.cfg = llmProps.getContext();
+        this.tokens = DistributionSummary.builder("llm.context.tokens").register(registry);
+        this.messages = DistributionSummary.builder("llm.context.messages").register(registry);
+    }
+
+    /** Must run inside a transaction (or at least a session) like any repository read. */
+    public List<String> build(ChatEntity chat) {
+        UUID chatId = chat.getId();
+        String summaryLine = chat.getSummary() != null ? "summary of earlier messages: " + chat.getSummary() : null;
+        int summaryCost = summaryLine != null ? TokenEstimator.estimate(summaryLine) + LINE_OVERHEAD_TOKENS : 0;
+
+        int budget = cfg.getTokenBudget() - summaryCost;
+        int maxMessages = cfg.getMaxMessages();
+        int pageSize = Math.max(1, Math.min(cfg.getPageSize(), maxMessages));
+
+        List<String> newestFirst = new ArrayList<>();
+        int used = 0;
+        MessageLine last = null;
+
+        page:
+        while (newestFirst.size() < maxMessages) {
+            List<MessageLine> rows = last == null
+                    ? messageRepo.findContextTail(chatId, PageRequest.of(0, pageSize))
+                    : messageRepo.findContextTailBefore(chatId, last.createdAt(), last.id(), PageRequest.of(0, pageSize));
+
+            for (MessageLine m : rows) {
+                if (summaryLine != null && isSummarized(m, chat)) break page;
+                String line = m.role() + ": " + clip(m.content(), cfg.getMaxMessageTokens());
+                int cost = TokenEstimator.estimate(line) + LINE_OVERHEAD_TOKENS;
+                // the newest line always goes in (clipped), older ones only while they fit
+                if (!newestFirst.isEmpty() && used + cost > budget) break page;
+                newestFirst.add(line);
+                used += cost;
+                if (newestFirst.size() >= maxMessages) break page;
+            }
+            if (rows.size() < pageSize) break;
+            last = rows.get(rows.size() - 1);
+        }
+
+        if (summaryLine != null) {
+            newestFirst.add(summaryLine);
+            used += summaryCost;
+        }
+        tokens.record(used);
+        messages.record(newestFirst.size());
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    // At or before the summary marker. Equal timestamps with another id count as not summarized:
+    // repeating a line is harmless, dropping one is not.
+    private static boolean isSummarized(MessageLine m, ChatEntity chat) {
+        if (m.id().equals(chat.getSummaryThroughId())) return true;
+        return chat.getSummaryThroughAt() != null && m.createdAt().isBefore(chat.getSummaryThroughAt());
+    }
+
+    // Cuts text to roughly maxTokens, by character ratio (the estimate is linear enough for this)
+    static String clip(String text, int maxTokens) {
+        if (text == null) return "";
+        int est = TokenEstimator.estimate(text);
+        if (est <= maxTokens) return text;
+        int chars = Math.max(0, (int) ((long) text.length() * maxTokens / est));
+        if (chars > 0 && Character.isHighSurrogate(text.charAt(chars - 1))) chars--;
+        return text.substring(0, chars) + "…";
+    }
+}
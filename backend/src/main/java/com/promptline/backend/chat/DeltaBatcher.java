@@ -0,0 +1,54 @@
+package com.promptline.backend.chat;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Merges the token deltas of one streamed reply into fewer MESSAGE_DELTA events: buffered text
+ * goes out once flushMs have passed since the last event or flushChars are pending. The first
+ * delta goes out at once. Call flush() when the stream ends, before the message is persisted.
+ *
+ * Events are numbered from 0 in order; index and text reach the publisher in the order accepted.
+ */
+final class DeltaBatcher implements Consumer<String> {
+
+    static final long FLUSH_MS = 50;
+    static final int FLUSH_CHARS = 512;
+
+    private final BiConsumer<Integer, String> publish;
+    private final LongSupplier clockMs;
+    private final long flushMs;
+    private final int flushChars;
+
+    private final StringBuilder pending = new StringBuilder();
+    private int index;
+    private long lastFlushMs;
+
+    DeltaBatcher(BiConsumer<Integer, String> publish) {
+        this(publish, System::currentTimeMillis, FLUSH_MS, FLUSH_CHARS);
+    }
+
+    DeltaBatcher(BiConsumer<Integer, String> publish, LongSupplier clockMs, long flushMs, int flushChars) {
+        this.publish = publish;
+        this.clockMs = clockMs;
+        this.flushMs = flushMs;
+        this.flushChars = flushChars;
+        this.lastFlushMs = clockMs.getAsLong() - flushMs;
+    }
+
+    @Override
+    public synchronized void accept(String delta) {
+        if (delta == null || delta.isEmpty()) return;
+        pending.append(delta);
+        if (pending.length() >= flushChars || clockMs.getAsLong() - lastFlushMs >= flushMs) flush();
+    }
+
+    synchronized void flush() {
+        if (pending.isEmpty()) return;
+        String text = pending.toString();
+        pending.setLength(0);
+        lastFlushMs = clockMs.getAsLong();
+        publish.accept(index++, text);
+    }
+}
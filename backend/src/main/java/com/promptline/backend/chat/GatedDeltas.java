@@ -0,0 +1,28 @@
+package com.promptline.backend.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Holds back the deltas of a speculative reply until the router has picked it; dropped otherwise. */
+final class GatedDeltas implements Consumer<String> {
+    private final Consumer<String> target;
+    private final List<String> buffered = new ArrayList<>();
+    private boolean open;
+
+    GatedDeltas(Consumer<String> target) {
+        this.target = target;
+    }
+
+    @Override
+    public synchronized void accept(String delta) {
+        if (open) target.accept(delta);
+        else buffered.add(delta);
+    }
+
+    synchronized void open() {
+        open = true;
+        buffered.forEach(target);
+        buffered.clear();
+    }
+}
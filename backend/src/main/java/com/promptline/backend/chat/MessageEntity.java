@@ -1,5 +1,6 @@
 package com.promptline.backend.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
@@ -30,6 +31,11 @@ public class MessageEntity {
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
+    // Assistant messages only; null on rows written before it was recorded
+    @Enumerated(EnumType.STRING)
+    @Column(name = "routed_by", length = 16)
+    private TurnRoute routedBy;
+
     protected MessageEntity() {}
 
     @PrePersist
@@ -43,10 +49,13 @@ public class MessageEntity {
     public String getRole() { return role; }
     public String getContent() { return content; }
     public Instant getCreatedAt() { return createdAt; }
+    @JsonIgnore public TurnRoute getRoutedBy() { return routedBy; }
 
     public UUID getChatId() { return chat != null ? chat.getId() : null; }
 
+    public void setId(UUID id) { this.id = id; }
     public void setChat(ChatEntity chat) { this.chat = chat; }
     public void setRole(String role) { this.role = role; }
     public void setContent(String content) { this.content = content; }
+    public void setRoutedBy(TurnRoute routedBy) { this.routedBy = routedBy; }
 }
@@ -0,0 +1,7 @@
+package com.promptline.backend.chat;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** The columns of a message that prompt context needs (no chat join, no entity state). */
+public record MessageLine(UUID id, String role, String content, Instant createdAt) {}
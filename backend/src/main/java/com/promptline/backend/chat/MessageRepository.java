@@ -1,8 +1,10 @@
 package com.promptline.backend.chat;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,6 +18,68 @@ public interface MessageRepository extends JpaRepository<MessageEntity, UUID> {
     order by m.createdAt asc
   """)
   List<MessageEntity> findMessagesForChat(@Param("chatId") UUID chatId);
-}
 
+  /*
+   * Prompt-context tail, newest first, walked backwards with a (createdAt, id) keyset so each
+   * page is a range scan on idx_messages_chat_created. Assistant plan proposals (stored as plan
+   * JSON) are skipped here so a page holds only lines that go into prompts.
+   */
+  @Query("""
+    select new com.promptline.backend.chat.MessageLine(m.id, m.role, m.content, m.createdAt)
+    from MessageEntity m
+    where m.chat.id = :chatId
+      and not (m.role = 'assistant'
+               and m.content like '%"planVersion"%'
+               and m.content like '%"intent"%'
+               and m.content like '%"changes"%')
+    order by m.createdAt desc, m.id desc
+  """)
+  List<MessageLine> findContextTail(@Param("chatId") UUID chatId, Pageable page);
+
+  @Query("""
+    select new com.promptline.backend.chat.MessageLine(m.id, m.role, m.content, m.createdAt)
+    from MessageEntity m
+    where m.chat.id = :chatId
+      and (m.createdAt < :beforeAt or (m.createdAt = :beforeAt and m.id < :beforeId))
+      and not (m.role = 'assistant'
+               and m.content like '%"planVersion"%'
+               and m.content like '%"intent"%'
+               and m.content like '%"changes"%')
+    order by m.createdAt desc, m.id desc
+  """)
+  List<MessageLine> findContextTailBefore(@Param("chatId") UUID chatId,
+                                          @Param("beforeAt") Instant beforeAt,
+                                          @Param("beforeId") UUID beforeId,
+                                          Pageable page);
+
+  // Prompt-context messages after a summary marker, oldest first (EPOCH + nil UUID = from the start)
+  @Query("""
+    select new com.promptline.backend.chat.MessageLine(m.id, m.role, m.content, m.createdAt)
+    from MessageEntity m
+    where m.chat.id = :chatId
+      and (m.createdAt > :afterAt or (m.createdAt = :afterAt and m.id > :afterId))
+      and not (m.role = 'assistant'
+               and m.content like '%"planVersion"%'
+               and m.content like '%"intent"%'
+               and m.content like '%"changes"%')
+    order by m.createdAt asc, m.id asc
+  """)
+  List<MessageLine> findContextAfter(@Param("chatId") UUID chatId,
+                                     @Param("afterAt") Instant afterAt,
+                                     @Param("afterId") UUID afterId,
+                                     Pageable page);
 
+  @Query("""
+    select count(m)
+    from MessageEntity m
+    where m.chat.id = :chatId
+      and (m.createdAt > :afterAt or (m.createdAt = :afterAt and m.id > :afterId))
+      and not (m.role = 'assistant'
+               and m.content like '%"planVersion"%'
+               and m.content like '%"intent"%'
+               and m.content like '%"changes"%')
+  """)
+  long countContextAfter(@Param("chatId") UUID chatId,
+                         @Param("afterAt") Instant afterAt,
+                         @Param("afterId") UUID afterId);
+}
@@ -0,0 +1,157 @@
+package com.promptline.backend.chat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Duplicate suppression for message submissions (double clicks, client retries).
+ *
+ * A submission is identified by its Idempotency-Key header (per chat), or, without one, by a
+ * hash of its content: the same content for the same chat within contentWindowMs counts as
+ * the same submission. A duplicate joins the running turn (one LLM pipeline, one message,
+ * one plan) or gets the stored response once it has finished. Finished responses are kept
+ * for keyTtlSeconds (contentWindowMs without a key) from completion in a bounded LRU; a turn
+ * that is still running is never expired or evicted. Failed turns are forgotten, so a retry
+ * runs again.
+ * Reusing a key for different content is rejected with 422.
+ *
+ * Per node; a retry that lands on another replica runs again.
+ *
+ * Metrics: chat.submissions{result=new|coalesced|replayed|conflict}, chat.submissions.stored.
+ */
+@Component
+public class MessageSubmissions {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record Entry(String contentHash, CompletableFuture<PlanProposedResponse> result, long ttlMs,
+                         long expiresAt) {}
+
+    private final PromptlineChatProperties.Idempotency cfg;
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final Counter fresh;
+    private final Counter coalesced;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public MessageSubmissions(PromptlineChatProperties props, MeterRegistry registry) {
+        this.cfg = props.getIdempotency();
+        this.fresh = Counter.builder("chat.submissions").tag("result", "new").register(registry);
+        this.coalesced = Counter.builder("chat.submissions").tag("result", "coalesced").register(registry);
+        this.replayed = Counter.builder("chat.submissions").tag("result", "replayed").register(registry);
+        this.conflicts = Counter.builder("chat.submissions").tag("result", "conflict").register(registry);
+        Gauge.builder("chat.submissions.stored", this, s -> s.size()).register(registry);
+    }
+
+    /** The turn for this submission: a new one from `start`, or the original one for a duplicate. */
+    public CompletableFuture<PlanProposedResponse> submit(UUID chatId, String idempotencyKey, String content,
+                                                          Supplier<CompletableFuture<PlanProposedResponse>> start) {
+        if (!cfg.isEnabled()) return start.get();
+
+        String hash = sha256(content.strip());
+        String key;
+        long ttlMs;
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key is too long");
+            }
+            key = chatId + "|k:" + idempotencyKey;
+            ttlMs = Math.max(1, cfg.getKeyTtlSeconds()) * 1000;
+        } else {
+            key = chatId + "|c:" + hash;
+            ttlMs = Math.max(1, cfg.getContentWindowMs());
+        }
+
+        CompletableFuture<PlanProposedResponse> mine = new CompletableFuture<>();
+        Entry existing;
+        synchronized (lru) {
+            long now = System.currentTimeMillis();
+            existing = lru.get(key);
+            if (existing != null && existing.result().isDone() && existing.expiresAt() < now) {
+                lru.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                // running turns never expire; the TTL starts when the turn completes (see track)
+                lru.put(key, new Entry(hash, mine, ttlMs, Long.MAX_VALUE));
+                evict();
+            }
+        }
+
+        if (existing != null) {
+            if (!existing.contentHash().equals(hash)) {
+                conflicts.increment();
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key was already used for a different message");
+            }
+            (existing.result().isDone() ? replayed : coalesced).increment();
+            return existing.result();
+        }
+
+        fresh.increment();
+        track(key, mine);
+        CompletableFuture<PlanProposedResponse> turn;
+        try {
+            turn = start.get();
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        turn.whenComplete((value, error) -> {
+            if (error != null) mine.completeExceptionally(error);
+            else mine.complete(value);
+        });
+        return mine;
+    }
+
+    private void track(String key, CompletableFuture<PlanProposedResponse> mine) {
+        mine.whenComplete((value, error) -> {
+            synchronized (lru) {
+                Entry e = lru.get(key);
+                if (e == null || e.result() != mine) return;
+                if (error != null) {
+                    lru.remove(key);
+                } else {
+                    lru.put(key, new Entry(e.contentHash(), mine, e.ttlMs(), System.currentTimeMillis() + e.ttlMs()));
+                }
+            }
+        });
+    }
+
+    // guarded by lru; least recently used completed entries go first, running turns stay
+    private void evict() {
+        var it = lru.entrySet().iterator();
+        while (lru.size() > Math.max(1, cfg.getMaxEntries()) && it.hasNext()) {
+            if (it.next().getValue().result().isDone()) it.remove();
+        }
+    }
+
+    private int size() {
+        synchronized (lru) {
+            return lru.size();
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.promptline.backend.chat;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "promptline.chat")
+public class PromptlineChatProperties {
+
+    private Idempotency idempotency = new Idempotency();
+
+    public Idempotency getIdempotency() { return idempotency; }
+    public void setIdempotency(Idempotency idempotency) { this.idempotency = idempotency; }
+
+    /**
+     * Duplicate suppression for POST /api/chats/{chatId}/messages (see MessageSubmissions).
+     */
+    public static class Idempotency {
+        private boolean enabled = true;
+        // how long a completed response is replayed for the same Idempotency-Key
+        private long keyTtlSeconds = 600;
+        // without a key: identical content for the same chat within this window is a duplicate
+        private long contentWindowMs = 5000;
+        private int maxEntries = 10_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getKeyTtlSeconds() { return keyTtlSeconds; }
+        public void setKeyTtlSeconds(long keyTtlSeconds) { this.keyTtlSeconds = keyTtlSeconds; }
+
+        public long getContentWindowMs() { return contentWindowMs; }
+        public void setContentWindowMs(long contentWindowMs) { this.contentWindowMs = contentWindowMs; }
+
+        public int getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+    }
+}
@@ -0,0 +1,18 @@
+package com.promptline.backend.chat;
+
+/**
+ * What decided between a plan and a reply for a turn; stored on the assistant message.
+ * Only LLM-routed turns are used to train the intent classifier.
+ */
+public enum TurnRoute {
+    /** The LLM router, or the one-shot call. */
+    LLM,
+    /** The local intent classifier was confident. */
+    CLASSIFIER,
+    /** A confirmed plan was reused. */
+    TEMPLATE,
+    /** The plan compiler parsed the request. */
+    COMPILED,
+    /** The client called the plan or reply endpoint directly. */
+    DIRECT
+}
@@ -0,0 +1,101 @@
+package com.promptline.backend.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps concurrent requests to one upstream. The slot is held until the response is closed,
+ * so a streamed body counts as in flight for as long as it is being read.
+ */
+final class ConcurrencyLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String upstream;
+    private final int limit;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+    private final Runnable onRejected;
+
+    ConcurrencyLimitInterceptor(String upstream, int limit, long acquireTimeoutMs, Runnable onRejected) {
+        this.upstream = upstream;
+        this.limit = Math.max(1, limit);
+        this.acquireTimeoutMs = Math.max(0, acquireTimeoutMs);
+        this.permits = new Semaphore(this.limit);
+        this.onRejected = onRejected;
+    }
+
+    int inFlight() {
+        return limit - permits.availablePermits();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                onRejected.run();
+                throw new IOException(upstream + ": " + limit + " requests already in flight");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a " + upstream + " connection slot");
+        }
+
+        try {
+            return new PermitReleasingResponse(execution.execute(request, body), permits);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static final class PermitReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.promptline.backend.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared outbound HTTP transport. One JDK HttpClient per upstream (HTTP/2 when the server
+ * supports it, so concurrent calls multiplex over one connection), with that upstream's
+ * connect/read deadlines, a concurrency cap and a budgeted retry policy.
+ *
+ * Interrupting the calling thread cancels the exchange, which is what the LLM
+ * speculation / hedging code relies on to abort losing requests.
+ *
+ * Metrics per upstream: http.upstream.in.flight, http.upstream.retries,
+ * http.upstream.retry.budget.exhausted, http.upstream.limit.rejected.
+ * (Request timings come from Spring's http.client.requests observation.)
+ */
+@Component
+public class HttpTransportFactory {
+
+    private final PromptlineHttpProperties props;
+    private final RestClient.Builder base;
+    private final MeterRegistry registry;
+
+    private final Map<String, Transport> transports = new ConcurrentHashMap<>();
+
+    private record Transport(HttpClient client,
+                             JdkClientHttpRequestFactory requestFactory,
+                             ConcurrencyLimitInterceptor limit,
+                             RetryInterceptor retry) {}
+
+    public HttpTransportFactory(PromptlineHttpProperties props, RestClient.Builder base, MeterRegistry registry) {
+        this.props = props;
+        this.base = base;
+        this.registry = registry;
+    }
+
+    /** A RestClient.Builder bound to the transport of `upstream` (settings: promptline.http.upstreams.<upstream>). */
+    public RestClient.Builder builder(String upstream) {
+        return builder(upstream, upstream);
+    }
+
+    /**
+     * Same, for an upstream that has no settings of its own and borrows those of `settingsKey`
+     * (e.g. one of several LLM endpoints using the "llm" settings). Limits stay per upstream.
+     */
+    public RestClient.Builder builder(String upstream, String settingsKey) {
+        Transport t = transports.computeIfAbsent(upstream, name -> create(name, settings(upstream, settingsKey)));
+        // Retry must be the last interceptor: it re-executes the rest of the chain
+        return base.clone()
+                .requestFactory(t.requestFactory())
+                .requestInterceptor(t.limit())
+                .requestInterceptor(t.retry());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transports.values().forEach(t -> t.client().shutdownNow());
+    }
+
+    private PromptlineHttpProperties.Upstream settings(String upstream, String settingsKey) {
+        var own = props.getUpstreams().get(upstream);
+        if (own != null) return own;
+        var borrowed = props.getUpstreams().get(settingsKey);
+        return borrowed != null ? borrowed : props.getDefaults();
+    }
+
+    private Transport create(String upstream, PromptlineHttpProperties.Upstream cfg) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(cfg.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(cfg.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(client);
+        requestFactory.setReadTimeout(Duration.ofMillis(cfg.getReadTimeoutMs()));
+
+        Counter rejected = Counter.builder("http.upstream.limit.rejected").tag("upstream", upstream).register(registry);
+        Counter retries = Counter.builder("http.upstream.retries").tag("upstream", upstream).register(registry);
+        Counter exhausted = Counter.builder("http.upstream.retry.budget.exhausted").tag("upstream", upstream).register(registry);
+
+        ConcurrencyLimitInterceptor limit = new ConcurrencyLimitInterceptor(
+                upstream, cfg.getMaxConcurrent(), cfg.getAcquireTimeoutMs(), rejected::increment);
+        RetryInterceptor retry = new RetryInterceptor(cfg.getRetry(), retries::increment, exhausted::increment);
+
+        Gauge.builder("http.upstream.in.flight", limit, ConcurrencyLimitInterceptor::inFlight)
+                .tag("upstream", upstream).register(registry);
+
+        System.out.println("HTTP transport '" + upstream + "': " + (cfg.isHttp2() ? "HTTP/2" : "HTTP/1.1")
+                + ", connect " + cfg.getConnectTimeoutMs() + " ms, read " + cfg.getReadTimeoutMs()
+                + " ms, max " + cfg.getMaxConcurrent() + " in flight, " + cfg.getRetry().getMaxAttempts() + " attempts");
+
+        return new Transport(client, requestFactory, limit, retry);
+    }
+}
@@ -0,0 +1,78 @@
+package com.promptline.backend.http;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outbound HTTP settings per upstream (see HttpTransportFactory).
+ * Upstreams not listed here use the values of `defaults`.
+ */
+@ConfigurationProperties(prefix = "promptline.http")
+public class PromptlineHttpProperties {
+
+    private Upstream defaults = new Upstream();
+    private Map<String, Upstream> upstreams = new LinkedHashMap<>();
+
+    public Upstream getDefaults() { return defaults; }
+    public void setDefaults(Upstream defaults) { this.defaults = defaults; }
+
+    public Map<String, Upstream> getUpstreams() { return upstreams; }
+    public void setUpstreams(Map<String, Upstream> upstreams) { this.upstreams = upstreams; }
+
+    public static class Upstream {
+        private boolean http2 = true;
+        private long connectTimeoutMs = 3000;
+        // time until response headers arrive; streamed bodies are not cut off by it
+        private long readTimeoutMs = 30000;
+        // concurrent requests (in-flight responses included) to this upstream
+        private int maxConcurrent = 64;
+        // how long a request may wait for a free slot before failing
+        private long acquireTimeoutMs = 5000;
+        private Retry retry = new Retry();
+
+        public boolean isHttp2() { return http2; }
+        public void setHttp2(boolean http2) { this.http2 = http2; }
+
+        public long getConnectTimeoutMs() { return connectTimeoutMs; }
+        public void setConnectTimeoutMs(long connectTimeoutMs) { this.connectTimeoutMs = connectTimeoutMs; }
+
+        public long getReadTimeoutMs() { return readTimeoutMs; }
+        public void setReadTimeoutMs(long readTimeoutMs) { this.readTimeoutMs = readTimeoutMs; }
+
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+
+        public long getAcquireTimeoutMs() { return acquireTimeoutMs; }
+        public void setAcquireTimeoutMs(long acquireTimeoutMs) { this.acquireTimeoutMs = acquireTimeoutMs; }
+
+        public Retry getRetry() { return retry; }
+        public void setRetry(Retry retry) { this.retry = retry; }
+    }
+
+    public static class Retry {
+        // total attempts, including the first one
+        private int maxAttempts = 3;
+        private long baseBackoffMs = 100;
+        private long maxBackoffMs = 2000;
+        // retries allowed per request (token bucket), so retries cannot multiply an outage
+        private double budgetRatio = 0.1;
+        private double budgetBurst = 10;
+
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+        public long getBaseBackoffMs() { return baseBackoffMs; }
+        public void setBaseBackoffMs(long baseBackoffMs) { this.baseBackoffMs = baseBackoffMs; }
+
+        public long getMaxBackoffMs() { return maxBackoffMs; }
+        public void setMaxBackoffMs(long maxBackoffMs) { this.maxBackoffMs = maxBackoffMs; }
+
+        public double getBudgetRatio() { return budgetRatio; }
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+
+        public double getBudgetBurst() { return budgetBurst; }
+        public void setBudgetBurst(double budgetBurst) { this.budgetBurst = budgetBurst; }
+    }
+}
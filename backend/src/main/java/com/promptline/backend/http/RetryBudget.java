@@ -0,0 +1,25 @@
+package com.promptline.backend.http;
+
+/** Token bucket: every request adds `ratio` tokens (up to `burst`), every retry spends one. */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double burst;
+    private double tokens;
+
+    RetryBudget(double ratio, double burst) {
+        this.ratio = Math.max(0, ratio);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(burst, tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+}
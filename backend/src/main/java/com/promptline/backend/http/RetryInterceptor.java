@@ -0,0 +1,128 @@
+package com.promptline.backend.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries transient failures with full-jitter exponential backoff.
+ *
+ * Idempotent methods (GET, HEAD, OPTIONS, PUT, DELETE), and requests that opt in with an
+ * Idempotency-Key header: connection errors and 429/502/503/504 responses.
+ * Everything else (POST: MCP config calls, LLM completions): only failures where the request
+ * cannot have reached the upstream, i.e. connect errors and connect timeouts, plus 429/503
+ * that carry Retry-After (the upstream refused the request without processing it). A 502/504
+ * or a reset after the body was sent may have had an effect, so it is returned as is.
+ *
+ * Read timeouts are never retried (the upstream may still be working on it, and the caller
+ * already waited the full deadline). A Retry-After delay is honored up to maxBackoffMs.
+ * Each retry spends a token from the upstream's {@link RetryBudget}; when it is empty the
+ * failure is returned as is. Must be the last interceptor: it re-executes the chain tail.
+ */
+final class RetryInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Set<Integer> RETRY_STATUSES = Set.of(429, 502, 503, 504);
+    // not processed by the upstream when it says when to come back
+    private static final Set<Integer> REFUSED_STATUSES = Set.of(429, 503);
+    private static final Set<HttpMethod> IDEMPOTENT = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private final PromptlineHttpProperties.Retry cfg;
+    private final RetryBudget budget;
+    private final Runnable onRetry;
+    private final Runnable onBudgetExhausted;
+
+    RetryInterceptor(PromptlineHttpProperties.Retry cfg, Runnable onRetry, Runnable onBudgetExhausted) {
+        this.cfg = cfg;
+        this.budget = new RetryBudget(cfg.getBudgetRatio(), cfg.getBudgetBurst());
+        this.onRetry = onRetry;
+        this.onBudgetExhausted = onBudgetExhausted;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        budget.onRequest();
+        boolean idempotent = IDEMPOTENT.contains(request.getMethod())
+                || request.getHeaders().containsKey(IDEMPOTENCY_KEY);
+
+        for (int attempt = 1; ; attempt++) {
+            ClientHttpResponse response = null;
+            IOException error = null;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            long retryAfterMs = response != null ? retryAfterMs(response) : -1;
+            boolean retryable = error != null
+                    ? retryable(error, idempotent)
+                    : retryable(response.getStatusCode().value(), retryAfterMs >= 0, idempotent);
+            if (!retryable || attempt >= cfg.getMaxAttempts() || Thread.currentThread().isInterrupted()) {
+                if (error != null) throw error;
+                return response;
+            }
+            if (!budget.tryAcquire()) {
+                onBudgetExhausted.run();
+                if (error != null) throw error;
+                return response;
+            }
+
+            if (response != null) response.close();
+            onRetry.run();
+            sleep(Math.min(cfg.getMaxBackoffMs(), Math.max(backoffMs(attempt), retryAfterMs)));
+        }
+    }
+
+    private static boolean retryable(IOException e, boolean idempotent) {
+        if (e instanceof InterruptedIOException) return false;
+        if (e instanceof HttpTimeoutException) return e instanceof HttpConnectTimeoutException;
+        // connection never established: the request was not sent, safe for any method
+        if (e instanceof ConnectException || e instanceof UnknownHostException) return true;
+        return idempotent;
+    }
+
+    private static boolean retryable(int status, boolean hasRetryAfter, boolean idempotent) {
+        if (idempotent) return RETRY_STATUSES.contains(status);
+        return hasRetryAfter && REFUSED_STATUSES.contains(status);
+    }
+
+    // Retry-After in seconds (the HTTP-date form is treated as absent); -1 when missing
+    private static long retryAfterMs(ClientHttpResponse response) throws IOException {
+        String value = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long backoffMs(int attempt) {
+        long cap = Math.min(cfg.getMaxBackoffMs(), cfg.getBaseBackoffMs() << Math.min(16, attempt - 1));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private static void sleep(long ms) throws InterruptedIOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+}
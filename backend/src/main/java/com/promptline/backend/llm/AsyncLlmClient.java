@@ -0,0 +1,29 @@
+package com.promptline.backend.llm;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Future-returning counterpart of {@link LlmClient}, same contracts per method.
+ *
+ * cancel(true) on a returned future aborts the call: the HTTP exchange is dropped and a queued
+ * call leaves its scheduler lane. Futures derived with thenApply etc. do not propagate cancel
+ * back to their source, so cancel the future this interface returned.
+ */
+public interface AsyncLlmClient {
+
+    CompletableFuture<String> generateTitleFromFirstUserMessage(String firstMessage);
+
+    CompletableFuture<String> generateAssistantReply(String chatTitle, String userMessage);
+
+    CompletableFuture<String> streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta);
+
+    CompletableFuture<String> generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage);
+
+    CompletableFuture<Boolean> shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage);
+
+    CompletableFuture<OneShotReply> respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle);
+
+    CompletableFuture<String> summarizeConversation(String previousSummary, List<String> newLines, int maxTokens);
+}
@@ -0,0 +1,205 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Caches the deterministic LLM calls (router decision at temperature 0.0, title at 0.2 / 40 tokens).
+ *
+ * Key = model identity + call parameters + whitespace-normalized prompt inputs.
+ * Entries live in a bounded LRU with a TTL; identical concurrent misses share one upstream
+ * request (single-flight). Replies and plans are not cached: they are open-ended and must
+ * reflect the latest conversation.
+ *
+ * Metrics: llm.cache.requests{op,result=hit|miss|coalesced}, llm.cache.hit.ratio{op},
+ * llm.cache.load{op} (upstream time per miss, i.e. time saved per hit), llm.cache.size.
+ */
+public class CachingLlmClient implements LlmClient {
+
+    // Must match the parameters the provider uses for these calls (see OpenRouterLlmClient)
+    private static final String ROUTER_PARAMS = "router|t=0.0|max=50";
+    private static final String TITLE_PARAMS = "title|t=0.2|max=40";
+    // Router prompt only looks at the newest history lines
+    private static final int ROUTER_HISTORY_LINES = OpenRouterLlmClient.ROUTER_HISTORY_LINES;
+
+    private final LlmClient delegate;
+    private final String modelKey;
+    private final int maxEntries;
+    private final long ttlMs;
+
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Stats router;
+    private final Stats title;
+
+    private record Entry(Object value, long expiresAt) {}
+
+    private static final class Stats {
+        final Counter hits;
+        final Counter misses;
+        final Counter coalesced;
+        final Timer load;
+
+        Stats(MeterRegistry registry, String op) {
+            this.hits = Counter.builder("llm.cache.requests").tag("op", op).tag("result", "hit").register(registry);
+            this.misses = Counter.builder("llm.cache.requests").tag("op", op).tag("result", "miss").register(registry);
+            this.coalesced = Counter.builder("llm.cache.requests").tag("op", op).tag("result", "coalesced").register(registry);
+            this.load = Timer.builder("llm.cache.load").tag("op", op).register(registry);
+            Gauge.builder("llm.cache.hit.ratio", this, Stats::hitRatio).tag("op", op).register(registry);
+        }
+
+        // coalesced requests did not pay for their own upstream call, so they count as hits
+        double hitRatio() {
+            double saved = hits.count() + coalesced.count();
+            double total = saved + misses.count();
+            return total == 0 ? 0 : saved / total;
+        }
+    }
+
+    public CachingLlmClient(LlmClient delegate, String modelKey, int maxEntries, long ttlSeconds, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.modelKey = modelKey;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = Math.max(1, ttlSeconds) * 1000;
+        this.router = new Stats(registry, "shouldProposePlan");
+        this.title = new Stats(registry, "title");
+        Gauge.builder("llm.cache.size", this, c -> c.size()).register(registry);
+    }
+
+    @Override
+    public String generateTitleFromFirstUserMessage(String firstMessage) {
+        String key = modelKey + "|" + TITLE_PARAMS + "|" + normalize(firstMessage);
+        return (String) cached(key, title, () -> delegate.generateTitleFromFirstUserMessage(firstMessage));
+    }
+
+    @Override
+    public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        StringBuilder key = new StringBuilder(modelKey).append('|').append(ROUTER_PARAMS)
+                .append("|t:").append(normalize(chatTitle));
+        if (chatHistory != null) {
+            chatHistory.subList(Math.max(0, chatHistory.size() - ROUTER_HISTORY_LINES), chatHistory.size())
+                    .forEach(h -> key.append("|h:").append(normalize(h)));
+        }
+        key.append("|u:").append(normalize(userMessage));
+        return (Boolean) cached(key.toString(), router,
+                () -> delegate.shouldProposePlan(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public String generateAssistantReply(String chatTitle, String userMessage) {
+        return delegate.generateAssistantReply(chatTitle, userMessage);
+    }
+
+    @Override
+    public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        return delegate.streamAssistantReply(chatTitle, userMessage, onDelta);
+    }
+
+    @Override
+    public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        return delegate.generatePlanJson(chatTitle, chatHistory, userMessage);
+    }
+
+    @Override
+    public OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        return delegate.respondOneShot(chatTitle, chatHistory, userMessage, needsTitle);
+    }
+
+    @Override
+    public String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return delegate.summarizeConversation(previousSummary, newLines, maxTokens);
+    }
+
+    // ---- cache ----
+
+    private Object cached(String key, Stats stats, Supplier<Object> loader) {
+        Object hit = lookup(key);
+        if (hit != null) {
+            stats.hits.increment();
+            return hit;
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            stats.coalesced.increment();
+            try {
+                // get(), not join(): a cancelled waiter (speculation / hedge loser) must stop waiting
+                return leader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for a coalesced LLM call");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            }
+        }
+
+        try {
+            // Another leader may have finished between lookup and putIfAbsent
+            Object value = lookup(key);
+            if (value != null) {
+                stats.hits.increment();
+            } else {
+                stats.misses.increment();
+                long start = System.nanoTime();
+                value = loader.get();
+                stats.load.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (value != null) store(key, value);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            // failures are shared with waiters but never cached
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object lookup(String key) {
+        synchronized (lru) {
+            Entry e = lru.get(key);
+            if (e == null) return null;
+            if (e.expiresAt() < System.currentTimeMillis()) {
+                lru.remove(key);
+                return null;
+            }
+            return e.value();
+        }
+    }
+
+    private void store(String key, Object value) {
+        synchronized (lru) {
+            lru.put(key, new Entry(value, System.currentTimeMillis() + ttlMs));
+            var it = lru.entrySet().iterator();
+            while (lru.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (lru) {
+            return lru.size();
+        }
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.replaceAll("\\s+", " ").trim();
+    }
+}
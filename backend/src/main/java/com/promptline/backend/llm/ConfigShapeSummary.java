@@ -0,0 +1,164 @@
+package com.promptline.backend.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.runtime.RuntimeConfigStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The config-shape block of the plan prompts: every settable path of the live ui / policy
+ * configs with its value type, values left out.
+ *
+ *   ui (config/ui.json):
+ *     theme: string
+ *     version: integer
+ *   policy (config/policy.json):
+ *     allowlist: string[]
+ *     rateLimit.rpm: integer
+ *
+ * Built from the documents RuntimeConfigStore hands out and cached per document (a config
+ * update invalidates the store, so the next prompt sees the new shape). Objects with at least
+ * collapseKeys scalar members of one type become one "prefix.*" line, and the whole block is
+ * cut to maxTokens, each config getting at least half unless the other needs less. The plan
+ * rules therefore let the model use an unlisted path when the user names it explicitly.
+ * When the configs cannot be read, the last good block is used.
+ *
+ * Metrics: llm.config.shapes.tokens.
+ */
+@Component
+public class ConfigShapeSummary {
+
+    private static final String HEADER = "Current config paths and value types (values omitted):\n";
+    private static final String UNAVAILABLE = "Current config paths are unavailable; use only paths the user names.\n";
+
+    private record Snapshot(RuntimeConfigStore.RuntimeBlob ui, RuntimeConfigStore.RuntimeBlob policy, String text) {}
+
+    private final RuntimeConfigStore store;
+    private final ObjectMapper om;
+    private final PromptlineLlmProperties.ConfigShapes cfg;
+    private volatile Snapshot snapshot;
+
+    public ConfigShapeSummary(RuntimeConfigStore store, ObjectMapper om, PromptlineLlmProperties llmProps,
+                              MeterRegistry registry) {
+        this.store = store;
+        this.om = om;
+        this.cfg = llmProps.getConfigShapes();
+        Gauge.builder("llm.config.shapes.tokens", this,
+                s -> s.snapshot != null ? TokenEstimator.estimate(s.snapshot.text()) : 0).register(registry);
+    }
+
+    /** The block to append to the plan rules. */
+    public String prompt() {
+        Snapshot s = snapshot;
+        try {
+            var ui = store.getUiConfig();
+            var policy = store.getPolicy();
+            if (s != null && s.ui() == ui && s.policy() == policy) return s.text();
+
+            s = new Snapshot(ui, policy, render(ui, policy));
+            snapshot = s;
+            return s.text();
+        } catch (Exception e) {
+            System.err.println("Config shapes unavailable: " + e.getMessage());
+            return s != null ? s.text() : UNAVAILABLE;
+        }
+    }
+
+    private String render(RuntimeConfigStore.RuntimeBlob ui, RuntimeConfigStore.RuntimeBlob policy) throws Exception {
+        List<String> uiLines = new ArrayList<>();
+        List<String> policyLines = new ArrayList<>();
+        walk("", om.readTree(ui.json()), uiLines);
+        walk("", om.readTree(policy.json()), policyLines);
+
+        int max = cfg.getMaxTokens();
+        int uiCost = cost(uiLines);
+        int policyCost = cost(policyLines);
+        int uiBudget = Math.max(max / 2, max - policyCost);
+        int policyBudget = max - Math.min(uiCost, uiBudget);
+
+        StringBuilder out = new StringBuilder(HEADER);
+        section(out, "ui", ui.sourceKey(), uiLines, uiBudget);
+        section(out, "policy", policy.sourceKey(), policyLines, policyBudget);
+        return out.toString();
+    }
+
+    private static void section(StringBuilder out, String target, String file, List<String> lines, int budget) {
+        out.append(target).append(" (").append(file).append("):\n");
+        if (lines.isEmpty()) {
+            out.append("  (empty)\n");
+            return;
+        }
+        int used = 0;
+        int shown = 0;
+        for (String line : lines) {
+            int c = TokenEstimator.estimate(line) + 1;
+            // keep room for the "more paths" line unless this is the last one
+            if (used + c > budget - (shown + 1 < lines.size() ? 6 : 0)) break;
+            out.append("  ").append(line).append('\n');
+            used += c;
+            shown++;
+        }
+        if (shown < lines.size()) out.append("  ... ").append(lines.size() - shown).append(" more paths (not listed)\n");
+    }
+
+    private static int cost(List<String> lines) {
+        int c = 0;
+        for (String line : lines) c += TokenEstimator.estimate(line) + 1;
+        return c;
+    }
+
+    // Object members recurse (like PlanCompiler's leaves); everything else is one "path: type" line
+    private void walk(String prefix, JsonNode node, List<String> out) {
+        if (node == null) return;
+        if (node.isObject() && node.size() > 0) {
+            String uniform = node.size() >= cfg.getCollapseKeys() ? uniformScalarType(node) : null;
+            if (uniform != null && !prefix.isEmpty()) {
+                out.add(prefix + ".*: " + uniform + " (" + node.size() + " keys)");
+                return;
+            }
+            Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+            while (it.hasNext()) {
+                var e = it.next();
+                walk(prefix.isEmpty() ? e.getKey() : prefix + "." + e.getKey(), e.getValue(), out);
+            }
+            return;
+        }
+        if (!prefix.isEmpty()) out.add(prefix + ": " + typeOf(node));
+    }
+
+    private static String uniformScalarType(JsonNode object) {
+        String type = null;
+        for (JsonNode child : object) {
+            if (child.isContainerNode()) return null;
+            String t = typeOf(child);
+            if (type != null && !type.equals(t)) return null;
+            type = t;
+        }
+        return type;
+    }
+
+    private static String typeOf(JsonNode node) {
+        if (node.isTextual()) return "string";
+        if (node.isIntegralNumber()) return "integer";
+        if (node.isNumber()) return "number";
+        if (node.isBoolean()) return "boolean";
+        if (node.isObject()) return "object";
+        if (node.isArray()) {
+            String element = null;
+            for (JsonNode e : node) {
+                String t = typeOf(e);
+                if (element != null && !element.equals(t)) return "array";
+                element = t;
+            }
+            return element != null ? element + "[]" : "array";
+        }
+        return "null";
+    }
+}
@@ -0,0 +1,28 @@
+package com.promptline.backend.llm;
+
+/**
+ * Token bucket that caps hedged requests to a fraction of primary requests.
+ * Every primary adds `ratio` tokens (up to `burst`); a hedge spends one. When the upstream is
+ * slow across the board the bucket drains and hedging stops instead of doubling the load.
+ */
+final class HedgeBudget {
+
+    private final double ratio;
+    private final double burst;
+    private double tokens;
+
+    HedgeBudget(double ratio, double burst) {
+        this.ratio = Math.max(0, ratio);
+        this.burst = Math.max(1, burst);
+    }
+
+    synchronized void onPrimary() {
+        tokens = Math.min(burst, tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package com.promptline.backend.llm;
+
+import java.util.Arrays;
+
+/** Sliding window of recent call latencies for one model; answers percentile queries. */
+final class LatencyTracker {
+
+    private final long[] window;
+    private int next;
+    private int size;
+
+    LatencyTracker(int capacity) {
+        this.window = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void record(long millis) {
+        window[next] = millis;
+        next = (next + 1) % window.length;
+        if (size < window.length) size++;
+    }
+
+    /** The q-th percentile (0..1) in ms, or -1 while fewer than minSamples have been recorded. */
+    synchronized long percentile(double q, int minSamples) {
+        if (size < Math.max(1, minSamples)) return -1;
+        long[] sorted = Arrays.copyOf(window, size);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(q * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, idx))];
+    }
+}
@@ -1,6 +1,7 @@
 package com.promptline.backend.llm;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LlmClient {
     String generateTitleFromFirstUserMessage(String firstMessage);
@@ -10,4 +11,31 @@ public interface LlmClient {
     String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage);
 
     boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage);
+
+    /**
+     * Streams the assistant reply: onDelta receives text fragments as they arrive,
+     * the return value is the complete reply. Clients without streaming emit one delta.
+     */
+    default String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        String reply = generateAssistantReply(chatTitle, userMessage);
+        if (reply != null && !reply.isEmpty()) onDelta.accept(reply);
+        return reply;
+    }
+
+    /**
+     * Route, title (only when needsTitle) and reply or plan in one request.
+     * Returns null when the client has no combined mode or its output could not be parsed;
+     * callers then fall back to the separate calls above.
+     */
+    default OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        return null;
+    }
+
+    /**
+     * Folds newLines (oldest first) into previousSummary (null on the first fold) and returns the
+     * updated summary, at most about maxTokens long. Null when the client cannot summarize.
+     */
+    default String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return null;
+    }
 }
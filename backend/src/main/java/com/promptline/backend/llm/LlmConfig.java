@@ -1,25 +1,87 @@
 package com.promptline.backend.llm;
 
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import com.promptline.backend.http.HttpTransportFactory;
+import com.promptline.backend.llm.intent.ClassifyingLlmClient;
+import com.promptline.backend.llm.intent.IntentClassifier;
+import com.promptline.backend.llm.usage.LlmUsageRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestClient;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assembles the LlmClient: the provider client, wrapped by the optional decorators.
+ */
 @Configuration
 @EnableConfigurationProperties(PromptlineLlmProperties.class)
 public class LlmConfig {
 
     @Bean
-    @ConditionalOnProperty(name = "promptline.llm.provider", havingValue = "openrouter")
-    public LlmClient openRouterLlmClient(PromptlineLlmProperties props, RestClient.Builder builder) {
-        return new OpenRouterLlmClient(props, builder);
+    public LlmClient llmClient(PromptlineLlmProperties props, HttpTransportFactory transport,
+                               MeterRegistry registry, IntentClassifier intentClassifier,
+                               LlmUsageRecorder usageRecorder, ConfigShapeSummary configShapes) {
+        LlmClient client;
+        String modelKey;
+        if ("openrouter".equalsIgnoreCase(props.getProvider()) && !props.getEndpoints().isEmpty()) {
+            List<RoutingLlmClient.Named> clients = new ArrayList<>();
+            for (int i = 0; i < props.getEndpoints().size(); i++) {
+                var endpoint = withDefaults(props.getEndpoints().get(i), props.getOpenrouter());
+                String name = endpoint.getName() != null ? endpoint.getName() : "endpoint-" + i;
+                // own connection limits per endpoint, settings from promptline.http.upstreams.llm
+                clients.add(new RoutingLlmClient.Named(name,
+                        new OpenRouterLlmClient(endpoint, transport.builder("llm-" + name, "llm"), registry,
+                                usageRecorder, configShapes::prompt)));
+            }
+            client = new RoutingLlmClient(clients, props.getRouting(), registry);
+            // endpoints may serve different models; cache on the logical (default) model
+            modelKey = "openrouter:" + props.getOpenrouter().getFastModel();
+        } else if ("openrouter".equalsIgnoreCase(props.getProvider())) {
+            client = new OpenRouterLlmClient(props, transport.builder("llm"), registry, usageRecorder,
+                    configShapes::prompt);
+            modelKey = "openrouter:" + props.getOpenrouter().getFastModel();
+        } else {
+            client = new NoopLlmClient(props.getNoop().getLatencyMs());
+            modelKey = "noop";
+        }
+
+        // Innermost: only calls that actually go upstream take a slot (cache hits and local decisions do not)
+        if (props.getScheduler().isEnabled()) {
+            client = new ScheduledLlmClient(client, props.getScheduler(), registry);
+        }
+
+        var cache = props.getCache();
+        if (cache.isEnabled()) {
+            client = new CachingLlmClient(client, modelKey, cache.getMaxEntries(), cache.getTtlSeconds(), registry);
+        }
+        // Confident local decisions skip the router call entirely; only ambiguous ones reach the cache/LLM
+        if (props.getIntent().isEnabled()) {
+            client = new ClassifyingLlmClient(client, intentClassifier, registry);
+        }
+        return client;
     }
 
+    /** The same chain, future-returning; closed (threads interrupted) on shutdown. */
     @Bean
-    @ConditionalOnMissingBean(LlmClient.class)
-    public LlmClient noopLlmClient() {
-        return new NoopLlmClient();
+    public AsyncLlmClient asyncLlmClient(LlmClient llmClient) {
+        return new VirtualThreadAsyncLlmClient(llmClient);
+    }
+
+    // Unset endpoint fields (models, key, app headers, streamJson, hedge) inherit from promptline.llm.openrouter
+    private static PromptlineLlmProperties.OpenRouter withDefaults(PromptlineLlmProperties.OpenRouter e,
+                                                                   PromptlineLlmProperties.OpenRouter d) {
+        var out = new PromptlineLlmProperties.OpenRouter();
+        out.setName(e.getName());
+        out.setBaseUrl(e.getBaseUrl());
+        out.setApiKey(e.getApiKey() != null ? e.getApiKey() : d.getApiKey());
+        out.setFastModel(e.getFastModel() != null ? e.getFastModel() : d.getFastModel());
+        out.setStrongModel(e.getStrongModel() != null ? e.getStrongModel() : d.getStrongModel());
+        out.setAppUrl(e.getAppUrl() != null ? e.getAppUrl() : d.getAppUrl());
+        out.setAppName(e.getAppName() != null ? e.getAppName() : d.getAppName());
+        out.setStreamJson(d.isStreamJson());
+        out.setHedge(d.getHedge());
+        return out;
     }
 }
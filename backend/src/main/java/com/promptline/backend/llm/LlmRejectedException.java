@@ -0,0 +1,12 @@
+package com.promptline.backend.llm;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** The LLM scheduler refused a call because it could not start within its queue deadline. */
+public class LlmRejectedException extends ResponseStatusException {
+
+    public LlmRejectedException(String reason) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+    }
+}
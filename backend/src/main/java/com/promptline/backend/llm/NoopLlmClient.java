@@ -4,18 +4,32 @@ import java.util.List;
 
 public class NoopLlmClient implements LlmClient {
 
+    // Simulated upstream latency per call (load testing without a real provider)
+    private final long latencyMs;
+
+    public NoopLlmClient() {
+        this(0);
+    }
+
+    public NoopLlmClient(long latencyMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+    }
+
     @Override
     public String generateTitleFromFirstUserMessage(String firstMessage) {
+        simulateLatency();
         return "New chat";
     }
 
     @Override
     public String generateAssistantReply(String chatTitle, String userMessage) {
+        simulateLatency();
         return "⏳ Assistant response placeholder (LLM not wired yet)";
     }
 
     @Override
     public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        simulateLatency();
         return """
                {"summary":"noop plan","steps":[]}
                """;
@@ -23,6 +37,16 @@ public class NoopLlmClient implements LlmClient {
 
     @Override
     public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        simulateLatency();
         return false; // noop always routes to normal chat
     }
+
+    private void simulateLatency() {
+        if (latencyMs == 0) return;
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.promptline.backend.llm;
+
+/**
+ * Route + title + reply/plan from a single LLM call.
+ * title is null unless requested; exactly one of reply / planJson is expected, matching proposePlan.
+ */
+public record OneShotReply(
+        boolean proposePlan,
+        String title,
+        String reply,
+        String planJson
+) {}
@@ -1,34 +1,128 @@
 package com.promptline.backend.llm;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.llm.usage.LlmCallContext;
+import com.promptline.backend.llm.usage.LlmCallRecord;
+import com.promptline.backend.llm.usage.LlmUsageRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.client.RestClient;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @ConditionalOnProperty(prefix = "promptline.llm", name = "provider", havingValue = "openrouter")
 public class OpenRouterLlmClient implements LlmClient {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final RestClient rest;
-    private final PromptlineLlmProperties props;
+    // Plan schema, shared by the plan prompt and the one-shot prompt; planRules() appends the live config shapes
+    private static final String PLAN_RULES = """
+                Allowed planVersion: "v1"
+                intent MUST be: "runtime_config_change"
+                env MUST be: "live"
+
+                The plan MUST include:
+                - planVersion (string)
+                - intent (string)
+                - env (string)
+                - summary (string, <= 140 chars)
+                - requiresConfirmation (boolean, always true)
+                - changes (array length 1..20)
+
+                Each change MUST be:
+                { "target": "ui" | "policy", "op": "set", "path": "<dot.path>", "value": <any JSON value> }
+
+                The only allowed op is "set".
+
+                Important:
+                - Use the dot-path exactly as the JSON path inside the config files.
+                - Use paths listed below, with a value of the listed type. The list may be cut short
+                  ("... N more paths"): a path the user names explicitly may be used even if it is not listed.
+                - For language changes, update policy path like: rules.languageTag = "es" or similar (if that path exists).
+                - For theme changes, update ui path like: theme = "dark" or "light".
 
-    public OpenRouterLlmClient(PromptlineLlmProperties props, RestClient.Builder builder) {
-        this.props = props;
+                """;
 
-        var or = props.getOpenrouter();
+    private static final int LATENCY_WINDOW = 512;
+    // history lines (most recent) the router prompt sees; CachingLlmClient keys on the same lines
+    static final int ROUTER_HISTORY_LINES = 10;
 
-        this.rest = builder
-                .baseUrl(or.getBaseUrl())
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + nullToEmpty(or.getApiKey()))
+    private final RestClient rest;
+    private final PromptlineLlmProperties.OpenRouter config;
+    private final LlmUsageRecorder usageRecorder;
+    // current config paths/types appended to PLAN_RULES (ConfigShapeSummary)
+    private final Supplier<String> configShapes;
+
+    // hedging (see callChatCompletion)
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "llm-hedge-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, LatencyTracker> latencyByModel = new ConcurrentHashMap<>();
+    private final HedgeBudget hedgeBudget;
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+    private final Counter hedgesSkipped;
+    private final Counter hedgesLaneFull;
+    // streamed JSON outputs (see streamJsonObject)
+    private final Counter jsonComplete;
+    private final Counter jsonInvalid;
+    private final Counter jsonIncomplete;
+
+    public OpenRouterLlmClient(PromptlineLlmProperties props, RestClient.Builder builder, MeterRegistry registry,
+                               LlmUsageRecorder usageRecorder, Supplier<String> configShapes) {
+        this(props.getOpenrouter(), builder, registry, usageRecorder, configShapes);
+    }
+
+    /** One OpenAI-compatible endpoint (base URL, key, models); see RoutingLlmClient for several. */
+    public OpenRouterLlmClient(PromptlineLlmProperties.OpenRouter config, RestClient.Builder builder, MeterRegistry registry,
+                               LlmUsageRecorder usageRecorder, Supplier<String> configShapes) {
+        this.config = config;
+        this.usageRecorder = usageRecorder;
+        this.configShapes = configShapes;
+
+        var hedge = config.getHedge();
+        this.hedgeBudget = new HedgeBudget(hedge.getBudgetRatio(), hedge.getBudgetBurst());
+        this.hedgesFired = Counter.builder("llm.hedge").tag("result", "fired").register(registry);
+        this.hedgesWon = Counter.builder("llm.hedge").tag("result", "won").register(registry);
+        this.hedgesSkipped = Counter.builder("llm.hedge").tag("result", "over_budget").register(registry);
+        this.hedgesLaneFull = Counter.builder("llm.hedge").tag("result", "lane_full").register(registry);
+        this.jsonComplete = Counter.builder("llm.json.stream").tag("result", "complete").register(registry);
+        this.jsonInvalid = Counter.builder("llm.json.stream").tag("result", "invalid").register(registry);
+        this.jsonIncomplete = Counter.builder("llm.json.stream").tag("result", "incomplete").register(registry);
+
+        // clone: the injected builder may be shared by several endpoints
+        this.rest = builder.clone()
+                .baseUrl(config.getBaseUrl())
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + nullToEmpty(config.getApiKey()))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader("HTTP-Referer", nullToEmpty(or.getAppUrl()))
-                .defaultHeader("X-Title", nullToEmpty(or.getAppName()))
+                .defaultHeader("HTTP-Referer", nullToEmpty(config.getAppUrl()))
+                .defaultHeader("X-Title", nullToEmpty(config.getAppName()))
                 .build();
     }
 
@@ -49,7 +143,8 @@ public class OpenRouterLlmClient implements LlmClient {
                 """;
 
         String raw = callChatCompletion(
-                props.getOpenrouter().getFastModel(),
+                "title",
+                config.getFastModel(),
                 List.of(
                         msg("system", system),
                         msg("user", firstMessage)
@@ -81,7 +176,8 @@ public class OpenRouterLlmClient implements LlmClient {
 
 
         String raw = callChatCompletion(
-                props.getOpenrouter().getStrongModel(),
+                "reply",
+                config.getStrongModel(),
                 List.of(
                         msg("system", system),
                         msg("user", userMessage)
@@ -93,6 +189,39 @@ public class OpenRouterLlmClient implements LlmClient {
         return parseReplyJsonOrFallback(raw);
     }
 
+    /**
+     * Same contract as generateAssistantReply, but the model answers in plain text
+     * (a JSON envelope cannot be shown to the user while it is still incomplete).
+     */
+    @Override
+    public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        String system = """
+        You are Promptline, an assistant inside a developer tool.
+        Be direct and technical. Ask one clarifying question only if required.
+
+        Reply in plain text only (no JSON, no markdown code fences).
+
+        Rules:
+        - DO NOT include "mcp", "actions", "summary", "steps", or any plan JSON
+        - If the user asks for a plan / steps / tool workflow:
+        Reply: "I can propose a plan for this. Say 'yes' to confirm you want a plan."
+        """;
+
+        String reply = callChatCompletionStream(
+                "reply_stream",
+                config.getStrongModel(),
+                List.of(
+                        msg("system", system),
+                        msg("user", userMessage)
+                ),
+                700,
+                0.4,
+                onDelta
+        ).trim();
+
+        return reply.isBlank() ? "⚠️ LLM returned an empty response" : reply;
+    }
+
     /**
      * MCP Step 1: propose a plan.
      * This returns RAW JSON string (stored into plans.proposal_json and also as assistant msg content).
@@ -105,49 +234,13 @@ public class OpenRouterLlmClient implements LlmClient {
                 Output MUST be a single valid JSON object and NOTHING ELSE.
                 No markdown, no explanation, no trailing text.
 
-                Allowed planVersion: "v1"
-                intent MUST be: "runtime_config_change"
-                env MUST be: "live"
-
-                The plan MUST include:
-                - planVersion (string)
-                - intent (string)
-                - env (string)
-                - summary (string, <= 140 chars)
-                - requiresConfirmation (boolean, always true)
-                - changes (array length 1..20)
-
-                Each change MUST be:
-                { "target": "ui" | "policy", "op": "set", "path": "<dot.path>", "value": <any JSON value> }
-
-                The only allowed op is "set".
-
-                Important:
-                - Use the dot-path exactly as the JSON path inside the config files.
-                - For language changes, update policy path like: rules.languageTag = "es" or similar (if that path exists).
-                - For theme changes, update ui path like: theme = "dark" or "light".
-
-                Here are the current canonical config shapes:
-
-                UI config (config/ui.json):
-                {
-                "theme": "dark",
-                "version": 3
-                }
-
-                POLICY config (config/policy.json):
-                {
-                "allowlist": ["/healthz"],
-                "rateLimit": { "rpm": 69 }
-                }
+                """ + planRules() + """
 
                 Now generate the plan JSON for the user request:
                 """;
 
-        // keep context small + deterministic
-        String historyBlock = (chatHistory == null || chatHistory.isEmpty())
-                ? ""
-                : String.join(" | ", chatHistory.stream().limit(12).toList());
+        // already trimmed to the token budget by ConversationContextBuilder
+        String historyBlock = historyBlock(chatHistory, Integer.MAX_VALUE);
 
         String user = """
                 ChatTitle: %s
@@ -159,18 +252,15 @@ public class OpenRouterLlmClient implements LlmClient {
                 nullToEmpty(userMessage)
         );
 
-        String raw = callChatCompletion(
-                props.getOpenrouter().getStrongModel(),
-                List.of(
-                        msg("system", system),
-                        msg("user", user)
-                ),
-                600,
-                0.2
+        var messages = List.of(
+                msg("system", system),
+                msg("user", user)
         );
 
         // Important: return the JSON, not parsed "reply"
-        String json = extractFirstJsonObject(raw);
+        String json = config.isStreamJson()
+                ? streamJsonObject("plan", config.getStrongModel(), messages, 600, 0.2, StreamingJsonObject.plan())
+                : extractFirstJsonObject(callChatCompletion("plan", config.getStrongModel(), messages, 600, 0.2));
         if (json == null) {
             // fail-soft but still valid JSON
             return """
@@ -204,9 +294,8 @@ public class OpenRouterLlmClient implements LlmClient {
                 - Use chat title + brief history for context.
                 """;
 
-        String historyBlock = (chatHistory == null || chatHistory.isEmpty())
-                ? ""
-                : String.join(" | ", chatHistory.stream().limit(10).toList());
+        // the router only needs the latest exchanges
+        String historyBlock = historyBlock(chatHistory, ROUTER_HISTORY_LINES);
 
         String user = """
                 ChatTitle: %s
@@ -215,7 +304,8 @@ public class OpenRouterLlmClient implements LlmClient {
                 """.formatted(nullToEmpty(chatTitle), historyBlock, nullToEmpty(userMessage));
 
         String raw = callChatCompletion(
-                props.getOpenrouter().getFastModel(),
+                "router",
+                config.getFastModel(),
                 List.of(
                         msg("system", system),
                         msg("user", user)
@@ -235,13 +325,283 @@ public class OpenRouterLlmClient implements LlmClient {
         }
     }
 
+    /**
+     * One request for route + title + reply/plan. The plan is checked for shape only here;
+     * the caller validates it like any other proposal. Null on unusable output.
+     */
+    @Override
+    public OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        String system = """
+                You handle one chat turn of a developer assistant in a single combined response.
+
+                Output MUST be a single valid JSON object and NOTHING ELSE. No markdown, no explanation.
+                Schema:
+                {"proposePlan": true|false, "title": "<string>", "reply": "<string>", "plan": { ... }}
+
+                Step 1 - decide proposePlan:
+                - true when the user asks to change the ui/policy runtime config, or asks for steps, a plan, tool calls, MCP, approval workflow
+                - false for normal Q&A or recommendations
+
+                Step 2 - if proposePlan=false: set "reply" to a direct, technical answer (no plan JSON inside it). Omit "plan".
+                         if proposePlan=true: set "plan" to the PLAN JSON described below. Omit "reply".
+
+                Step 3 - %s
+
+                PLAN JSON rules:
+                """.formatted(needsTitle
+                ? "set \"title\": 3 to 8 words, no quotes, no trailing punctuation, no newlines."
+                : "omit \"title\".") + planRules();
+
+        String historyBlock = historyBlock(chatHistory, Integer.MAX_VALUE);
+
+        String user = """
+                ChatTitle: %s
+                History: %s
+                UserRequest: %s
+                """.formatted(nullToEmpty(chatTitle), historyBlock, nullToEmpty(userMessage));
+
+        var messages = List.of(
+                msg("system", system),
+                msg("user", user)
+        );
+
+        String json = config.isStreamJson()
+                ? streamJsonObject("one_shot", config.getStrongModel(), messages, 900, 0.2, StreamingJsonObject.any())
+                : extractFirstJsonObject(callChatCompletion("one_shot", config.getStrongModel(), messages, 900, 0.2));
+        if (json == null) return null;
+
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            JsonNode route = node.get("proposePlan");
+            if (route == null || !route.isBoolean()) return null;
+
+            String title = null;
+            if (needsTitle && node.path("title").isTextual() && !node.path("title").asText().isBlank()) {
+                title = sanitizeTitle(node.path("title").asText());
+            }
+
+            if (route.asBoolean()) {
+                JsonNode plan = node.get("plan");
+                if (plan == null || !plan.isObject()) return null;
+                return new OneShotReply(true, title, null, MAPPER.writeValueAsString(plan));
+            }
+
+            String reply = node.path("reply").asText("");
+            if (reply.isBlank()) return null;
+            return new OneShotReply(false, title, reply.trim(), null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        String system = """
+                You maintain a running summary of a conversation between a user and Promptline,
+                an assistant that proposes runtime config changes (UI config, policy).
+
+                Update the summary with the new messages. Plain text only, no JSON, no markdown.
+
+                Rules:
+                - Keep: the user's goals, decisions, config paths and values mentioned, open questions
+                - Drop: greetings, repetition, anything the new messages supersede
+                - Write in third person ("The user wants ..."), at most %d words
+                """.formatted(Math.max(20, maxTokens * 3 / 4));
+
+        String user = """
+                CurrentSummary: %s
+                NewMessages:
+                %s
+                """.formatted(previousSummary == null ? "(none)" : previousSummary, String.join("\n", newLines));
+
+        String summary = callChatCompletion(
+                "summary",
+                config.getFastModel(),
+                List.of(
+                        msg("system", system),
+                        msg("user", user)
+                ),
+                maxTokens,
+                0.2
+        );
+        return summary == null || summary.isBlank() ? null : summary.trim();
+    }
+
     // ---- Chat completion caller ----
 
-    private String callChatCompletion(String model, List<Map<String, String>> messages) {
-        return callChatCompletion(model, messages, 500, 0.4);
+    private String callChatCompletion(String purpose, String model, List<Map<String, String>> messages) {
+        return callChatCompletion(purpose, model, messages, 500, 0.4);
     }
 
-    private String callChatCompletion(String model,
+    /**
+     * Hedged call: the primary request runs on the calling thread. When it has not answered
+     * within the model's tracked latency percentile, a timer forks a second request to the hedge
+     * model (or the same model) if the hedge budget allows and the caller's ScheduledLlmClient
+     * lane has a free slot (the hedge holds it while it runs). The first valid (non-blank) answer
+     * wins: a winning hedge interrupts the caller, which aborts the primary's HTTP request.
+     * Only primary attempts feed the percentile, so hedges (which start late and often run
+     * alone) do not pull the trigger down.
+     * Streaming calls are never hedged: their deltas are already on the wire.
+     */
+    private String callChatCompletion(String purpose,
+                                      String model,
+                                      List<Map<String, String>> messages,
+                                      int maxTokens,
+                                      double temperature) {
+        var hedge = config.getHedge();
+        if (!hedge.isEnabled()) {
+            return sendChatCompletion(purpose, model, messages, maxTokens, temperature);
+        }
+
+        LatencyTracker tracker = latency(model);
+        long threshold = tracker.percentile(hedge.getPercentile(), hedge.getMinSamples());
+        if (threshold >= 0) threshold = Math.max(threshold, hedge.getMinDelayMs());
+        hedgeBudget.onPrimary();
+
+        HedgeRace race = new HedgeRace(Thread.currentThread());
+        ScheduledFuture<?> timer = null;
+        if (threshold >= 0) {
+            String alt = hedgeModelFor(model);
+            // captured here: the timer thread is outside the scheduled call
+            ScheduledLlmClient.LaneSlots lane = ScheduledLlmClient.currentLane();
+            Runnable hedgeCall = LlmCallContext.propagate(() -> race.hedgeDone(
+                    attempt(purpose + "_hedge", alt, messages, maxTokens, temperature)));
+            timer = hedgeTimer.schedule(() -> race.startHedge(() -> {
+                if (lane != null && !lane.tryAcquire()) {
+                    hedgesLaneFull.increment();
+                    return null;
+                }
+                if (!hedgeBudget.tryAcquire()) {
+                    if (lane != null) lane.release();
+                    hedgesSkipped.increment();
+                    return null;
+                }
+                hedgesFired.increment();
+                // done() also runs when the hedge is cancelled before it started
+                FutureTask<Void> task = new FutureTask<>(hedgeCall, null) {
+                    @Override
+                    protected void done() {
+                        if (lane != null) lane.release();
+                    }
+                };
+                hedgeExecutor.execute(task);
+                return task;
+            }), threshold, TimeUnit.MILLISECONDS);
+        }
+
+        long start = System.nanoTime();
+        Attempt primary = attempt(purpose, model, messages, maxTokens, temperature);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (timer != null) timer.cancel(false);
+
+        try {
+            if (race.primaryFinished()) {
+                // a valid hedge answer interrupted the primary; it took at least this long
+                hedgesWon.increment();
+                tracker.record(elapsedMs);
+                return race.hedge.join().content();
+            }
+            if (primary.error() == null) tracker.record(elapsedMs);
+            if (primary.valid() || !race.hedgeFired()) {
+                if (primary.error() != null) throw primary.error();
+                return primary.content();
+            }
+
+            // primary failed or was blank while a hedge is in flight: wait for it
+            Attempt other = race.hedge.get();
+            if (other.valid()) {
+                hedgesWon.increment();
+                return other.content();
+            }
+            if (primary.error() != null) throw primary.error();
+            return primary.content();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the LLM", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            race.cancelHedge();
+        }
+    }
+
+    private record Attempt(String content, RuntimeException error) {
+        boolean valid() { return error == null && content != null && !content.isBlank(); }
+    }
+
+    private Attempt attempt(String purpose, String model, List<Map<String, String>> messages, int maxTokens,
+                            double temperature) {
+        try {
+            return new Attempt(sendChatCompletion(purpose, model, messages, maxTokens, temperature), null);
+        } catch (RuntimeException e) {
+            return new Attempt(null, e);
+        }
+    }
+
+    /**
+     * Primary (on the caller thread) vs. hedge (forked). State changes happen under the lock, so
+     * the caller's interrupt flag is only set while the primary runs and is cleared when the
+     * caller sees that the hedge won.
+     */
+    private static final class HedgeRace {
+        private static final int RUNNING = 0, FINISHED = 1, HEDGE_WON = 2;
+
+        private final Thread caller;
+        final CompletableFuture<Attempt> hedge = new CompletableFuture<>();
+        private int state = RUNNING;
+        private Future<?> hedgeTask;
+
+        HedgeRace(Thread caller) {
+            this.caller = caller;
+        }
+
+        // under the lock: a hedge never starts after the caller is done with the primary
+        synchronized void startHedge(Supplier<Future<?>> start) {
+            if (state == RUNNING) hedgeTask = start.get();
+        }
+
+        synchronized boolean hedgeFired() {
+            return hedgeTask != null;
+        }
+
+        void hedgeDone(Attempt a) {
+            hedge.complete(a);
+            synchronized (this) {
+                if (a.valid() && state == RUNNING) {
+                    state = HEDGE_WON;
+                    caller.interrupt();
+                }
+            }
+        }
+
+        /** Called by the caller once the primary returned; true when the hedge won. */
+        synchronized boolean primaryFinished() {
+            if (state == HEDGE_WON) {
+                Thread.interrupted(); // ours, not a cancellation of the caller
+                return true;
+            }
+            state = FINISHED;
+            return false;
+        }
+
+        synchronized void cancelHedge() {
+            if (hedgeTask != null) hedgeTask.cancel(true);
+        }
+    }
+
+    private LatencyTracker latency(String model) {
+        return latencyByModel.computeIfAbsent(model, m -> new LatencyTracker(LATENCY_WINDOW));
+    }
+
+    private String hedgeModelFor(String model) {
+        String alt = model.equals(config.getFastModel()) ? config.getHedge().getFastModel()
+                : model.equals(config.getStrongModel()) ? config.getHedge().getStrongModel()
+                : null;
+        return (alt == null || alt.isBlank()) ? model : alt;
+    }
+
+    private String sendChatCompletion(String purpose,
+                                      String model,
                                       List<Map<String, String>> messages,
                                       int maxTokens,
                                       double temperature) {
@@ -253,11 +613,20 @@ public class OpenRouterLlmClient implements LlmClient {
                 "max_tokens", maxTokens
         );
 
-        ChatCompletionResponse res = rest.post()
-                .uri("/chat/completions")
-                .body(body)
-                .retrieve()
-                .body(ChatCompletionResponse.class);
+        long start = System.nanoTime();
+        ChatCompletionResponse res;
+        try {
+            res = rest.post()
+                    .uri("/chat/completions")
+                    .body(body)
+                    .retrieve()
+                    .body(ChatCompletionResponse.class);
+        } catch (RuntimeException e) {
+            recordUsage(purpose, model, null, start, Thread.currentThread().isInterrupted()
+                    ? LlmCallRecord.CANCELLED : LlmCallRecord.ERROR);
+            throw e;
+        }
+        recordUsage(purpose, model, res == null ? null : res.usage, start, LlmCallRecord.OK);
 
         if (res == null || res.choices == null || res.choices.isEmpty()
                 || res.choices.get(0).message == null
@@ -268,6 +637,146 @@ public class OpenRouterLlmClient implements LlmClient {
         return res.choices.get(0).message.content.trim();
     }
 
+    private static Usage estimatedUsage(List<Map<String, String>> messages, CharSequence completion) {
+        Usage u = new Usage();
+        u.promptTokens = messages.stream().mapToInt(m -> TokenEstimator.estimate(m.get("content"))).sum();
+        u.completionTokens = TokenEstimator.estimate(completion.toString());
+        return u;
+    }
+
+    private void recordUsage(String purpose, String model, Usage usage, long startNanos, String outcome) {
+        usageRecorder.record(new LlmCallRecord(
+                Instant.now(),
+                LlmCallContext.chatId(),
+                purpose,
+                model,
+                config.getBaseUrl(),
+                usage == null || usage.promptTokens == null ? 0 : usage.promptTokens,
+                usage == null || usage.completionTokens == null ? 0 : usage.completionTokens,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                outcome
+        ));
+    }
+
+    /**
+     * Streams the completion through `scanner` and stops reading as soon as the first JSON object
+     * is complete or clearly invalid; closing the response aborts the generation upstream, so
+     * trailing text and the rest of a broken plan are never paid for. Returns the object, or null
+     * when it was invalid or never completed. Not hedged (see callChatCompletion).
+     */
+    private String streamJsonObject(String purpose,
+                                    String model,
+                                    List<Map<String, String>> messages,
+                                    int maxTokens,
+                                    double temperature,
+                                    StreamingJsonObject scanner) {
+        callChatCompletionStream(purpose, model, messages, maxTokens, temperature, delta -> {
+            if (scanner.feed(delta) != StreamingJsonObject.State.MORE) throw StopStream.INSTANCE;
+        });
+
+        switch (scanner.state()) {
+            case COMPLETE -> {
+                jsonComplete.increment();
+                return scanner.json();
+            }
+            case INVALID -> {
+                jsonInvalid.increment();
+                System.err.println("LLM " + purpose + " output aborted early: " + scanner.error());
+                return null;
+            }
+            default -> {
+                jsonIncomplete.increment();
+                return null;
+            }
+        }
+    }
+
+    // Thrown by an onDelta consumer to end a stream early; no stack trace, it is control flow
+    private static final class StopStream extends RuntimeException {
+        static final StopStream INSTANCE = new StopStream();
+
+        private StopStream() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * stream=true variant: reads the server-sent chunks line by line and forwards each
+     * choices[0].delta.content as it arrives. Returns the concatenated completion.
+     * An onDelta that throws StopStream ends the stream there (usage is then estimated locally).
+     */
+    private String callChatCompletionStream(String purpose,
+                                            String model,
+                                            List<Map<String, String>> messages,
+                                            int maxTokens,
+                                            double temperature,
+                                            Consumer<String> onDelta) {
+
+        var body = Map.of(
+                "model", model,
+                "messages", messages,
+                "temperature", temperature,
+                "max_tokens", maxTokens,
+                "stream", true,
+                // final chunk carries the usage block
+                "stream_options", Map.of("include_usage", true)
+        );
+
+        long start = System.nanoTime();
+        Usage[] usage = new Usage[1];
+        try {
+            String reply = rest.post()
+                    .uri("/chat/completions")
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(body)
+                    .exchange((req, res) -> {
+                        if (res.getStatusCode().isError()) {
+                            throw new IllegalStateException("LLM stream failed: HTTP " + res.getStatusCode().value());
+                        }
+
+                        StringBuilder full = new StringBuilder();
+                        try (BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(res.getBody(), StandardCharsets.UTF_8))) {
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                // cancelled (e.g. losing speculative branch): stop reading, closing the response aborts the stream
+                                if (Thread.currentThread().isInterrupted()) {
+                                    throw new IllegalStateException("LLM stream cancelled");
+                                }
+                                // skip blank separators and ": keep-alive" comments
+                                if (!line.startsWith("data:")) continue;
+
+                                String data = line.substring(5).trim();
+                                if ("[DONE]".equals(data)) break;
+
+                                JsonNode chunk = MAPPER.readTree(data);
+                                if (chunk.hasNonNull("usage")) {
+                                    usage[0] = MAPPER.treeToValue(chunk.get("usage"), Usage.class);
+                                }
+                                String delta = chunk.path("choices").path(0).path("delta").path("content").asText("");
+                                if (!delta.isEmpty()) {
+                                    full.append(delta);
+                                    try {
+                                        onDelta.accept(delta);
+                                    } catch (StopStream stop) {
+                                        // no usage chunk will come: bill what was sent and received
+                                        usage[0] = estimatedUsage(messages, full);
+                                        break;
+                                    }
+                                }
+                            }
+                        }
+                        return full.toString();
+                    });
+            recordUsage(purpose, model, usage[0], start, LlmCallRecord.OK);
+            return reply;
+        } catch (RuntimeException e) {
+            recordUsage(purpose, model, usage[0], start, Thread.currentThread().isInterrupted()
+                    ? LlmCallRecord.CANCELLED : LlmCallRecord.ERROR);
+            throw e;
+        }
+    }
+
     // ---- JSON parsing helpers ----
 
     private static String parseTitleJsonOrFallback(String raw, String firstMessage) {
@@ -302,24 +811,9 @@ public class OpenRouterLlmClient implements LlmClient {
         }
     }
 
+    // string-aware: braces inside string values do not count
     private static String extractFirstJsonObject(String raw) {
-        if (raw == null) return null;
-
-        int start = raw.indexOf('{');
-        if (start < 0) return null;
-
-        int depth = 0;
-        for (int i = start; i < raw.length(); i++) {
-            char c = raw.charAt(i);
-            if (c == '{') depth++;
-            else if (c == '}') {
-                depth--;
-                if (depth == 0) {
-                    return raw.substring(start, i + 1);
-                }
-            }
-        }
-        return null;
+        return StreamingJsonObject.extractFirst(raw);
     }
 
     private static String sanitizeTitle(String t) {
@@ -341,16 +835,27 @@ public class OpenRouterLlmClient implements LlmClient {
         return cleaned.length() <= 42 ? cleaned : cleaned.substring(0, 42) + "…";
     }
 
+    private String planRules() {
+        return PLAN_RULES + configShapes.get();
+    }
+
     private static Map<String, String> msg(String role, String content) {
         return Map.of("role", role, "content", content);
     }
 
+    // History arrives oldest first; keep the newest maxLines
+    private static String historyBlock(List<String> history, int maxLines) {
+        if (history == null || history.isEmpty()) return "";
+        return String.join(" | ", history.subList(Math.max(0, history.size() - maxLines), history.size()));
+    }
+
     private static String nullToEmpty(String s) {
         return s == null ? "" : s;
     }
 
     public static class ChatCompletionResponse {
         public List<Choice> choices;
+        public Usage usage;
 
         public static class Choice {
             public Message message;
@@ -361,4 +866,12 @@ public class OpenRouterLlmClient implements LlmClient {
             public String content;
         }
     }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Usage {
+        @JsonProperty("prompt_tokens")
+        public Integer promptTokens;
+        @JsonProperty("completion_tokens")
+        public Integer completionTokens;
+    }
 }
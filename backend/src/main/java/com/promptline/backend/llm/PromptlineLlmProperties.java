@@ -2,25 +2,99 @@ package com.promptline.backend.llm;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @ConfigurationProperties(prefix = "promptline.llm")
 public class PromptlineLlmProperties {
 
     private String provider = "noop";
+    // stream assistant replies as MESSAGE_DELTA events while they are generated
+    private boolean streaming = false;
+    // start router, title, plan and reply concurrently; the router cancels the losing branch
+    private boolean speculative = false;
+    // route + title + reply/plan in one combined call; falls back to separate calls on bad output
+    private boolean oneShot = false;
     private OpenRouter openrouter = new OpenRouter();
+    // several OpenAI-compatible endpoints behind RoutingLlmClient; unset fields inherit from openrouter
+    private List<OpenRouter> endpoints = new ArrayList<>();
+    private Routing routing = new Routing();
+    private Noop noop = new Noop();
+    private Cache cache = new Cache();
+    private Intent intent = new Intent();
+    private Scheduler scheduler = new Scheduler();
+    private Context context = new Context();
+    private Summary summary = new Summary();
+    private PlanTemplate planTemplate = new PlanTemplate();
+    private PlanCompiler planCompiler = new PlanCompiler();
+    private ConfigShapes configShapes = new ConfigShapes();
+    private Usage usage = new Usage();
 
     public String getProvider() { return provider; }
     public void setProvider(String provider) { this.provider = provider; }
 
+    public boolean isStreaming() { return streaming; }
+    public void setStreaming(boolean streaming) { this.streaming = streaming; }
+
+    public boolean isSpeculative() { return speculative; }
+    public void setSpeculative(boolean speculative) { this.speculative = speculative; }
+
+    public boolean isOneShot() { return oneShot; }
+    public void setOneShot(boolean oneShot) { this.oneShot = oneShot; }
+
     public OpenRouter getOpenrouter() { return openrouter; }
     public void setOpenrouter(OpenRouter openrouter) { this.openrouter = openrouter; }
 
+    public List<OpenRouter> getEndpoints() { return endpoints; }
+    public void setEndpoints(List<OpenRouter> endpoints) { this.endpoints = endpoints; }
+
+    public Routing getRouting() { return routing; }
+    public void setRouting(Routing routing) { this.routing = routing; }
+
+    public Noop getNoop() { return noop; }
+    public void setNoop(Noop noop) { this.noop = noop; }
+
+    public Cache getCache() { return cache; }
+    public void setCache(Cache cache) { this.cache = cache; }
+
+    public Intent getIntent() { return intent; }
+    public void setIntent(Intent intent) { this.intent = intent; }
+
+    public Scheduler getScheduler() { return scheduler; }
+    public void setScheduler(Scheduler scheduler) { this.scheduler = scheduler; }
+
+    public Context getContext() { return context; }
+    public void setContext(Context context) { this.context = context; }
+
+    public Summary getSummary() { return summary; }
+    public void setSummary(Summary summary) { this.summary = summary; }
+
+    public PlanTemplate getPlanTemplate() { return planTemplate; }
+    public void setPlanTemplate(PlanTemplate planTemplate) { this.planTemplate = planTemplate; }
+
+    public PlanCompiler getPlanCompiler() { return planCompiler; }
+    public void setPlanCompiler(PlanCompiler planCompiler) { this.planCompiler = planCompiler; }
+
+    public ConfigShapes getConfigShapes() { return configShapes; }
+    public void setConfigShapes(ConfigShapes configShapes) { this.configShapes = configShapes; }
+
+    public Usage getUsage() { return usage; }
+    public void setUsage(Usage usage) { this.usage = usage; }
+
     public static class OpenRouter {
+        private String name;
         private String apiKey;
         private String baseUrl = "https://openrouter.ai/api/v1";
         private String fastModel;
         private String strongModel;
         private String appUrl;
         private String appName;
+        // plan / one-shot JSON is streamed and cut off once complete or invalid (instead of hedged)
+        private boolean streamJson = true;
+        private Hedge hedge = new Hedge();
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
 
         public String getApiKey() { return apiKey; }
         public void setApiKey(String apiKey) { this.apiKey = apiKey; }
@@ -39,5 +113,250 @@ public class PromptlineLlmProperties {
 
         public String getAppName() { return appName; }
         public void setAppName(String appName) { this.appName = appName; }
+
+        public boolean isStreamJson() { return streamJson; }
+        public void setStreamJson(boolean streamJson) { this.streamJson = streamJson; }
+
+        public Hedge getHedge() { return hedge; }
+        public void setHedge(Hedge hedge) { this.hedge = hedge; }
+    }
+
+    public static class Hedge {
+        // second request when the primary is slower than this percentile of recent calls.
+        // Non-streamed calls only: with streamJson (default) plans and one-shot are not hedged,
+        // leaving the router, title and non-streamed replies
+        private boolean enabled = true;
+        private double percentile = 0.95;
+        private int minSamples = 50;
+        private long minDelayMs = 250;
+        // at most budgetRatio hedges per primary request (token bucket, burst budgetBurst)
+        private double budgetRatio = 0.05;
+        private double budgetBurst = 10;
+        // alternate models for hedges; blank = same model
+        private String fastModel;
+        private String strongModel;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getPercentile() { return percentile; }
+        public void setPercentile(double percentile) { this.percentile = percentile; }
+
+        public int getMinSamples() { return minSamples; }
+        public void setMinSamples(int minSamples) { this.minSamples = minSamples; }
+
+        public long getMinDelayMs() { return minDelayMs; }
+        public void setMinDelayMs(long minDelayMs) { this.minDelayMs = minDelayMs; }
+
+        public double getBudgetRatio() { return budgetRatio; }
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+
+        public double getBudgetBurst() { return budgetBurst; }
+        public void setBudgetBurst(double budgetBurst) { this.budgetBurst = budgetBurst; }
+
+        public String getFastModel() { return fastModel; }
+        public void setFastModel(String fastModel) { this.fastModel = fastModel; }
+
+        public String getStrongModel() { return strongModel; }
+        public void setStrongModel(String strongModel) { this.strongModel = strongModel; }
+    }
+
+    public static class Noop {
+        // simulated latency per call, for load tests without a real provider
+        private long latencyMs = 0;
+
+        public long getLatencyMs() { return latencyMs; }
+        public void setLatencyMs(long latencyMs) { this.latencyMs = latencyMs; }
+    }
+
+    public static class Cache {
+        // router decision + title generation (see CachingLlmClient)
+        private boolean enabled = true;
+        private int maxEntries = 5000;
+        private long ttlSeconds = 600;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+
+        public long getTtlSeconds() { return ttlSeconds; }
+        public void setTtlSeconds(long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+    }
+
+    public static class Intent {
+        // local plan/chat classifier in front of shouldProposePlan (see IntentClassifier)
+        private boolean enabled = true;
+        private double planThreshold = 0.9;
+        private double chatThreshold = 0.1;
+        private int minExamples = 200;
+        private int maxExamples = 20000;
+        // holdout precision of confident decisions required before the model goes live
+        private double minPrecision = 0.97;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getPlanThreshold() { return planThreshold; }
+        public void setPlanThreshold(double planThreshold) { this.planThreshold = planThreshold; }
+
+        public double getChatThreshold() { return chatThreshold; }
+        public void setChatThreshold(double chatThreshold) { this.chatThreshold = chatThreshold; }
+
+        public int getMinExamples() { return minExamples; }
+        public void setMinExamples(int minExamples) { this.minExamples = minExamples; }
+
+        public int getMaxExamples() { return maxExamples; }
+        public void setMaxExamples(int maxExamples) { this.maxExamples = maxExamples; }
+
+        public double getMinPrecision() { return minPrecision; }
+        public void setMinPrecision(double minPrecision) { this.minPrecision = minPrecision; }
+    }
+
+    public static class Scheduler {
+        // per-tier bulkheads for outbound calls (see ScheduledLlmClient)
+        private boolean enabled = true;
+        private int fastConcurrency = 16;
+        private int strongConcurrency = 8;
+        private long fastQueueTimeoutMs = 2000;
+        private long strongQueueTimeoutMs = 15000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getFastConcurrency() { return fastConcurrency; }
+        public void setFastConcurrency(int fastConcurrency) { this.fastConcurrency = fastConcurrency; }
+
+        public int getStrongConcurrency() { return strongConcurrency; }
+        public void setStrongConcurrency(int strongConcurrency) { this.strongConcurrency = strongConcurrency; }
+
+        public long getFastQueueTimeoutMs() { return fastQueueTimeoutMs; }
+        public void setFastQueueTimeoutMs(long fastQueueTimeoutMs) { this.fastQueueTimeoutMs = fastQueueTimeoutMs; }
+
+        public long getStrongQueueTimeoutMs() { return strongQueueTimeoutMs; }
+        public void setStrongQueueTimeoutMs(long strongQueueTimeoutMs) { this.strongQueueTimeoutMs = strongQueueTimeoutMs; }
+    }
+
+    public static class Routing {
+        // see RoutingLlmClient
+        private double ewmaAlpha = 0.2;
+        private int ejectAfterFailures = 5;
+        private double ejectErrorRate = 0.5;
+        private long ejectBaseMs = 5000;
+        private long ejectMaxMs = 120000;
+
+        public double getEwmaAlpha() { return ewmaAlpha; }
+        public void setEwmaAlpha(double ewmaAlpha) { this.ewmaAlpha = ewmaAlpha; }
+
+        public int getEjectAfterFailures() { return ejectAfterFailures; }
+        public void setEjectAfterFailures(int ejectAfterFailures) { this.ejectAfterFailures = ejectAfterFailures; }
+
+        public double getEjectErrorRate() { return ejectErrorRate; }
+        public void setEjectErrorRate(double ejectErrorRate) { this.ejectErrorRate = ejectErrorRate; }
+
+        public long getEjectBaseMs() { return ejectBaseMs; }
+        public void setEjectBaseMs(long ejectBaseMs) { this.ejectBaseMs = ejectBaseMs; }
+
+        public long getEjectMaxMs() { return ejectMaxMs; }
+        public void setEjectMaxMs(long ejectMaxMs) { this.ejectMaxMs = ejectMaxMs; }
+    }
+
+    public static class Context {
+        // conversation history sent with plan / router / one-shot prompts (see ConversationContextBuilder)
+        private int tokenBudget = 1500;
+        private int maxMessages = 40;
+        // a single long message is cut to this many tokens so it cannot take the whole budget
+        private int maxMessageTokens = 400;
+        private int pageSize = 16;
+
+        public int getTokenBudget() { return tokenBudget; }
+        public void setTokenBudget(int tokenBudget) { this.tokenBudget = tokenBudget; }
+
+        public int getMaxMessages() { return maxMessages; }
+        public void setMaxMessages(int maxMessages) { this.maxMessages = maxMessages; }
+
+        public int getMaxMessageTokens() { return maxMessageTokens; }
+        public void setMaxMessageTokens(int maxMessageTokens) { this.maxMessageTokens = maxMessageTokens; }
+
+        public int getPageSize() { return pageSize; }
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    }
+
+    public static class Summary {
+        // rolling per-chat summary, folded in the background with the fast model (see ChatSummarizer)
+        private boolean enabled = true;
+        // fold once this many messages beyond keepRecent are unsummarized
+        private int every = 8;
+        // newest messages that always stay verbatim in the context
+        private int keepRecent = 6;
+        private int maxFoldMessages = 40;
+        private int maxTokens = 300;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getEvery() { return every; }
+        public void setEvery(int every) { this.every = every; }
+
+        public int getKeepRecent() { return keepRecent; }
+        public void setKeepRecent(int keepRecent) { this.keepRecent = keepRecent; }
+
+        public int getMaxFoldMessages() { return maxFoldMessages; }
+        public void setMaxFoldMessages(int maxFoldMessages) { this.maxFoldMessages = maxFoldMessages; }
+
+        public int getMaxTokens() { return maxTokens; }
+        public void setMaxTokens(int maxTokens) { this.maxTokens = maxTokens; }
+    }
+
+    public static class PlanTemplate {
+        // reuse confirmed plans for near-identical requests (see PlanTemplateCache)
+        private boolean enabled = true;
+        // shingle Jaccard similarity between the new and the cached request
+        private double minSimilarity = 0.8;
+        // confirmed plans (all agreeing) needed before a request becomes a template
+        private int minSupport = 1;
+        private int maxEntries = 5000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getMinSimilarity() { return minSimilarity; }
+        public void setMinSimilarity(double minSimilarity) { this.minSimilarity = minSimilarity; }
+
+        public int getMinSupport() { return minSupport; }
+        public void setMinSupport(int minSupport) { this.minSupport = minSupport; }
+
+        public int getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+    }
+
+    public static class PlanCompiler {
+        // plans for plain "set <path> to <value>" requests without the LLM (see mcp.plan.PlanCompiler)
+        private boolean enabled = true;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    public static class ConfigShapes {
+        // config paths + types in the plan prompts (see ConfigShapeSummary)
+        private int maxTokens = 400;
+        // objects with this many scalar members of one type become a single "prefix.*" line
+        private int collapseKeys = 12;
+
+        public int getMaxTokens() { return maxTokens; }
+        public void setMaxTokens(int maxTokens) { this.maxTokens = maxTokens; }
+
+        public int getCollapseKeys() { return collapseKeys; }
+        public void setCollapseKeys(int collapseKeys) { this.collapseKeys = collapseKeys; }
+    }
+
+    public static class Usage {
+        // llm_calls rows older than this are deleted (see usage.LlmUsageRecorder.prune); 0 keeps them
+        private int retentionDays = 30;
+
+        public int getRetentionDays() { return retentionDays; }
+        public void setRetentionDays(int retentionDays) { this.retentionDays = retentionDays; }
     }
 }
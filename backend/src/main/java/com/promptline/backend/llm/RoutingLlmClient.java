@@ -0,0 +1,241 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spreads calls over several OpenAI-compatible endpoints.
+ *
+ * Selection is power-of-two-choices over healthy endpoints, cost = EWMA latency x (in-flight + 1)
+ * / (1 - EWMA error rate), so slow or flaky endpoints get proportionally less traffic.
+ * An endpoint is ejected after ejectAfterFailures consecutive failures (or when its error rate
+ * passes ejectErrorRate), for ejectBaseMs doubling per repeat ejection up to ejectMaxMs. When
+ * that time is up, exactly one real call is let through as a recovery probe: success restores
+ * the endpoint, failure ejects it again for longer. If every endpoint is ejected, the one that
+ * is due back first is used anyway rather than failing the call outright.
+ *
+ * A failed call is retried once on another endpoint (for streaming, only if no delta was sent).
+ *
+ * Metrics per endpoint: llm.endpoint.calls{outcome}, llm.endpoint.latency.ewma,
+ * llm.endpoint.error.rate, llm.endpoint.ejected.
+ */
+public class RoutingLlmClient implements LlmClient {
+
+    private final List<Endpoint> endpoints;
+    private final PromptlineLlmProperties.Routing cfg;
+
+    private final class Endpoint {
+        final String name;
+        final LlmClient client;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean probing = new AtomicBoolean();
+        final Counter ok;
+        final Counter failed;
+
+        // guarded by this
+        double ewmaLatencyMs = 1000;
+        double ewmaErrorRate = 0;
+        int consecutiveFailures;
+        int ejections;
+        long ejectedUntil; // System.nanoTime() deadline, 0 = healthy
+
+        Endpoint(String name, LlmClient client, MeterRegistry registry) {
+            this.name = name;
+            this.client = client;
+            this.ok = Counter.builder("llm.endpoint.calls").tag("endpoint", name).tag("outcome", "ok").register(registry);
+            this.failed = Counter.builder("llm.endpoint.calls").tag("endpoint", name).tag("outcome", "error").register(registry);
+            Gauge.builder("llm.endpoint.latency.ewma", this, e -> e.snapshot()[0]).tag("endpoint", name).register(registry);
+            Gauge.builder("llm.endpoint.error.rate", this, e -> e.snapshot()[1]).tag("endpoint", name).register(registry);
+            Gauge.builder("llm.endpoint.ejected", this, e -> e.snapshot()[2]).tag("endpoint", name).register(registry);
+        }
+
+        synchronized double[] snapshot() {
+            return new double[]{ewmaLatencyMs, ewmaErrorRate, ejectedUntil != 0 ? 1 : 0};
+        }
+
+        synchronized boolean healthy() {
+            return ejectedUntil == 0;
+        }
+
+        synchronized boolean dueForProbe(long now) {
+            return ejectedUntil != 0 && now >= ejectedUntil;
+        }
+
+        synchronized double cost() {
+            return ewmaLatencyMs * (inFlight.get() + 1) / Math.max(0.05, 1 - ewmaErrorRate);
+        }
+
+        // probe: this call is the recovery probe (won `probing` in pick); only it restores or re-ejects
+        synchronized void onSuccess(long latencyMs, boolean probe) {
+            double a = cfg.getEwmaAlpha();
+            ewmaLatencyMs = ewmaLatencyMs * (1 - a) + latencyMs * a;
+            ewmaErrorRate = ewmaErrorRate * (1 - a);
+            consecutiveFailures = 0;
+            if (probe && ejectedUntil != 0) {
+                System.out.println("LLM endpoint " + name + " recovered");
+                ejectedUntil = 0;
+                ejections = 0;
+            }
+        }
+
+        synchronized void onFailure(Throwable error, boolean probe) {
+            double a = cfg.getEwmaAlpha();
+            ewmaErrorRate = ewmaErrorRate * (1 - a) + a;
+            consecutiveFailures++;
+
+            // a call that was already running when the endpoint got ejected does not extend the ejection
+            if (!probe && ejectedUntil != 0) return;
+            if (probe || consecutiveFailures >= cfg.getEjectAfterFailures()
+                    || ewmaErrorRate >= cfg.getEjectErrorRate()) {
+                ejections++;
+                long backoff = Math.min(cfg.getEjectMaxMs(), cfg.getEjectBaseMs() << Math.min(10, ejections - 1));
+                ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+                System.err.println("LLM endpoint " + name + " ejected for " + backoff + " ms: " + error.getMessage());
+            }
+        }
+    }
+
+    public RoutingLlmClient(List<Named> clients, PromptlineLlmProperties.Routing cfg, MeterRegistry registry) {
+        this.cfg = cfg;
+        List<Endpoint> list = new ArrayList<>();
+        for (Named n : clients) list.add(new Endpoint(n.name(), n.client(), registry));
+        this.endpoints = List.copyOf(list);
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("RoutingLlmClient needs at least one endpoint");
+    }
+
+    public record Named(String name, LlmClient client) {}
+
+    // probe = this call won the endpoint's single recovery probe slot
+    private record Pick(Endpoint endpoint, boolean probe) {}
+
+    @Override
+    public String generateTitleFromFirstUserMessage(String firstMessage) {
+        return route(c -> c.generateTitleFromFirstUserMessage(firstMessage));
+    }
+
+    @Override
+    public String generateAssistantReply(String chatTitle, String userMessage) {
+        return route(c -> c.generateAssistantReply(chatTitle, userMessage));
+    }
+
+    @Override
+    public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracking = d -> {
+            emitted.set(true);
+            onDelta.accept(d);
+        };
+        Pick first = pick(null);
+        try {
+            return call(first, c -> c.streamAssistantReply(chatTitle, userMessage, tracking));
+        } catch (RuntimeException e) {
+            // half a reply is already on screen: retrying elsewhere would duplicate it
+            if (emitted.get() || endpoints.size() == 1) throw e;
+            return call(pick(first.endpoint()), c -> c.streamAssistantReply(chatTitle, userMessage, tracking));
+        }
+    }
+
+    @Override
+    public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        return route(c -> c.generatePlanJson(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        return route(c -> c.shouldProposePlan(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        return route(c -> c.respondOneShot(chatTitle, chatHistory, userMessage, needsTitle));
+    }
+
+    @Override
+    public String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return route(c -> c.summarizeConversation(previousSummary, newLines, maxTokens));
+    }
+
+    // ---- routing ----
+
+    private <T> T route(Function<LlmClient, T> fn) {
+        Pick first = pick(null);
+        try {
+            return call(first, fn);
+        } catch (RuntimeException e) {
+            if (endpoints.size() == 1 || Thread.currentThread().isInterrupted()) throw e;
+            return call(pick(first.endpoint()), fn);
+        }
+    }
+
+    private <T> T call(Pick pick, Function<LlmClient, T> fn) {
+        Endpoint e = pick.endpoint();
+        e.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = fn.apply(e.client);
+            e.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), pick.probe());
+            e.ok.increment();
+            return result;
+        } catch (RuntimeException ex) {
+            // a cancelled call (losing speculative branch / hedge) says nothing about the endpoint
+            if (!Thread.currentThread().isInterrupted()) {
+                e.onFailure(ex, pick.probe());
+                e.failed.increment();
+            }
+            throw ex;
+        } finally {
+            e.inFlight.decrementAndGet();
+            // only the probe owns the flag; other calls finishing must not open a second probe
+            if (pick.probe()) e.probing.set(false);
+        }
+    }
+
+    /** Picks an endpoint other than `exclude` when possible. */
+    private Pick pick(Endpoint exclude) {
+        long now = System.nanoTime();
+
+        // an ejected endpoint whose time is up gets exactly one probe call
+        for (Endpoint e : endpoints) {
+            if (e != exclude && e.dueForProbe(now) && e.probing.compareAndSet(false, true)) return new Pick(e, true);
+        }
+
+        List<Endpoint> healthy = new ArrayList<>();
+        for (Endpoint e : endpoints) {
+            if (e != exclude && e.healthy()) healthy.add(e);
+        }
+
+        if (healthy.isEmpty()) {
+            // everything is ejected (or excluded): fail open on the endpoint due back first
+            Endpoint best = null;
+            long bestUntil = Long.MAX_VALUE;
+            for (Endpoint e : endpoints) {
+                if (e == exclude && endpoints.size() > 1) continue;
+                long until;
+                synchronized (e) { until = e.ejectedUntil; }
+                if (best == null || until < bestUntil) {
+                    best = e;
+                    bestUntil = until;
+                }
+            }
+            return new Pick(best, false);
+        }
+        if (healthy.size() == 1) return new Pick(healthy.get(0), false);
+
+        // power of two choices
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Endpoint a = healthy.get(rnd.nextInt(healthy.size()));
+        Endpoint b = healthy.get(rnd.nextInt(healthy.size() - 1));
+        if (b == a) b = healthy.get(healthy.size() - 1);
+        return new Pick(a.cost() <= b.cost() ? a : b, false);
+    }
+}
@@ -0,0 +1,273 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead + priority scheduler for outbound LLM calls.
+ *
+ * Two lanes with their own concurrency limit: FAST (router, title, summary on fastModel) and STRONG
+ * (reply, plan, one-shot on strongModel), so cheap calls never queue behind long generations.
+ * Inside a lane, waiting calls start by priority, then arrival order. A call that cannot start
+ * within its lane's queue deadline is rejected with {@link LlmRejectedException} (503): right
+ * away when the estimated wait already exceeds the deadline, otherwise when the deadline passes.
+ *
+ * A call may fork extra requests (OpenRouterLlmClient hedges): they take a slot from the same
+ * lane through {@link #currentLane}, without queueing, so the lane limit caps upstream requests
+ * rather than calls.
+ *
+ * Uses ReentrantLock rather than synchronized so waiting virtual threads do not pin carriers.
+ *
+ * Metrics per tier: llm.scheduler.queue.depth, llm.scheduler.active, llm.scheduler.wait,
+ * llm.scheduler.rejected{reason=estimate|deadline}.
+ */
+public class ScheduledLlmClient implements LlmClient {
+
+    // lower value starts first
+    private static final int PRIORITY_ROUTER = 0;
+    private static final int PRIORITY_TITLE = 1;
+    private static final int PRIORITY_SUMMARY = 2; // background, nobody is waiting on it
+    private static final int PRIORITY_REPLY = 0;
+    private static final int PRIORITY_PLAN = 1;
+
+    /** Extra slots for requests forked by the running call. */
+    interface LaneSlots {
+        /** Takes a free slot, or returns false (never waits) when the lane is at its limit or has a queue. */
+        boolean tryAcquire();
+
+        void release();
+    }
+
+    // lane of the scheduled call running on this thread
+    private static final ThreadLocal<Lane> CURRENT_LANE = new ThreadLocal<>();
+
+    private final LlmClient delegate;
+    private final Lane fast;
+    private final Lane strong;
+
+    public ScheduledLlmClient(LlmClient delegate, PromptlineLlmProperties.Scheduler props, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.fast = new Lane("fast", props.getFastConcurrency(), props.getFastQueueTimeoutMs(), registry);
+        this.strong = new Lane("strong", props.getStrongConcurrency(), props.getStrongQueueTimeoutMs(), registry);
+    }
+
+    @Override
+    public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        return fast.run(PRIORITY_ROUTER, () -> delegate.shouldProposePlan(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public String generateTitleFromFirstUserMessage(String firstMessage) {
+        return fast.run(PRIORITY_TITLE, () -> delegate.generateTitleFromFirstUserMessage(firstMessage));
+    }
+
+    @Override
+    public String generateAssistantReply(String chatTitle, String userMessage) {
+        return strong.run(PRIORITY_REPLY, () -> delegate.generateAssistantReply(chatTitle, userMessage));
+    }
+
+    @Override
+    public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        return strong.run(PRIORITY_REPLY, () -> delegate.streamAssistantReply(chatTitle, userMessage, onDelta));
+    }
+
+    @Override
+    public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        return strong.run(PRIORITY_PLAN, () -> delegate.generatePlanJson(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        return strong.run(PRIORITY_REPLY, () -> delegate.respondOneShot(chatTitle, chatHistory, userMessage, needsTitle));
+    }
+
+    @Override
+    public String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return fast.run(PRIORITY_SUMMARY, () -> delegate.summarizeConversation(previousSummary, newLines, maxTokens));
+    }
+
+    /** The lane of the scheduled call running on this thread; null outside one (or when the scheduler is off). */
+    static LaneSlots currentLane() {
+        return CURRENT_LANE.get();
+    }
+
+    private static final class Lane implements LaneSlots {
+
+        private final String tier;
+        private final int limit;
+        private final long deadlineNanos;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+        private final AtomicLong seq = new AtomicLong();
+        private int active;
+        // EWMA of call duration, used to estimate queue wait
+        private double avgServiceNanos = TimeUnit.SECONDS.toNanos(1);
+
+        private final Timer wait;
+        private final Counter rejectedEstimate;
+        private final Counter rejectedDeadline;
+
+        private final class Waiter implements Comparable<Waiter> {
+            final int priority;
+            final long order = seq.getAndIncrement();
+            final Condition turn = lock.newCondition();
+            boolean granted;
+
+            Waiter(int priority) {
+                this.priority = priority;
+            }
+
+            @Override
+            public int compareTo(Waiter o) {
+                return priority != o.priority ? Integer.compare(priority, o.priority) : Long.compare(order, o.order);
+            }
+        }
+
+        Lane(String tier, int limit, long queueTimeoutMs, MeterRegistry registry) {
+            this.tier = tier;
+            this.limit = Math.max(1, limit);
+            this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, queueTimeoutMs));
+
+            this.wait = Timer.builder("llm.scheduler.wait").tag("tier", tier).register(registry);
+            this.rejectedEstimate = Counter.builder("llm.scheduler.rejected")
+                    .tag("tier", tier).tag("reason", "estimate").register(registry);
+            this.rejectedDeadline = Counter.builder("llm.scheduler.rejected")
+                    .tag("tier", tier).tag("reason", "deadline").register(registry);
+            Gauge.builder("llm.scheduler.queue.depth", this, Lane::queueDepth).tag("tier", tier).register(registry);
+            Gauge.builder("llm.scheduler.active", this, Lane::activeCount).tag("tier", tier).register(registry);
+        }
+
+        <T> T run(int priority, Supplier<T> call) {
+            acquire(priority);
+            Lane previous = CURRENT_LANE.get();
+            CURRENT_LANE.set(this);
+            long start = System.nanoTime();
+            try {
+                return call.get();
+            } finally {
+                if (previous == null) CURRENT_LANE.remove();
+                else CURRENT_LANE.set(previous);
+                release(System.nanoTime() - start);
+            }
+        }
+
+        // waiting callers keep precedence over extra requests of calls already running
+        @Override
+        public boolean tryAcquire() {
+            lock.lock();
+            try {
+                if (active >= limit || !queue.isEmpty()) return false;
+                active++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // extra requests do not feed the service-time estimate: they start late by design
+        @Override
+        public void release() {
+            lock.lock();
+            try {
+                releaseLocked();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void acquire(int priority) {
+            long enqueued = System.nanoTime();
+            lock.lock();
+            try {
+                if (active < limit && queue.isEmpty()) {
+                    active++;
+                    wait.record(0, TimeUnit.NANOSECONDS);
+                    return;
+                }
+
+                // Calls ahead of us (same or higher priority) drain at `limit` per service time
+                Waiter me = new Waiter(priority);
+                long ahead = queue.stream().filter(w -> w.priority <= priority).count();
+                double estimate = (ahead + 1) * avgServiceNanos / limit;
+                if (estimate > deadlineNanos) {
+                    rejectedEstimate.increment();
+                    throw new LlmRejectedException("LLM " + tier + " queue is full (estimated wait "
+                            + TimeUnit.NANOSECONDS.toMillis((long) estimate) + " ms)");
+                }
+
+                queue.add(me);
+                long remaining = deadlineNanos;
+                while (!me.granted) {
+                    if (remaining <= 0) {
+                        queue.remove(me);
+                        rejectedDeadline.increment();
+                        throw new LlmRejectedException("LLM " + tier + " queue deadline exceeded");
+                    }
+                    try {
+                        remaining = me.turn.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // cancelled while queued (e.g. losing speculative branch)
+                        if (me.granted) releaseLocked();
+                        else queue.remove(me);
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while queued for the LLM", e);
+                    }
+                }
+                wait.record(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(long serviceNanos) {
+            lock.lock();
+            try {
+                avgServiceNanos = avgServiceNanos * 0.8 + serviceNanos * 0.2;
+                releaseLocked();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // hands the slot to the next waiter, or frees it
+        private void releaseLocked() {
+            Waiter next = queue.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+            next.granted = true;
+            next.turn.signal();
+        }
+
+        private int queueDepth() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int activeCount() {
+            lock.lock();
+            try {
+                return active;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
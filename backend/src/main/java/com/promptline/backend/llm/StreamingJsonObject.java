@@ -0,0 +1,217 @@
+package com.promptline.backend.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.promptline.backend.mcp.plan.PlanValidator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Finds the first JSON object in model output while it is still arriving.
+ *
+ * Text before the first '{' (prose, code fences) is skipped; from there every character goes
+ * through a string/escape-aware brace counter, so braces inside string values do not end
+ * the object early, and through Jackson's non-blocking tokenizer, so malformed JSON is noticed
+ * at the token where it breaks. With plan checks on, the top-level fields and every changes[]
+ * entry are checked against the PlanValidator rules as their values arrive; the first
+ * violation makes the object INVALID without waiting for the rest.
+ *
+ * Not thread-safe; one instance per response.
+ */
+final class StreamingJsonObject {
+
+    enum State { MORE, COMPLETE, INVALID }
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final boolean planChecks;
+    private final StringBuilder text = new StringBuilder();
+    private int start = -1;
+    private int scanned;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private int changes;
+    private State state = State.MORE;
+    private String error;
+
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+
+    private StreamingJsonObject(boolean planChecks) {
+        this.planChecks = planChecks;
+    }
+
+    static StreamingJsonObject any() {
+        return new StreamingJsonObject(false);
+    }
+
+    static StreamingJsonObject plan() {
+        return new StreamingJsonObject(true);
+    }
+
+    /** First complete JSON object in `raw`, or null (the whole-string form of the streaming scan). */
+    static String extractFirst(String raw) {
+        if (raw == null) return null;
+        StreamingJsonObject s = any();
+        return s.feed(raw) == State.COMPLETE ? s.json() : null;
+    }
+
+    State feed(String delta) {
+        if (state != State.MORE || delta == null || delta.isEmpty()) return state;
+        int from = text.length();
+        text.append(delta);
+
+        if (start < 0) {
+            int brace = text.indexOf("{", from);
+            if (brace < 0) return state;
+            start = brace;
+            scanned = brace;
+        }
+
+        int end = scanBraces();
+        // hand the tokenizer only the object itself, never what follows it
+        tokenize(text.substring(Math.max(from, start), end < 0 ? text.length() : end + 1));
+        if (state == State.MORE && end >= 0) state = State.COMPLETE;
+        return state;
+    }
+
+    State state() {
+        return state;
+    }
+
+    /** The object text once COMPLETE, else null. */
+    String json() {
+        if (state != State.COMPLETE) return null;
+        return text.substring(start, scanned);
+    }
+
+    String error() {
+        return error;
+    }
+
+    // index of the closing brace of the object, or -1 if it has not arrived yet
+    private int scanBraces() {
+        for (int i = scanned; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    scanned = i + 1;
+                    return i;
+                }
+            }
+        }
+        scanned = text.length();
+        return -1;
+    }
+
+    private void tokenize(String chunk) {
+        if (chunk.isEmpty()) return;
+        try {
+            if (parser == null) {
+                parser = FACTORY.createNonBlockingByteArrayParser();
+                feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            }
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+
+            JsonToken t;
+            while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+                if (planChecks) checkPlan(t);
+                if (state == State.INVALID) return;
+            }
+        } catch (JsonProcessingException e) {
+            invalid("malformed JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            invalid("malformed JSON: " + e.getMessage());
+        }
+    }
+
+    // Mirrors PlanValidator for the fields that can be judged as soon as their value arrives
+    private void checkPlan(JsonToken t) throws IOException {
+        if (t == JsonToken.FIELD_NAME || t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) return;
+        JsonStreamContext ctx = parser.getParsingContext();
+        // a START_* token's context is the new container; judge it from the enclosing one
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) ctx = ctx.getParent();
+        if (ctx == null || ctx.inRoot()) return;
+
+        String field = ctx.getCurrentName();
+
+        if (ctx.inObject() && ctx.getParent().inRoot()) {
+            if (field == null) return;
+            switch (field) {
+                case "planVersion" -> expectText(t, "v1", field);
+                case "intent" -> expectText(t, "runtime_config_change", field);
+                case "requiresConfirmation" -> {
+                    if (t != JsonToken.VALUE_TRUE) invalid("requiresConfirmation must be true");
+                }
+                case "changes" -> {
+                    if (t != JsonToken.START_ARRAY) invalid("changes must be an array");
+                }
+                default -> { }
+            }
+            return;
+        }
+
+        // an entry of changes[]
+        if (ctx.inArray() && isChanges(ctx) && t == JsonToken.START_OBJECT) {
+            if (++changes > PlanValidator.MAX_CHANGES) invalid("changes[] too large");
+            return;
+        }
+        if (ctx.inArray() && isChanges(ctx)) {
+            invalid("changes[" + changes + "] must be an object");
+            return;
+        }
+
+        // a field of a changes[] entry
+        if (ctx.inObject() && ctx.getParent().inArray() && isChanges(ctx.getParent()) && field != null) {
+            switch (field) {
+                case "target" -> {
+                    if (t != JsonToken.VALUE_STRING
+                            || !PlanValidator.TARGETS.contains(parser.getText().trim().toLowerCase(Locale.ROOT))) {
+                        invalid("changes[" + (changes - 1) + "].target invalid");
+                    }
+                }
+                case "op" -> {
+                    if (t != JsonToken.VALUE_STRING || !"set".equals(parser.getText().trim().toLowerCase(Locale.ROOT))) {
+                        invalid("changes[" + (changes - 1) + "].op must be set");
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    // array context that is the value of the root object's "changes" field
+    private static boolean isChanges(JsonStreamContext array) {
+        JsonStreamContext owner = array.getParent();
+        return owner != null && owner.inObject() && owner.getParent() != null && owner.getParent().inRoot()
+                && "changes".equals(owner.getCurrentName());
+    }
+
+    private void expectText(JsonToken t, String expected, String field) throws IOException {
+        if (t != JsonToken.VALUE_STRING || !expected.equals(parser.getText())) {
+            invalid(field + " must be " + expected);
+        }
+    }
+
+    private void invalid(String why) {
+        state = State.INVALID;
+        error = why;
+    }
+}
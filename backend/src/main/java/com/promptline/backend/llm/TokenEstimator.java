@@ -0,0 +1,53 @@
+package com.promptline.backend.llm;
+
+/**
+ * Fast local token count estimate for budgeting prompts; no tokenizer, no allocation.
+ *
+ * BPE tokenizers cost roughly one token per 4 characters of an English word, one per
+ * punctuation mark, and one per CJK character; other non-ASCII letters split into ~2-char
+ * pieces. Whitespace is folded into the following token. Tends to overestimate a little,
+ * which is the safe side for a budget.
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {}
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) return 0;
+
+        int tokens = 0;
+        int wordChars = 0;   // current run of ASCII letters/digits
+        int foreignChars = 0; // current run of non-ASCII, non-CJK letters
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (cp < 128 && Character.isLetterOrDigit(cp)) {
+                tokens += (foreignChars + 1) / 2;
+                foreignChars = 0;
+                wordChars++;
+                continue;
+            }
+            tokens += (wordChars + 3) / 4;
+            wordChars = 0;
+
+            if (cp >= 128 && Character.isLetter(cp) && !isCjk(cp)) {
+                foreignChars++;
+                continue;
+            }
+            tokens += (foreignChars + 1) / 2;
+            foreignChars = 0;
+
+            if (!Character.isWhitespace(cp)) tokens++; // punctuation, symbols, CJK, emoji
+        }
+        return tokens + (wordChars + 3) / 4 + (foreignChars + 1) / 2;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript s = Character.UnicodeScript.of(cp);
+        return s == Character.UnicodeScript.HAN
+                || s == Character.UnicodeScript.HIRAGANA
+                || s == Character.UnicodeScript.KATAKANA
+                || s == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,113 @@
+package com.promptline.backend.llm;
+
+import com.promptline.backend.llm.usage.LlmCallContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncLlmClient} over the whole LlmClient chain: each call runs on its own virtual
+ * thread, which parks (no platform thread held) while the HTTP exchange or a scheduler lane
+ * waits. Cancelling the returned future interrupts that thread, and the blocking transport
+ * turns the interrupt into an aborted exchange.
+ *
+ * Wrapping the assembled chain, rather than each client, keeps one implementation of cache,
+ * intent, scheduler, routing and hedging. The caller's LlmCallContext goes along with the call.
+ */
+public class VirtualThreadAsyncLlmClient implements AsyncLlmClient, AutoCloseable {
+
+    private final LlmClient delegate;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public VirtualThreadAsyncLlmClient(LlmClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<String> generateTitleFromFirstUserMessage(String firstMessage) {
+        return call(() -> delegate.generateTitleFromFirstUserMessage(firstMessage));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAssistantReply(String chatTitle, String userMessage) {
+        return call(() -> delegate.generateAssistantReply(chatTitle, userMessage));
+    }
+
+    @Override
+    public CompletableFuture<String> streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        return call(() -> delegate.streamAssistantReply(chatTitle, userMessage, onDelta));
+    }
+
+    @Override
+    public CompletableFuture<String> generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        return call(() -> delegate.generatePlanJson(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        return call(() -> delegate.shouldProposePlan(chatTitle, chatHistory, userMessage));
+    }
+
+    @Override
+    public CompletableFuture<OneShotReply> respondOneShot(String chatTitle, List<String> chatHistory, String userMessage,
+                                                          boolean needsTitle) {
+        return call(() -> delegate.respondOneShot(chatTitle, chatHistory, userMessage, needsTitle));
+    }
+
+    @Override
+    public CompletableFuture<String> summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return call(() -> delegate.summarizeConversation(previousSummary, newLines, maxTokens));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> body) {
+        CallFuture<T> future = new CallFuture<>();
+        Runnable task = LlmCallContext.propagate(() -> future.run(body));
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /** Completes from the thread running the call; cancel(…) interrupts that thread. */
+    private static final class CallFuture<T> extends CompletableFuture<T> {
+
+        private Thread runner; // guarded by this; null before start and after the call returns
+
+        void run(Supplier<T> body) {
+            synchronized (this) {
+                if (isDone()) return; // cancelled before it started
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(body.get());
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (this) {
+                if (cancelled && runner != null) runner.interrupt();
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.promptline.backend.llm.intent;
+
+import com.promptline.backend.llm.LlmClient;
+import com.promptline.backend.llm.OneShotReply;
+import com.promptline.backend.llm.usage.LlmCallContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Answers shouldProposePlan from the local {@link IntentClassifier} when it is confident;
+ * ambiguous messages fall through to the wrapped client. Local decisions are marked on
+ * {@link LlmCallContext} so the turn is not used to retrain the classifier.
+ *
+ * Metrics: llm.intent.decisions{result=plan|chat|fallthrough}.
+ */
+public class ClassifyingLlmClient implements LlmClient {
+
+    private final LlmClient delegate;
+    private final IntentClassifier classifier;
+    private final Counter plan;
+    private final Counter chat;
+    private final Counter fallthrough;
+
+    public ClassifyingLlmClient(LlmClient delegate, IntentClassifier classifier, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.classifier = classifier;
+        this.plan = Counter.builder("llm.intent.decisions").tag("result", "plan").register(registry);
+        this.chat = Counter.builder("llm.intent.decisions").tag("result", "chat").register(registry);
+        this.fallthrough = Counter.builder("llm.intent.decisions").tag("result", "fallthrough").register(registry);
+    }
+
+    @Override
+    public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+        switch (classifier.classify(userMessage)) {
+            case PLAN -> {
+                plan.increment();
+                LlmCallContext.markRoutedWithoutLlm();
+                return true;
+            }
+            case CHAT -> {
+                chat.increment();
+                LlmCallContext.markRoutedWithoutLlm();
+                return false;
+            }
+            default -> {
+                fallthrough.increment();
+                return delegate.shouldProposePlan(chatTitle, chatHistory, userMessage);
+            }
+        }
+    }
+
+    @Override
+    public String generateTitleFromFirstUserMessage(String firstMessage) {
+        return delegate.generateTitleFromFirstUserMessage(firstMessage);
+    }
+
+    @Override
+    public String generateAssistantReply(String chatTitle, String userMessage) {
+        return delegate.generateAssistantReply(chatTitle, userMessage);
+    }
+
+    @Override
+    public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+        return delegate.streamAssistantReply(chatTitle, userMessage, onDelta);
+    }
+
+    @Override
+    public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+        return delegate.generatePlanJson(chatTitle, chatHistory, userMessage);
+    }
+
+    @Override
+    public OneShotReply respondOneShot(String chatTitle, List<String> chatHistory, String userMessage, boolean needsTitle) {
+        return delegate.respondOneShot(chatTitle, chatHistory, userMessage, needsTitle);
+    }
+
+    @Override
+    public String summarizeConversation(String previousSummary, List<String> newLines, int maxTokens) {
+        return delegate.summarizeConversation(previousSummary, newLines, maxTokens);
+    }
+}
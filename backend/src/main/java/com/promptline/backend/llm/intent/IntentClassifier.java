@@ -0,0 +1,120 @@
+package com.promptline.backend.llm.intent;
+
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process plan/chat classifier, trained from the router decisions already stored:
+ * a user message is labelled "plan" when the assistant message that answered it is a
+ * plans row, "chat" otherwise. Only turns the LLM routed count (messages.routed_by = LLM):
+ * turns settled by this classifier, a template, the plan compiler or a direct endpoint
+ * would feed its own decisions back, and rows from before routed_by was recorded cannot
+ * be told apart, so they are left out too.
+ *
+ * Every (re)train holds out ~20% of the history (split by message hash, so duplicates never
+ * straddle the split) and logs accuracy, coverage and precision of the confident decisions.
+ * The model only goes live when that precision reaches the configured minimum; until then
+ * (and for every ambiguous message) {@link #classify} answers UNSURE.
+ */
+@Component
+public class IntentClassifier {
+
+    public enum Decision { PLAN, CHAT, UNSURE }
+
+    private static final String TRAINING_SQL = """
+            SELECT u.content,
+                   EXISTS (SELECT 1 FROM plans p WHERE p.message_id = a.id) AS is_plan
+            FROM messages u
+            JOIN LATERAL (
+                SELECT m.id, m.routed_by FROM messages m
+                WHERE m.chat_id = u.chat_id AND m.role = 'assistant' AND m.created_at >= u.created_at
+                ORDER BY m.created_at, m.id
+                LIMIT 1
+            ) a ON true
+            WHERE u.role = 'user' AND a.routed_by = 'LLM'
+            ORDER BY u.created_at DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final PromptlineLlmProperties.Intent props;
+
+    private volatile IntentModel model;
+
+    public IntentClassifier(JdbcTemplate jdbc, PromptlineLlmProperties llmProps) {
+        this.jdbc = jdbc;
+        this.props = llmProps.getIntent();
+    }
+
+    public Decision classify(String userMessage) {
+        IntentModel m = model;
+        if (m == null || userMessage == null || userMessage.isBlank()) return Decision.UNSURE;
+        return decide(m.probability(IntentFeatures.of(userMessage)));
+    }
+
+    private Decision decide(double p) {
+        if (p >= props.getPlanThreshold()) return Decision.PLAN;
+        if (p <= props.getChatThreshold()) return Decision.CHAT;
+        return Decision.UNSURE;
+    }
+
+    @Scheduled(initialDelay = 30_000, fixedDelayString = "${promptline.llm.intent.retrain-interval-ms:3600000}")
+    public void retrain() {
+        if (!props.isEnabled()) return;
+
+        try {
+            List<IntentModel.Example> train = new ArrayList<>();
+            List<IntentModel.Example> holdout = new ArrayList<>();
+            jdbc.query(TRAINING_SQL, rs -> {
+                String content = rs.getString(1);
+                var ex = new IntentModel.Example(IntentFeatures.of(content), rs.getBoolean(2));
+                if (Math.floorMod(content.hashCode(), 5) == 0) holdout.add(ex); else train.add(ex);
+            }, props.getMaxExamples());
+
+            if (train.size() + holdout.size() < props.getMinExamples()) {
+                System.out.println("Intent classifier: " + (train.size() + holdout.size())
+                        + " labelled messages, need " + props.getMinExamples() + "; router stays on the LLM");
+                return;
+            }
+
+            IntentModel candidate = IntentModel.train(train);
+            Evaluation eval = evaluate(candidate, holdout);
+            boolean accept = eval.confident() > 0 && eval.confidentPrecision() >= props.getMinPrecision();
+
+            System.out.printf(
+                    "Intent classifier: train=%d holdout=%d accuracy=%.3f coverage=%.3f confidentPrecision=%.3f -> %s%n",
+                    train.size(), holdout.size(), eval.accuracy(), eval.coverage(), eval.confidentPrecision(),
+                    accept ? "live" : "rejected (min precision " + props.getMinPrecision() + ")");
+
+            // A rejected retrain also retires the previous model: the history no longer supports it
+            model = accept ? candidate : null;
+        } catch (Exception e) {
+            System.err.println("Intent classifier training failed: " + e.getMessage());
+        }
+    }
+
+    private record Evaluation(int total, int correct, int confident, int confidentCorrect) {
+        double accuracy() { return total == 0 ? 0 : (double) correct / total; }
+        double coverage() { return total == 0 ? 0 : (double) confident / total; }
+        double confidentPrecision() { return confident == 0 ? 0 : (double) confidentCorrect / confident; }
+    }
+
+    private Evaluation evaluate(IntentModel m, List<IntentModel.Example> holdout) {
+        int correct = 0, confident = 0, confidentCorrect = 0;
+        for (IntentModel.Example ex : holdout) {
+            double p = m.probability(ex.features());
+            if ((p >= 0.5) == ex.plan()) correct++;
+            Decision d = decide(p);
+            if (d != Decision.UNSURE) {
+                confident++;
+                if ((d == Decision.PLAN) == ex.plan()) confidentCorrect++;
+            }
+        }
+        return new Evaluation(holdout.size(), correct, confident, confidentCorrect);
+    }
+}
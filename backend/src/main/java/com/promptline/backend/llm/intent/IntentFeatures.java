@@ -0,0 +1,75 @@
+package com.promptline.backend.llm.intent;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Hashed sparse features for a user message: word unigrams, word bigrams and character
+ * trigrams (within words), count-weighted and L2-normalized.
+ */
+record IntentFeatures(int[] index, float[] value) {
+
+    static final int DIMENSION = 1 << 16;
+
+    static IntentFeatures of(String text) {
+        String[] words = tokenize(text);
+        int[] raw = new int[64];
+        int n = 0;
+
+        for (int i = 0; i < words.length; i++) {
+            raw = grow(raw, n + 1);
+            raw[n++] = bucket("w:" + words[i]);
+            if (i > 0) {
+                raw = grow(raw, n + 1);
+                raw[n++] = bucket("b:" + words[i - 1] + " " + words[i]);
+            }
+            String padded = "^" + words[i] + "$";
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                raw = grow(raw, n + 1);
+                raw[n++] = bucket("c:" + padded.substring(j, j + 3));
+            }
+        }
+
+        // collapse duplicates into counts
+        int[] sorted = Arrays.copyOf(raw, n);
+        Arrays.sort(sorted);
+        int[] index = new int[n];
+        float[] value = new float[n];
+        int k = -1;
+        for (int i = 0; i < n; i++) {
+            if (k >= 0 && index[k] == sorted[i]) {
+                value[k] += 1f;
+            } else {
+                index[++k] = sorted[i];
+                value[k] = 1f;
+            }
+        }
+        int size = k + 1;
+
+        double norm = 0;
+        for (int i = 0; i < size; i++) norm += value[i] * value[i];
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < size; i++) value[i] = (float) (value[i] / norm);
+
+        return new IntentFeatures(Arrays.copyOf(index, size), Arrays.copyOf(value, size));
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        String cleaned = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}_.-]+", " ").trim();
+        return cleaned.isEmpty() ? new String[0] : cleaned.split(" ");
+    }
+
+    private static int bucket(String feature) {
+        // murmur-style finalizer over String.hashCode spreads short n-grams across the table
+        int h = feature.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return (h & 0x7fffffff) % DIMENSION;
+    }
+
+    private static int[] grow(int[] a, int needed) {
+        return needed <= a.length ? a : Arrays.copyOf(a, a.length * 2);
+    }
+}
@@ -0,0 +1,72 @@
+package com.promptline.backend.llm.intent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Binary logistic regression over {@link IntentFeatures}: P(plan | message).
+ * Immutable once trained; a retrain builds a new instance.
+ */
+final class IntentModel {
+
+    record Example(IntentFeatures features, boolean plan) {}
+
+    private static final int EPOCHS = 12;
+    private static final double LEARNING_RATE = 0.5;
+    private static final double L2 = 1e-6;
+
+    private final float[] weights;
+    private final float bias;
+
+    private IntentModel(float[] weights, float bias) {
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    double probability(IntentFeatures f) {
+        double z = bias;
+        int[] idx = f.index();
+        float[] val = f.value();
+        for (int i = 0; i < idx.length; i++) z += weights[idx[i]] * val[i];
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+
+    /** Plain SGD with a decaying step; classes are re-weighted so a rare "plan" label still counts. */
+    static IntentModel train(List<Example> examples) {
+        float[] w = new float[IntentFeatures.DIMENSION];
+        double b = 0;
+
+        long positives = examples.stream().filter(Example::plan).count();
+        long negatives = examples.size() - positives;
+        double posWeight = positives == 0 ? 1 : examples.size() / (2.0 * positives);
+        double negWeight = negatives == 0 ? 1 : examples.size() / (2.0 * negatives);
+
+        List<Example> order = new ArrayList<>(examples);
+        Random rnd = new Random(42);
+        long step = 0;
+
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(order, rnd);
+            for (Example ex : order) {
+                double lr = LEARNING_RATE / (1 + step++ * 1e-4);
+                int[] idx = ex.features().index();
+                float[] val = ex.features().value();
+
+                double z = b;
+                for (int i = 0; i < idx.length; i++) z += w[idx[i]] * val[i];
+                double p = 1.0 / (1.0 + Math.exp(-z));
+                double y = ex.plan() ? 1 : 0;
+                double g = (p - y) * (ex.plan() ? posWeight : negWeight);
+
+                for (int i = 0; i < idx.length; i++) {
+                    int j = idx[i];
+                    w[j] -= (float) (lr * (g * val[i] + L2 * w[j]));
+                }
+                b -= lr * g;
+            }
+        }
+        return new IntentModel(w, (float) b);
+    }
+}
@@ -0,0 +1,87 @@
+package com.promptline.backend.llm.usage;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * The chat an LLM call is made for, so usage records can be rolled up per chat.
+ * Thread-bound: work handed to another thread must be wrapped with {@link #propagate}.
+ *
+ * Also carries whether the turn's routing question was answered without the LLM (see
+ * {@link #markRoutedWithoutLlm}). Propagated threads share that flag with the thread that
+ * forked them, so a router call made on a virtual thread is visible to the turn.
+ */
+public final class LlmCallContext {
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private static final class Scope {
+        final UUID chatId;
+        volatile boolean routedWithoutLlm;
+
+        Scope(UUID chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    private LlmCallContext() {}
+
+    public static UUID chatId() {
+        Scope scope = SCOPE.get();
+        return scope != null ? scope.chatId : null;
+    }
+
+    public static <T> T withChat(UUID chatId, Supplier<T> body) {
+        Scope previous = SCOPE.get();
+        SCOPE.set(new Scope(chatId));
+        try {
+            return body.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /** Called by a router that decided locally (e.g. the intent classifier); no-op outside withChat. */
+    public static void markRoutedWithoutLlm() {
+        Scope scope = SCOPE.get();
+        if (scope != null) scope.routedWithoutLlm = true;
+    }
+
+    public static boolean routedWithoutLlm() {
+        Scope scope = SCOPE.get();
+        return scope != null && scope.routedWithoutLlm;
+    }
+
+    /** Runs `task` with the context of the thread that calls propagate. */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Scope captured = SCOPE.get();
+        return () -> {
+            Scope previous = SCOPE.get();
+            SCOPE.set(captured);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static Runnable propagate(Runnable task) {
+        Scope captured = SCOPE.get();
+        return () -> {
+            Scope previous = SCOPE.get();
+            SCOPE.set(captured);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Scope previous) {
+        if (previous == null) SCOPE.remove();
+        else SCOPE.set(previous);
+    }
+}
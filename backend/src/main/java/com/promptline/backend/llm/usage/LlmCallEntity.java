@@ -0,0 +1,60 @@
+package com.promptline.backend.llm.usage;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/** Schema holder for llm_calls; rows are written in batches by LlmUsageRecorder via JDBC. */
+@Entity
+@Table(
+    name = "llm_calls",
+    indexes = {
+        @Index(name = "idx_llm_calls_chat", columnList = "chat_id, created_at"),
+        @Index(name = "idx_llm_calls_model_created", columnList = "model, created_at"),
+        @Index(name = "idx_llm_calls_created", columnList = "created_at")
+    }
+)
+public class LlmCallEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "chat_id", columnDefinition = "uuid")
+    private UUID chatId;
+
+    @Column(nullable = false, length = 40)
+    private String purpose;
+
+    @Column(nullable = false, length = 200)
+    private String model;
+
+    @Column(length = 200)
+    private String endpoint;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private int promptTokens;
+
+    @Column(name = "completion_tokens", nullable = false)
+    private int completionTokens;
+
+    @Column(name = "latency_ms", nullable = false)
+    private long latencyMs;
+
+    @Column(nullable = false, length = 20)
+    private String outcome;
+
+    public Long getId() { return id; }
+    public Instant getCreatedAt() { return createdAt; }
+    public UUID getChatId() { return chatId; }
+    public String getPurpose() { return purpose; }
+    public String getModel() { return model; }
+    public String getEndpoint() { return endpoint; }
+    public int getPromptTokens() { return promptTokens; }
+    public int getCompletionTokens() { return completionTokens; }
+    public long getLatencyMs() { return latencyMs; }
+    public String getOutcome() { return outcome; }
+}
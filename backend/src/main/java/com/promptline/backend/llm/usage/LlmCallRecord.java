@@ -0,0 +1,21 @@
+package com.promptline.backend.llm.usage;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** One upstream chat-completion request (hedges and retries on other endpoints count separately). */
+public record LlmCallRecord(
+        Instant at,
+        UUID chatId,
+        String purpose,
+        String model,
+        String endpoint,
+        int promptTokens,
+        int completionTokens,
+        long latencyMs,
+        String outcome
+) {
+    public static final String OK = "ok";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+}
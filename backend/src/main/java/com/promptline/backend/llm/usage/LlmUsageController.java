@@ -0,0 +1,30 @@
+package com.promptline.backend.llm.usage;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/llm/usage")
+public class LlmUsageController {
+
+    private final LlmUsageQueries queries;
+
+    public LlmUsageController(LlmUsageQueries queries) {
+        this.queries = queries;
+    }
+
+    @GetMapping("/chats/{chatId}")
+    public List<LlmUsageQueries.ChatUsage> chat(@PathVariable UUID chatId) {
+        return queries.perChat(chatId);
+    }
+
+    // e.g. /api/llm/usage/models?hours=24
+    @GetMapping("/models")
+    public List<LlmUsageQueries.ModelUsage> models(@RequestParam(defaultValue = "24") int hours) {
+        return queries.perModel(Instant.now().minus(Duration.ofHours(Math.max(1, hours))));
+    }
+}
@@ -0,0 +1,69 @@
+package com.promptline.backend.llm.usage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/** Rollups over llm_calls. */
+@Component
+public class LlmUsageQueries {
+
+    public record ChatUsage(String purpose, String model, long calls, long errors,
+                            long promptTokens, long completionTokens, long totalLatencyMs) {}
+
+    public record ModelUsage(String model, String purpose, long calls, long errors,
+                             long promptTokens, long completionTokens, double p50Ms, double p95Ms) {}
+
+    private final JdbcTemplate jdbc;
+
+    public LlmUsageQueries(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<ChatUsage> perChat(UUID chatId) {
+        return jdbc.query("""
+                SELECT purpose, model,
+                       count(*) AS calls,
+                       count(*) FILTER (WHERE outcome = 'error') AS errors,
+                       coalesce(sum(prompt_tokens), 0) AS prompt_tokens,
+                       coalesce(sum(completion_tokens), 0) AS completion_tokens,
+                       coalesce(sum(latency_ms), 0) AS total_latency_ms
+                FROM llm_calls
+                WHERE chat_id = ?
+                GROUP BY purpose, model
+                ORDER BY total_latency_ms DESC
+                """,
+                (rs, i) -> new ChatUsage(
+                        rs.getString("purpose"), rs.getString("model"),
+                        rs.getLong("calls"), rs.getLong("errors"),
+                        rs.getLong("prompt_tokens"), rs.getLong("completion_tokens"),
+                        rs.getLong("total_latency_ms")),
+                chatId);
+    }
+
+    public List<ModelUsage> perModel(Instant since) {
+        return jdbc.query("""
+                SELECT model, purpose,
+                       count(*) AS calls,
+                       count(*) FILTER (WHERE outcome = 'error') AS errors,
+                       coalesce(sum(prompt_tokens), 0) AS prompt_tokens,
+                       coalesce(sum(completion_tokens), 0) AS completion_tokens,
+                       percentile_cont(0.5) WITHIN GROUP (ORDER BY latency_ms) AS p50,
+                       percentile_cont(0.95) WITHIN GROUP (ORDER BY latency_ms) AS p95
+                FROM llm_calls
+                WHERE created_at >= ?
+                GROUP BY model, purpose
+                ORDER BY calls DESC
+                """,
+                (rs, i) -> new ModelUsage(
+                        rs.getString("model"), rs.getString("purpose"),
+                        rs.getLong("calls"), rs.getLong("errors"),
+                        rs.getLong("prompt_tokens"), rs.getLong("completion_tokens"),
+                        rs.getDouble("p50"), rs.getDouble("p95")),
+                Timestamp.from(since));
+    }
+}
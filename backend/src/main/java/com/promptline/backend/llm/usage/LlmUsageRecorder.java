@@ -0,0 +1,149 @@
+package com.promptline.backend.llm.usage;
+
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects {@link LlmCallRecord}s without blocking the calling thread: record() only appends
+ * to a lock-free queue. A scheduled flush drains it into Micrometer (llm.call.latency and
+ * llm.call.tokens histograms, tagged by model / purpose) and one batched insert into llm_calls.
+ * When the buffer is full (e.g. the database is down) new records are dropped and counted.
+ * Rows older than promptline.llm.usage.retentionDays are pruned hourly.
+ */
+@Component
+public class LlmUsageRecorder {
+
+    private static final int CAPACITY = 50_000;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO llm_calls
+                (created_at, chat_id, purpose, model, endpoint, prompt_tokens, completion_tokens, latency_ms, outcome)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // in batches, so a large backlog is never one long delete holding locks on a busy table
+    private static final int PRUNE_BATCH = 10_000;
+    private static final String PRUNE_SQL = """
+            DELETE FROM llm_calls WHERE id IN (
+                SELECT id FROM llm_calls WHERE created_at < ? LIMIT ?)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry registry;
+    private final int retentionDays;
+
+    private final ConcurrentLinkedQueue<LlmCallRecord> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public LlmUsageRecorder(JdbcTemplate jdbc, MeterRegistry registry, PromptlineLlmProperties llmProps) {
+        this.jdbc = jdbc;
+        this.registry = registry;
+        this.retentionDays = llmProps.getUsage().getRetentionDays();
+        registry.gauge("llm.usage.buffer.size", size);
+    }
+
+    public void record(LlmCallRecord r) {
+        if (size.incrementAndGet() > CAPACITY) {
+            size.decrementAndGet();
+            registry.counter("llm.usage.dropped").increment();
+            return;
+        }
+        buffer.add(r);
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        List<LlmCallRecord> batch = new ArrayList<>();
+        LlmCallRecord r;
+        while ((r = buffer.poll()) != null) {
+            size.decrementAndGet();
+            publish(r);
+            batch.add(r);
+            if (batch.size() == BATCH_SIZE) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) insert(batch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelay = 3_600_000)
+    public void prune() {
+        if (retentionDays <= 0) return;
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(Duration.ofDays(retentionDays)));
+        int total = 0;
+        try {
+            int n;
+            do {
+                n = jdbc.update(PRUNE_SQL, cutoff, PRUNE_BATCH);
+                total += n;
+            } while (n == PRUNE_BATCH);
+        } catch (Exception e) {
+            System.err.println("llm_calls prune failed after " + total + " rows: " + e.getMessage());
+            return;
+        }
+        if (total > 0) System.out.println("llm_calls: pruned " + total + " rows older than " + retentionDays + " days");
+    }
+
+    private void publish(LlmCallRecord r) {
+        Timer.builder("llm.call.latency")
+                .tag("model", r.model())
+                .tag("purpose", r.purpose())
+                .tag("outcome", r.outcome())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(Duration.ofMillis(r.latencyMs()));
+
+        if (!LlmCallRecord.OK.equals(r.outcome())) return;
+        tokens(r, "prompt").record(r.promptTokens());
+        tokens(r, "completion").record(r.completionTokens());
+    }
+
+    private DistributionSummary tokens(LlmCallRecord r, String type) {
+        return DistributionSummary.builder("llm.call.tokens")
+                .tag("model", r.model())
+                .tag("purpose", r.purpose())
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void insert(List<LlmCallRecord> batch) {
+        try {
+            jdbc.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, c) -> {
+                ps.setTimestamp(1, Timestamp.from(c.at()));
+                ps.setObject(2, c.chatId());
+                ps.setString(3, c.purpose());
+                ps.setString(4, c.model());
+                ps.setString(5, c.endpoint());
+                ps.setInt(6, c.promptTokens());
+                ps.setInt(7, c.completionTokens());
+                ps.setLong(8, c.latencyMs());
+                ps.setString(9, c.outcome());
+            });
+        } catch (Exception e) {
+            // metrics already have these; the table is best effort
+            System.err.println("llm_calls insert failed (" + batch.size() + " rows dropped): " + e.getMessage());
+        }
+    }
+}
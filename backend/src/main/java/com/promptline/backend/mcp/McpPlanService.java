@@ -39,7 +39,8 @@ public class McpPlanService {
 
 
     @Transactional
-    public PlanEntity createProposedPlan(ChatEntity chat, MessageEntity assistantPlanMessage, String proposalJson) {
+    public PlanEntity createProposedPlan(ChatEntity chat, MessageEntity assistantPlanMessage, String proposalJson,
+                                         String requestText, PlanOrigin origin, UUID templateSourceId) {
         JsonNode proposalNode;
         try {
             proposalNode = om.readTree(proposalJson);
@@ -55,6 +56,9 @@ public class McpPlanService {
         plan.setMessage(assistantPlanMessage);
         plan.setStatus(PlanStatus.PROPOSED);
         plan.setProposalJson(proposalNode);
+        plan.setRequestText(requestText);
+        plan.setOrigin(origin);
+        plan.setTemplateSourceId(templateSourceId);
         plan.setCreatedAt(OffsetDateTime.now());
         plan.setUpdatedAt(OffsetDateTime.now());
         planRepo.save(plan);
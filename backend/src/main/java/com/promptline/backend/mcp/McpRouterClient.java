@@ -1,5 +1,6 @@
 package com.promptline.backend.mcp;
 
+import com.promptline.backend.http.HttpTransportFactory;
 import com.promptline.backend.mcp.client.McpRouterDtos.ConfigCheckLiveRequest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -11,8 +12,9 @@ public class McpRouterClient {
 
     private final RestClient rest;
 
-    public McpRouterClient(PromptlineMcpProperties props, RestClient.Builder builder) {
-        this.rest = builder
+    public McpRouterClient(PromptlineMcpProperties props, HttpTransportFactory transport) {
+        // pooled HTTP/2 transport with deadlines + budgeted retries (promptline.http.upstreams.mcp)
+        this.rest = transport.builder("mcp")
                 .baseUrl(props.getBaseUrl())
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("X-Internal-Token", props.getInternalToken())
@@ -37,6 +37,19 @@ public class PlanEntity {
     @Column(name = "rejection_reason")
     private String rejectionReason;
 
+    // user message the plan answers; source text for PlanTemplateCache
+    @Column(name = "request_text", columnDefinition = "text")
+    private String requestText;
+
+    // audit: null on plans from before origins were recorded
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private PlanOrigin origin;
+
+    // the confirmed plan a TEMPLATE plan was copied from
+    @Column(name = "template_source_id")
+    private UUID templateSourceId;
+
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
@@ -63,6 +76,15 @@ public class PlanEntity {
     public String getRejectionReason() { return rejectionReason; }
     public void setRejectionReason(String rejectionReason) { this.rejectionReason = rejectionReason; }
 
+    public String getRequestText() { return requestText; }
+    public void setRequestText(String requestText) { this.requestText = requestText; }
+
+    public PlanOrigin getOrigin() { return origin; }
+    public void setOrigin(PlanOrigin origin) { this.origin = origin; }
+
+    public UUID getTemplateSourceId() { return templateSourceId; }
+    public void setTemplateSourceId(UUID templateSourceId) { this.templateSourceId = templateSourceId; }
+
     public OffsetDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
 
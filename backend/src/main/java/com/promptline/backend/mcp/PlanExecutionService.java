@@ -1,13 +1,14 @@
 package com.promptline.backend.mcp;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.promptline.backend.mcp.client.McpRouterDtos;
 import com.promptline.backend.mcp.plan.PlanParser;
 import com.promptline.backend.mcp.plan.PlanProposalV1;
 import com.promptline.backend.mcp.plan.PlanValidator;
-import com.promptline.backend.sse.SseHub;
+import com.promptline.backend.outbox.EventOutbox;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Map;
 import java.util.UUID;
@@ -18,61 +19,77 @@ public class PlanExecutionService {
 
     private final PlanRepository planRepo;
     private final McpRouterClient mcp;
-    private final SseHub hub;
+    private final EventOutbox outbox;
+    private final TransactionTemplate tx;
     private final ObjectMapper om;
 
     // plan parsing/validation
     private final PlanParser parser;
     private final PlanValidator validator;
 
+    private record Started(UUID chatId, JsonNode proposalJson) {}
+
     public PlanExecutionService(
             PlanRepository planRepo,
             McpRouterClient mcp,
-            SseHub hub,
+            EventOutbox outbox,
+            TransactionTemplate tx,
             ObjectMapper om
     ) {
         this.planRepo = planRepo;
         this.mcp = mcp;
-        this.hub = hub;
+        this.outbox = outbox;
+        this.tx = tx;
         this.om = om;
 
         this.parser = new PlanParser(om);
         this.validator = new PlanValidator();
     }
 
-    @Transactional
+    /**
+     * Status changes and their events commit together in short transactions;
+     * the MCP calls in between run with no transaction (or connection) held.
+     */
     public void confirmAndExecute(UUID planId) {
-        PlanEntity plan = planRepo.findById(planId)
-                .orElseThrow(() -> new IllegalArgumentException("Plan not found: " + planId));
+        Started started = tx.execute(status -> {
+            PlanEntity plan = planRepo.findById(planId)
+                    .orElseThrow(() -> new IllegalArgumentException("Plan not found: " + planId));
 
-        if (plan.getStatus() != PlanStatus.PROPOSED) {
-            throw new IllegalStateException("Plan is not PROPOSED (status=" + plan.getStatus() + ")");
-        }
+            if (plan.getStatus() != PlanStatus.PROPOSED) {
+                throw new IllegalStateException("Plan is not PROPOSED (status=" + plan.getStatus() + ")");
+            }
+
+            UUID chatId = plan.getChat().getId();
+
+            // ✅ Confirm
+            plan.setStatus(PlanStatus.CONFIRMED);
+            planRepo.save(plan);
+
+            outbox.enqueue(chatId, "PLAN_CONFIRMED", Map.of(
+                    "chatId", chatId.toString(),
+                    "planId", planId.toString(),
+                    "status", plan.getStatus().name()
+            ));
 
-        // ✅ Confirm
-        plan.setStatus(PlanStatus.CONFIRMED);
-        planRepo.save(plan);
+            // ✅ Transition to RUNNING
+            plan.setStatus(PlanStatus.RUNNING);
+            planRepo.save(plan);
 
-        broadcast("PLAN_CONFIRMED", Map.of(
-                "chatId", plan.getChat().getId().toString(),
-                "planId", plan.getId().toString(),
-                "status", plan.getStatus().name()
-        ));
+            broadcastExecution(chatId, planId, Map.of(
+                    "chatId", chatId.toString(),
+                    "planId", planId.toString(),
+                    "status", plan.getStatus().name(),
+                    "phase", "START"
+            ), false);
 
-        // ✅ Transition to RUNNING
-        plan.setStatus(PlanStatus.RUNNING);
-        planRepo.save(plan);
+            return new Started(chatId, plan.getProposalJson());
+        });
 
-        broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                "chatId", plan.getChat().getId().toString(),
-                "planId", plan.getId().toString(),
-                "status", plan.getStatus().name(),
-                "phase", "START"
-        ));
+        UUID chatId = started.chatId();
 
         try {
             // ✅ Build MCP request payload (router contract)
-            PlanProposalV1 p = parser.parse(plan.getProposalJson().toString());
+            PlanProposalV1 p = parser.parse(started.proposalJson().toString());
 
             var errs = validator.validate(p);
             if (!errs.isEmpty()) {
@@ -95,53 +112,58 @@ public class PlanExecutionService {
 
             // Phase 0
             var p0 = mcp.checkLive(req);
-            broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                    "planId", plan.getId().toString(),
-                    "status", plan.getStatus().name(),
+            broadcastExecution(chatId, planId, Map.of(
+                    "planId", planId.toString(),
+                    "status", PlanStatus.RUNNING.name(),
                     "phase", "PHASE_0_CHECK_LIVE",
                     "result", p0
-            ));
+            ), false);
 
             // Phase 1
             var p1 = mcp.checkOpenPr(req);
-            broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                    "planId", plan.getId().toString(),
-                    "status", plan.getStatus().name(),
+            broadcastExecution(chatId, planId, Map.of(
+                    "planId", planId.toString(),
+                    "status", PlanStatus.RUNNING.name(),
                     "phase", "PHASE_1_CHECK_OPEN_PR",
                     "result", p1
-            ));
+            ), false);
 
             // Phase 2
             var p2 = mcp.ensurePr(req);
-            broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                    "planId", plan.getId().toString(),
-                    "status", plan.getStatus().name(),
+            broadcastExecution(chatId, planId, Map.of(
+                    "planId", planId.toString(),
+                    "status", PlanStatus.RUNNING.name(),
                     "phase", "PHASE_2_ENSURE_PR",
                     "result", p2
-            ));
-
-            plan.setStatus(PlanStatus.COMPLETED);
-            planRepo.save(plan);
+            ), false);
 
-            broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                    "planId", plan.getId().toString(),
-                    "status", plan.getStatus().name(),
+            finish(chatId, planId, PlanStatus.COMPLETED, Map.of(
+                    "planId", planId.toString(),
+                    "status", PlanStatus.COMPLETED.name(),
                     "phase", "DONE"
             ));
 
         } catch (Exception e) {
-            plan.setStatus(PlanStatus.FAILED);
-            planRepo.save(plan);
-
-            broadcast("PLAN_EXECUTION_UPDATED", Map.of(
-                    "planId", plan.getId().toString(),
-                    "status", plan.getStatus().name(),
+            finish(chatId, planId, PlanStatus.FAILED, Map.of(
+                    "planId", planId.toString(),
+                    "status", PlanStatus.FAILED.name(),
                     "phase", "ERROR",
-                    "error", e.getMessage()
+                    "error", String.valueOf(e.getMessage())
             ));
         }
     }
 
+    private void finish(UUID chatId, UUID planId, PlanStatus status, Map<String, Object> payload) {
+        tx.executeWithoutResult(s -> {
+            PlanEntity plan = planRepo.findById(planId)
+                    .orElseThrow(() -> new IllegalArgumentException("Plan not found: " + planId));
+            plan.setStatus(status);
+            planRepo.save(plan);
+
+            broadcastExecution(chatId, planId, payload, true);
+        });
+    }
+
     private static String normalizeEnv(String env) {
         return (env == null || env.isBlank()) ? "live" : env.trim();
     }
@@ -150,9 +172,11 @@ public class PlanExecutionService {
         return (t == null) ? "" : t.trim().toLowerCase();
     }
 
-    private void broadcast(String event, Object payload) {
-        try {
-            hub.broadcast(event, om.writeValueAsString(payload));
-        } catch (Exception ignored) {}
+    /**
+     * PLAN_EXECUTION_UPDATED is coalesced by planId once dispatched, so bursts of
+     * phase updates collapse into the latest state; DONE/ERROR are always delivered.
+     */
+    private void broadcastExecution(UUID chatId, UUID planId, Map<String, Object> payload, boolean terminal) {
+        outbox.enqueue(chatId, "PLAN_EXECUTION_UPDATED", payload, planId.toString(), terminal);
     }
 }
@@ -0,0 +1,7 @@
+package com.promptline.backend.mcp;
+
+public enum PlanOrigin {
+    LLM,       // generated for this request
+    COMPILED,  // parsed from the request without the LLM (PlanCompiler)
+    TEMPLATE   // reused from a confirmed plan for an equivalent request (PlanTemplateCache)
+}
@@ -0,0 +1,296 @@
+package com.promptline.backend.mcp.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import com.promptline.backend.runtime.RuntimeConfigStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns plain config-change requests into a plan without the LLM:
+ *
+ *   request := clause (("and" | "," | ";") clause)*
+ *   clause  := [verb] [("ui" | "policy") ["config"]] ["the"] path ("to" | "as" | "=" | ":") value
+ *   verb    := set | change | update | make | switch | raise | increase | bump | lower | decrease | reduce
+ *
+ * e.g. "set ui theme to light", "policy rateLimit.rpm = 120", "raise rpm to 100 and set theme to dark".
+ * Without a verb (own or carried over from the previous clause) only "=" / ":" are accepted,
+ * so conversational text does not parse.
+ *
+ * Paths resolve against the leaves of the live configs in RuntimeConfigStore: the exact dot path,
+ * or a unique segment-aligned suffix written with dots, spaces or run together ("rpm",
+ * "rate limit rpm", "ratelimit.rpm"). Values are coerced to the type of the current value
+ * (numbers, booleans incl. on/off, strings as a single word or quoted; arrays and objects
+ * only as JSON literals).
+ * Anything ambiguous or unparsable returns null and the caller asks the LLM instead; so does
+ * "raise" to a lower value (and "lower" to a higher one).
+ *
+ * Metrics: plan.compiler.requests{result=compiled|fallthrough}.
+ */
+@Component
+public class PlanCompiler {
+
+    private static final Pattern CLAUSE = Pattern.compile(
+            "^(?:(set|change|update|make|switch|raise|increase|bump|lower|decrease|reduce)\\s+)?"
+                    + "(?:(ui|policy)(?:\\s+config)?\\s+)?"
+                    + "(?:the\\s+)?"
+                    + "([a-z_][\\w.\\-]*(?:\\s+[a-z_][\\w.\\-]*){0,3}?)"
+                    + "\\s*(?:\\s(to|as)\\s|(=|:))\\s*"
+                    + "(.+)$",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern POLITE = Pattern.compile(
+            "^(?:please\\s+|pls\\s+|can you\\s+|could you\\s+|would you\\s+)+|(?:\\s*,?\\s*please)?[\\s.!]*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SINGLE_WORD = Pattern.compile("\\S+");
+
+    private record Leaf(String target, String path, JsonNode current) {}
+
+    // Leaves of both configs, rebuilt when RuntimeConfigStore hands out a different blob
+    private record Shapes(RuntimeConfigStore.RuntimeBlob ui, RuntimeConfigStore.RuntimeBlob policy, List<Leaf> leaves) {}
+
+    private final RuntimeConfigStore store;
+    private final ObjectMapper om;
+    private final PlanValidator validator = new PlanValidator();
+    private final PromptlineLlmProperties.PlanCompiler props;
+    private volatile Shapes shapes;
+
+    private final Counter compiled;
+    private final Counter fallthrough;
+
+    public PlanCompiler(RuntimeConfigStore store, ObjectMapper om, PromptlineLlmProperties llmProps, MeterRegistry registry) {
+        this.store = store;
+        this.om = om;
+        this.props = llmProps.getPlanCompiler();
+        this.compiled = Counter.builder("plan.compiler.requests").tag("result", "compiled").register(registry);
+        this.fallthrough = Counter.builder("plan.compiler.requests").tag("result", "fallthrough").register(registry);
+    }
+
+    /** The plan for a request that fully parses, or null. */
+    public PlanProposalV1 compile(String request) {
+        if (!props.isEnabled() || request == null || request.isBlank() || request.length() > 300) return null;
+
+        PlanProposalV1 plan;
+        try {
+            plan = parse(request);
+        } catch (Exception e) {
+            // config unavailable or malformed: the LLM path has its own fallbacks
+            System.err.println("Plan compiler skipped: " + e.getMessage());
+            plan = null;
+        }
+        if (plan == null || !validator.validate(plan).isEmpty()) {
+            fallthrough.increment();
+            return null;
+        }
+        compiled.increment();
+        return plan;
+    }
+
+    public String compileJson(String request) {
+        PlanProposalV1 plan = compile(request);
+        if (plan == null) return null;
+        try {
+            return om.writeValueAsString(plan);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private PlanProposalV1 parse(String request) throws Exception {
+        String text = POLITE.matcher(request.trim()).replaceAll("");
+        if (text.isBlank()) return null;
+
+        List<Leaf> leaves = shapes().leaves();
+        Map<String, PlanChange> changes = new LinkedHashMap<>();
+        List<String> summary = new ArrayList<>();
+        String lastVerb = null;
+
+        for (String clause : splitClauses(text)) {
+            Matcher m = CLAUSE.matcher(clause.trim());
+            if (!m.matches()) return null;
+
+            // "set theme to dark and rpm to 100": a clause without a verb continues the previous one
+            String verb = m.group(1) == null ? lastVerb : m.group(1).toLowerCase(Locale.ROOT);
+            lastVerb = verb;
+            String target = m.group(2) == null ? null : m.group(2).toLowerCase(Locale.ROOT);
+            boolean wordOperator = m.group(4) != null;
+            if (verb == null && wordOperator) return null; // "theme to dark" without a verb is not a command
+
+            Leaf leaf = resolve(leaves, target, m.group(3));
+            if (leaf == null) return null;
+
+            JsonNode value = coerce(m.group(6).trim(), leaf.current());
+            if (value == null || !directionHolds(verb, leaf.current(), value)) return null;
+
+            String key = leaf.target() + ":" + leaf.path();
+            if (changes.containsKey(key)) return null; // same path twice: let the LLM sort it out
+            changes.put(key, new PlanChange(leaf.target(), "set", leaf.path(), value));
+            summary.add(leaf.target() + " " + leaf.path() + " = " + value);
+        }
+        if (changes.isEmpty()) return null;
+
+        String s = "Set " + String.join("; ", summary);
+        if (s.length() > 140) s = s.substring(0, 139) + "…";
+        return new PlanProposalV1("v1", "runtime_config_change", "live", s, true, List.copyOf(changes.values()));
+    }
+
+    private Leaf resolve(List<Leaf> leaves, String target, String spec) {
+        String wanted = squash(spec);
+        Leaf exact = null;
+        Leaf suffix = null;
+        int suffixMatches = 0;
+        for (Leaf l : leaves) {
+            if (target != null && !target.equals(l.target())) continue;
+            if (l.path().equalsIgnoreCase(spec.trim())) {
+                if (exact != null) return null; // same path in both configs and no target given
+                exact = l;
+                continue;
+            }
+            // segment-aligned suffixes of "rateLimit.rpm": "ratelimitrpm", "rpm"
+            String[] segs = l.path().split("\\.");
+            for (int i = 0; i < segs.length; i++) {
+                if (squash(String.join(".", List.of(segs).subList(i, segs.length))).equals(wanted)) {
+                    suffix = l;
+                    suffixMatches++;
+                    break;
+                }
+            }
+        }
+        if (exact != null) return exact;
+        return suffixMatches == 1 ? suffix : null;
+    }
+
+    private JsonNode coerce(String raw, JsonNode current) {
+        String v = raw.replaceAll("[.!]+$", "").trim();
+        if (v.isEmpty()) return null;
+
+        if (current.isNumber()) {
+            try {
+                BigDecimal n = new BigDecimal(v);
+                if (current.isIntegralNumber()) {
+                    return n.stripTrailingZeros().scale() <= 0 ? om.getNodeFactory().numberNode(n.toBigIntegerExact()) : null;
+                }
+                return om.getNodeFactory().numberNode(n);
+            } catch (ArithmeticException | NumberFormatException e) {
+                return null;
+            }
+        }
+        if (current.isBoolean()) {
+            return switch (v.toLowerCase(Locale.ROOT)) {
+                case "true", "on", "yes", "enabled" -> BooleanNode.TRUE;
+                case "false", "off", "no", "disabled" -> BooleanNode.FALSE;
+                default -> null;
+            };
+        }
+        if (current.isTextual()) {
+            if (v.length() >= 2 && (v.startsWith("\"") && v.endsWith("\"") || v.startsWith("'") && v.endsWith("'"))) {
+                v = v.substring(1, v.length() - 1);
+            } else if (!SINGLE_WORD.matcher(v).matches()) {
+                return null; // "to whatever looks best" is a request, not a value
+            }
+            return v.isEmpty() || v.length() > 200 ? null : TextNode.valueOf(v);
+        }
+        if (current.isArray() || current.isObject()) {
+            try {
+                JsonNode literal = om.readTree(v);
+                return literal != null && literal.getNodeType() == current.getNodeType() ? literal : null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null; // null leaves: no type to check against
+    }
+
+    private static boolean directionHolds(String verb, JsonNode current, JsonNode value) {
+        if (verb == null || !current.isNumber() || !value.isNumber()) return true;
+        int cmp = value.decimalValue().compareTo(current.decimalValue());
+        return switch (verb) {
+            case "raise", "increase", "bump" -> cmp > 0;
+            case "lower", "decrease", "reduce" -> cmp < 0;
+            default -> true;
+        };
+    }
+
+    private Shapes shapes() throws Exception {
+        var ui = store.getUiConfig();
+        var policy = store.getPolicy();
+        Shapes s = shapes;
+        if (s != null && s.ui() == ui && s.policy() == policy) return s;
+
+        List<Leaf> leaves = new ArrayList<>();
+        flatten("ui", "", om.readTree(ui.json()), leaves);
+        flatten("policy", "", om.readTree(policy.json()), leaves);
+        s = new Shapes(ui, policy, List.copyOf(leaves));
+        shapes = s;
+        return s;
+    }
+
+    // Object members recurse; everything else (arrays and empty objects included) is a settable leaf
+    private static void flatten(String target, String prefix, JsonNode node, List<Leaf> out) {
+        if (node == null) return;
+        if (node.isObject() && node.size() > 0) {
+            node.fields().forEachRemaining(e ->
+                    flatten(target, prefix.isEmpty() ? e.getKey() : prefix + "." + e.getKey(), e.getValue(), out));
+            return;
+        }
+        if (!prefix.isEmpty()) out.add(new Leaf(target, prefix, node));
+    }
+
+    // Splits on ";", "," and the word "and", except inside quotes, [...] and {...} (JSON values)
+    static List<String> splitClauses(String text) {
+        List<String> out = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> quote = c;
+                case '[', '{' -> depth++;
+                case ']', '}' -> depth--;
+                default -> { }
+            }
+            if (depth != 0) continue;
+            if (c == ';' || c == ',') {
+                out.add(text.substring(start, i));
+                start = i + 1;
+            } else if (isWordAt(text, i, "and")) {
+                out.add(text.substring(start, i));
+                start = i + 3;
+                i += 2;
+            }
+        }
+        out.add(text.substring(start));
+        return out.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static boolean isWordAt(String text, int i, String word) {
+        if (!text.regionMatches(true, i, word, 0, word.length())) return false;
+        boolean before = i == 0 || Character.isWhitespace(text.charAt(i - 1));
+        int end = i + word.length();
+        boolean after = end == text.length() || Character.isWhitespace(text.charAt(end));
+        return before && after;
+    }
+
+    private static String squash(String s) {
+        return s.toLowerCase(Locale.ROOT).replaceAll("[\\s._\\-]+", "");
+    }
+}
@@ -0,0 +1,224 @@
+package com.promptline.backend.mcp.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reuses plans the user already confirmed for near-identical requests ("set theme to dark",
+ * "please set the theme to dark"), skipping the strong-model generatePlanJson call.
+ *
+ * The index is rebuilt periodically from confirmed plans that stored their request text.
+ * A plan is only indexed when every change value appears literally in its request: the value
+ * of a relative request ("raise rpm by 10") depends on the config at the time and must not
+ * be replayed.
+ * Requests are normalized ({@link RequestSignature}) and looked up through MinHash LSH bands;
+ * a candidate is only used when all of these hold:
+ * - shingle Jaccard similarity >= minSimilarity
+ * - every literal of the cached request (numbers, and words that appear in the plan's paths
+ *   or values, e.g. "dark", "rpm") is in the new request, and every number in the new request
+ *   is in the cached one: "set theme to light" never reuses the "dark" plan
+ * - all confirmed plans for that normalized request agree on their changes (support >= minSupport)
+ * - the plan still passes PlanValidator
+ * The plan still goes through the normal confirmation step; its origin is recorded on PlanEntity.
+ *
+ * Metrics: plan.template.lookups{result=hit|miss}, plan.template.entries.
+ */
+@Component
+public class PlanTemplateCache {
+
+    private static final String SOURCES_SQL = """
+            SELECT id, request_text, proposal_json::text
+            FROM plans
+            WHERE status IN ('CONFIRMED', 'RUNNING', 'COMPLETED')
+              AND request_text IS NOT NULL
+            ORDER BY created_at DESC
+            LIMIT ?
+            """;
+
+    // 16 MinHash values in 8 bands of 2: a pair at Jaccard 0.8 shares a band with p > 0.999
+    private static final int ROWS_PER_BAND = 2;
+
+    public record Match(UUID sourcePlanId, String planJson, double similarity) {}
+
+    private record Entry(UUID sourcePlanId, RequestSignature signature, Set<String> tokens,
+                         Set<String> literals, String planJson, int support) {}
+
+    private record BandKey(int band, int a, int b) {}
+
+    private record Index(Map<String, Entry> exact, Map<BandKey, List<Entry>> bands) {}
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper om;
+    private final PlanParser parser;
+    private final PlanValidator validator = new PlanValidator();
+    private final PromptlineLlmProperties.PlanTemplate props;
+
+    private volatile Index index = new Index(Map.of(), Map.of());
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PlanTemplateCache(JdbcTemplate jdbc, ObjectMapper om, PromptlineLlmProperties llmProps, MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.om = om;
+        this.parser = new PlanParser(om);
+        this.props = llmProps.getPlanTemplate();
+        this.hits = Counter.builder("plan.template.lookups").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("plan.template.lookups").tag("result", "miss").register(registry);
+        Gauge.builder("plan.template.entries", this, c -> c.index.exact().size()).register(registry);
+    }
+
+    /** A confirmed plan for an equivalent request, or null. */
+    public Match lookup(String request) {
+        if (!props.isEnabled() || request == null || request.isBlank()) return null;
+        Index idx = index;
+        if (idx.exact().isEmpty()) return null;
+
+        RequestSignature q = RequestSignature.of(request);
+        if (q.tokens.isEmpty()) return null;
+        Set<String> qTokens = new HashSet<>(q.tokens);
+
+        Entry best = null;
+        double bestSim = 0;
+        for (Entry e : candidates(idx, q)) {
+            if (!qTokens.containsAll(e.literals())) continue;
+            if (!numbersCovered(q, e.tokens())) continue;
+            double sim = e.signature().jaccard(q);
+            if (sim < props.getMinSimilarity()) continue;
+            if (best == null || sim > bestSim || (sim == bestSim && e.support() > best.support())) {
+                best = e;
+                bestSim = sim;
+            }
+        }
+
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Match(best.sourcePlanId(), best.planJson(), bestSim);
+    }
+
+    @Scheduled(initialDelay = 20_000, fixedDelayString = "${promptline.llm.plan-template.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (!props.isEnabled()) return;
+
+        try {
+            // newest first, grouped by normalized request
+            Map<String, List<Source>> groups = new LinkedHashMap<>();
+            jdbc.query(SOURCES_SQL, rs -> {
+                var src = new Source(rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3));
+                groups.computeIfAbsent(RequestSignature.of(src.requestText()).key(), k -> new ArrayList<>()).add(src);
+            }, props.getMaxEntries());
+
+            Map<String, Entry> exact = new HashMap<>();
+            Map<BandKey, List<Entry>> bands = new HashMap<>();
+            int conflicting = 0;
+            for (var group : groups.entrySet()) {
+                if (group.getKey().isEmpty() || group.getValue().size() < props.getMinSupport()) continue;
+                Entry e = toEntry(group.getValue());
+                if (e == null) {
+                    conflicting++;
+                    continue;
+                }
+                exact.put(group.getKey(), e);
+                int[] h = e.signature().minHash;
+                for (int b = 0; b < RequestSignature.HASHES / ROWS_PER_BAND; b++) {
+                    bands.computeIfAbsent(new BandKey(b, h[b * 2], h[b * 2 + 1]), k -> new ArrayList<>()).add(e);
+                }
+            }
+
+            index = new Index(exact, bands);
+            System.out.println("Plan template cache: " + exact.size() + " templates from "
+                    + groups.size() + " confirmed requests (" + conflicting + " skipped: conflicting, invalid or relative)");
+        } catch (Exception e) {
+            System.err.println("Plan template cache refresh failed: " + e.getMessage());
+        }
+    }
+
+    private record Source(UUID id, String requestText, String proposalJson) {}
+
+    // null when the group's plans disagree, the newest one no longer validates, or a value is not
+    // in the request (relative: "raise rpm by 10" planned as rpm=110 must not replay 110 later)
+    private Entry toEntry(List<Source> group) {
+        try {
+            Source newest = group.get(0);
+            JsonNode changes = om.readTree(newest.proposalJson()).path("changes");
+            for (Source other : group) {
+                if (!om.readTree(other.proposalJson()).path("changes").equals(changes)) return null;
+            }
+            if (!validator.validate(parser.parse(newest.proposalJson())).isEmpty()) return null;
+
+            RequestSignature sig = RequestSignature.of(newest.requestText());
+            Set<String> tokens = new HashSet<>(sig.tokens);
+            if (!valuesLiteral(changes, tokens)) return null;
+            Set<String> planTokens = planTokens(changes);
+            Set<String> literals = new HashSet<>();
+            for (String t : tokens) {
+                if (RequestSignature.isNumeric(t) || planTokens.contains(t)) literals.add(t);
+            }
+            return new Entry(newest.id(), sig, tokens, literals, newest.proposalJson(), group.size());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean valuesLiteral(JsonNode changes, Set<String> requestTokens) {
+        for (JsonNode c : changes) {
+            JsonNode v = c.path("value");
+            if (!requestTokens.containsAll(RequestSignature.tokenize(v.isValueNode() ? v.asText() : v.toString()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // words of every change's path segments and value
+    private static Set<String> planTokens(JsonNode changes) {
+        Set<String> out = new HashSet<>();
+        for (JsonNode c : changes) {
+            out.addAll(RequestSignature.tokenize(c.path("path").asText("").replaceAll("[.\\[\\]]+", " ")));
+            JsonNode v = c.path("value");
+            out.addAll(RequestSignature.tokenize(v.isValueNode() ? v.asText() : v.toString()));
+        }
+        return out;
+    }
+
+    private static boolean numbersCovered(RequestSignature q, Set<String> cachedTokens) {
+        for (String t : q.tokens) {
+            if (RequestSignature.isNumeric(t) && !cachedTokens.contains(t)) return false;
+        }
+        return true;
+    }
+
+    private static List<Entry> candidates(Index idx, RequestSignature q) {
+        List<Entry> out = new ArrayList<>();
+        Entry same = idx.exact().get(q.key());
+        if (same != null) out.add(same);
+        Set<UUID> seen = new HashSet<>();
+        if (same != null) seen.add(same.sourcePlanId());
+        int[] h = q.minHash;
+        for (int b = 0; b < RequestSignature.HASHES / ROWS_PER_BAND; b++) {
+            for (Entry e : idx.bands().getOrDefault(new BandKey(b, h[b * 2], h[b * 2 + 1]), List.of())) {
+                if (seen.add(e.sourcePlanId())) out.add(e);
+            }
+        }
+        return out;
+    }
+}
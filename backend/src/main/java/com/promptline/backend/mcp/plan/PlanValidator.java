@@ -6,7 +6,9 @@ import java.util.Set;
 
 public final class PlanValidator {
 
-    private static final Set<String> TARGETS = Set.of("ui", "policy");
+    // also checked while a plan streams in (llm.StreamingJsonObject)
+    public static final Set<String> TARGETS = Set.of("ui", "policy");
+    public static final int MAX_CHANGES = 20;
 
     public List<String> validate(PlanProposalV1 p) {
         List<String> errs = new ArrayList<>();
@@ -20,7 +22,7 @@ public final class PlanValidator {
         if (!p.requiresConfirmation()) errs.add("requiresConfirmation must be true");
 
         if (p.changes() == null || p.changes().isEmpty()) errs.add("changes[] is required");
-        if (p.changes() != null && p.changes().size() > 20) errs.add("changes[] too large");
+        if (p.changes() != null && p.changes().size() > MAX_CHANGES) errs.add("changes[] too large");
 
         if (p.changes() != null) {
             for (int i = 0; i < p.changes().size(); i++) {
@@ -0,0 +1,120 @@
+package com.promptline.backend.mcp.plan;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalized form of a user request for {@link PlanTemplateCache}: tokens (lowercased, NFKC,
+ * filler words dropped), shingles (tokens + adjacent pairs, so word order counts) and a
+ * MinHash signature whose agreement rate estimates the Jaccard similarity of two shingle sets.
+ */
+final class RequestSignature {
+
+    static final int HASHES = 16;
+
+    // Politeness / framing words that never change what a config request means
+    private static final Set<String> FILLER = Set.of(
+            "please", "pls", "plz", "can", "could", "would", "will", "you", "kindly", "hey", "hi", "hello",
+            "thanks", "thank", "the", "a", "an", "me", "i", "i'd", "we", "want", "like", "just", "now", "to",
+            "for", "us", "let's", "lets", "go", "ahead"
+    );
+
+    private static final long[] SEEDS = new long[HASHES];
+    static {
+        long s = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            s = mix(s + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = s;
+        }
+    }
+
+    final List<String> tokens;
+    final Set<String> shingles;
+    final int[] minHash;
+
+    private RequestSignature(List<String> tokens) {
+        this.tokens = tokens;
+        this.shingles = new HashSet<>(tokens);
+        for (int i = 0; i + 1 < tokens.size(); i++) shingles.add(tokens.get(i) + " " + tokens.get(i + 1));
+        this.minHash = minHash(shingles);
+    }
+
+    static RequestSignature of(String text) {
+        return new RequestSignature(tokenize(text));
+    }
+
+    /** Stable key for requests that normalize to the same token sequence. */
+    String key() {
+        return String.join(" ", tokens);
+    }
+
+    double jaccard(RequestSignature o) {
+        if (shingles.isEmpty() && o.shingles.isEmpty()) return 1;
+        int common = 0;
+        for (String s : shingles) if (o.shingles.contains(s)) common++;
+        return (double) common / (shingles.size() + o.shingles.size() - common);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String norm = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        // keep characters that occur inside literals: 1.5, #fff, ui.theme, dark-mode, it's
+        for (String raw : norm.split("[^\\p{L}\\p{N}._#'-]+")) {
+            String t = trimEdges(raw);
+            if (!t.isEmpty() && !FILLER.contains(t)) out.add(t);
+        }
+        return out;
+    }
+
+    /** Tokens that look like values rather than words: anything with a digit. */
+    static boolean isNumeric(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    // sentence punctuation around a token ("dark." / "'dark'") is not part of it; "-5" and ".5" keep theirs
+    private static String trimEdges(String t) {
+        int start = 0, end = t.length();
+        while (end > start && ".'-".indexOf(t.charAt(end - 1)) >= 0) end--;
+        while (start < end && ".'-".indexOf(t.charAt(start)) >= 0
+                && !(start + 1 < end && Character.isDigit(t.charAt(start + 1)))) start++;
+        return t.substring(start, end);
+    }
+
+    private static int[] minHash(Set<String> shingles) {
+        int[] sig = new int[HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        for (String s : shingles) {
+            long base = fnv1a(s);
+            for (int i = 0; i < HASHES; i++) {
+                int h = (int) (mix(base ^ SEEDS[i]) >>> 33);
+                if (h < sig[i]) sig[i] = h;
+            }
+        }
+        return sig;
+    }
+
+    private static long fnv1a(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,61 @@
+package com.promptline.backend.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+@Service
+public class EventOutbox {
+
+    private final OutboxRepository repo;
+    private final JdbcTemplate jdbc;
+    private final OutboxDispatcher dispatcher;
+    private final ObjectMapper om;
+
+    public EventOutbox(OutboxRepository repo, JdbcTemplate jdbc, OutboxDispatcher dispatcher, ObjectMapper om) {
+        this.repo = repo;
+        this.jdbc = jdbc;
+        this.dispatcher = dispatcher;
+        this.om = om;
+    }
+
+    @Transactional
+    public void enqueue(UUID chatId, String eventName, Object payload) {
+        enqueue(chatId, eventName, payload, null, false);
+    }
+
+    /**
+     * Joins the caller's transaction: the event becomes visible (and is dispatched)
+     * only if that transaction commits.
+     *
+     * Takes the chat's advisory lock (the one OutboxDispatcher claims under) until that
+     * transaction ends, so a chat's events commit in id order: a later id cannot become
+     * visible while an earlier one is still in flight and be dispatched ahead of it.
+     */
+    @Transactional
+    public void enqueue(UUID chatId, String eventName, Object payload, String coalesceKey, boolean terminal) {
+        String json;
+        try {
+            json = om.writeValueAsString(payload);
+        } catch (Exception e) {
+            // never break the domain flow due to SSE
+            System.err.println(eventName + " outbox serialization failed: " + e.getMessage());
+            return;
+        }
+
+        jdbc.queryForList("select pg_advisory_xact_lock(hashtext(?::text))", chatId);
+        repo.save(new OutboxEventEntity(chatId, eventName, json, coalesceKey, terminal));
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatcher.wake();
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package com.promptline.backend.outbox;
+
+import com.promptline.backend.sse.EventCoalescer;
+import com.promptline.backend.sse.SseHub;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains event_outbox after commit and publishes to the SSE hub.
+ *
+ * A short transaction claims a batch: rows are selected with FOR UPDATE SKIP LOCKED, then
+ * the per-chat advisory lock is taken for the chats of the selected rows only, and a chat's
+ * rows are kept only up to the first pending row of that chat we did not get (claimed or
+ * locked elsewhere). Kept
+ * rows get a claimed_until lease and the transaction commits; publishing happens after that,
+ * holding no locks or connection, and the rows are marked dispatched once sent. EventOutbox
+ * takes the same advisory lock until the enqueuing transaction ends, so a chat's ids commit
+ * in order and a row is never claimed while a lower id of its chat can still commit. So several
+ * nodes can drain concurrently while events of one chat still go out in id order.
+ *
+ * A crash while publishing lets the lease run out and re-delivers the rows (at-least-once);
+ * the stable "outbox-<id>" event id lets the bus and clients drop the duplicate.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final int BATCH_SIZE = 100;
+    private static final long IDLE_POLL_MS = 1000;
+    private static final Duration RETENTION = Duration.ofDays(1);
+    // longer than publishing a batch can take; only matters when a dispatcher dies mid-batch
+    private static final long CLAIM_LEASE_SECONDS = 60;
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate named;
+    private final TransactionTemplate tx;
+    private final SseHub hub;
+    private final EventCoalescer coalescer;
+
+    private final Semaphore signal = new Semaphore(0);
+    private volatile boolean running = true;
+    private Thread worker;
+
+    private record Row(long id, UUID chatId, String eventName, String payload, String coalesceKey, boolean terminal) {}
+
+    public OutboxDispatcher(
+            JdbcTemplate jdbc,
+            NamedParameterJdbcTemplate named,
+            TransactionTemplate tx,
+            SseHub hub,
+            EventCoalescer coalescer
+    ) {
+        this.jdbc = jdbc;
+        this.named = named;
+        this.tx = tx;
+        this.hub = hub;
+        this.coalescer = coalescer;
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::loop, "outbox-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
+
+    /** Called after a transaction that enqueued events commits. */
+    public void wake() {
+        signal.release();
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                // Idle polling also picks up rows left behind by other nodes or a crash
+                signal.tryAcquire(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                signal.drainPermits();
+
+                int n;
+                do {
+                    n = drainOnce();
+                } while (n >= BATCH_SIZE && running);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("outbox dispatch failed: " + e.getMessage());
+            }
+        }
+    }
+
+    int drainOnce() {
+        List<Row> rows = tx.execute(status -> claim());
+        if (rows == null || rows.isEmpty()) return 0;
+
+        // committed: no row or advisory locks are held while subscribers are written to
+        for (Row r : rows) publish(r);
+
+        named.update(
+                "update event_outbox set dispatched_at = now(), claimed_until = null where id in (:ids)",
+                Map.of("ids", rows.stream().map(Row::id).toList())
+        );
+        return rows.size();
+    }
+
+    private List<Row> claim() {
+        List<Row> candidates = jdbc.query("""
+                select id, chat_id, event_name, payload, coalesce_key, terminal
+                from event_outbox
+                where dispatched_at is null
+                  and (claimed_until is null or claimed_until < now())
+                order by id
+                limit ?
+                for update skip locked
+                """,
+                (rs, i) -> new Row(
+                        rs.getLong("id"),
+                        rs.getObject("chat_id", UUID.class),
+                        rs.getString("event_name"),
+                        rs.getString("payload"),
+                        rs.getString("coalesce_key"),
+                        rs.getBoolean("terminal")
+                ),
+                BATCH_SIZE);
+        if (candidates.isEmpty()) return candidates;
+
+        Map<UUID, List<Row>> byChat = new LinkedHashMap<>();
+        for (Row r : candidates) byChat.computeIfAbsent(r.chatId(), c -> new ArrayList<>()).add(r);
+
+        List<Row> rows = new ArrayList<>();
+        for (var e : byChat.entrySet()) {
+            Boolean locked = jdbc.queryForObject(
+                    "select pg_try_advisory_xact_lock(hashtext(?::text))", Boolean.class, e.getKey());
+            // another node is claiming this chat, or a transaction is still enqueuing to it
+            if (!Boolean.TRUE.equals(locked)) continue;
+
+            // Keep the selected rows only while they are exactly the chat's pending rows in order:
+            // a pending row before or between them is locked by another claim or being published
+            List<Row> selected = e.getValue();
+            List<Long> pending = jdbc.queryForList("""
+                    select id from event_outbox
+                    where chat_id = ? and dispatched_at is null and id <= ?
+                    order by id
+                    """, Long.class, e.getKey(), selected.get(selected.size() - 1).id());
+            for (int k = 0; k < selected.size() && k < pending.size() && pending.get(k) == selected.get(k).id(); k++) {
+                rows.add(selected.get(k));
+            }
+        }
+        if (rows.isEmpty()) return rows;
+        rows.sort(Comparator.comparingLong(Row::id));
+
+        named.update(
+                "update event_outbox set claimed_until = now() + make_interval(secs => :lease) where id in (:ids)",
+                Map.of("lease", CLAIM_LEASE_SECONDS, "ids", rows.stream().map(Row::id).toList())
+        );
+        return rows;
+    }
+
+    private void publish(Row r) {
+        String id = "outbox-" + r.id();
+        try {
+            if (r.coalesceKey() != null) {
+                coalescer.submit(id, r.coalesceKey(), r.eventName(), r.payload(), r.terminal());
+            } else {
+                hub.broadcast(id, r.eventName(), r.payload());
+            }
+        } catch (Exception e) {
+            // one bad subscriber must not stall the outbox
+            System.err.println(r.eventName() + " outbox publish failed id=" + id + ": " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 3_600_000)
+    public void pruneDispatched() {
+        jdbc.update("delete from event_outbox where dispatched_at < ?",
+                Timestamp.from(Instant.now().minus(RETENTION)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.promptline.backend.outbox;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Domain event written in the same transaction as the state change that produced it.
+ * {@link OutboxDispatcher} publishes it to the SSE hub after commit.
+ */
+@Entity
+@Table(
+    name = "event_outbox",
+    indexes = {
+        @Index(name = "idx_event_outbox_pending", columnList = "dispatched_at, id"),
+        @Index(name = "idx_event_outbox_chat", columnList = "chat_id, id")
+    }
+)
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ordering key: events of one chat are dispatched in id order
+    @Column(name = "chat_id", nullable = false, columnDefinition = "uuid")
+    private UUID chatId;
+
+    @Column(name = "event_name", nullable = false, length = 64)
+    private String eventName;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    // optional: routed through the EventCoalescer under this key
+    @Column(name = "coalesce_key", length = 64)
+    private String coalesceKey;
+
+    @Column(nullable = false)
+    private boolean terminal;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "dispatched_at")
+    private Instant dispatchedAt;
+
+    // set while a dispatcher publishes the row (after its claim committed); a crash lets it expire
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    protected OutboxEventEntity() {}
+
+    public OutboxEventEntity(UUID chatId, String eventName, String payload, String coalesceKey, boolean terminal) {
+        this.chatId = chatId;
+        this.eventName = eventName;
+        this.payload = payload;
+        this.coalesceKey = coalesceKey;
+        this.terminal = terminal;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        if (createdAt == null) createdAt = Instant.now();
+    }
+
+    public Long getId() { return id; }
+    public UUID getChatId() { return chatId; }
+    public String getEventName() { return eventName; }
+    public String getPayload() { return payload; }
+    public String getCoalesceKey() { return coalesceKey; }
+    public boolean isTerminal() { return terminal; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getDispatchedAt() { return dispatchedAt; }
+}
@@ -0,0 +1,5 @@
+package com.promptline.backend.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OutboxRepository extends JpaRepository<OutboxEventEntity, Long> {}
@@ -26,6 +26,11 @@ public class ConfigUpdatedController {
         this.store = store;
         this.hub = hub;
         this.om = om;
+
+        // Replicas learn about config changes through the hub, not through this endpoint
+        hub.subscribe((id, eventName, jsonPayload) -> {
+            if ("CONFIG_UPDATED".equals(eventName)) invalidate(jsonPayload);
+        });
     }
 
     @PostMapping("/config-updated")
@@ -40,14 +45,22 @@ public class ConfigUpdatedController {
             }
         }
 
-        // Invalidate caches based on what changed
-        if (req.updated() != null) {
-            if (req.updated().contains("ui")) store.invalidateUi();
-            if (req.updated().contains("policy")) store.invalidatePolicy();
-        }
-
-        // JSON-safe payload
+        // JSON-safe payload. This node invalidates right away, whatever happens to the event;
+        // the other replicas invalidate through the hub listener (and the store's TTL backstop)
         String payload = om.writeValueAsString(req);
+        invalidate(payload);
         hub.broadcast("CONFIG_UPDATED", payload);
     }
+
+    private void invalidate(String jsonPayload) {
+        try {
+            ConfigUpdatedRequest req = om.readValue(jsonPayload, ConfigUpdatedRequest.class);
+            if (req.updated() != null) {
+                if (req.updated().contains("ui")) store.invalidateUi();
+                if (req.updated().contains("policy")) store.invalidatePolicy();
+            }
+        } catch (Exception e) {
+            System.err.println("CONFIG_UPDATED invalidation failed: " + e.getMessage());
+        }
+    }
 }
@@ -15,41 +15,47 @@ public class RuntimeConfigStore {
 
     public record RuntimeBlob(String json, String sourceKey) {}
 
+    // Invalidated on CONFIG_UPDATED; the TTL is a backstop for a replica that missed the event
+    private record Cached(RuntimeBlob blob, long loadedAtMs) {}
+
     private final S3Client s3;
     private final String bucket;
     private final String uiKey;
     private final String policyKey;
+    private final long ttlMs;
 
-    private final AtomicReference<RuntimeBlob> uiCache = new AtomicReference<>();
-    private final AtomicReference<RuntimeBlob> policyCache = new AtomicReference<>();
+    private final AtomicReference<Cached> uiCache = new AtomicReference<>();
+    private final AtomicReference<Cached> policyCache = new AtomicReference<>();
 
     public RuntimeConfigStore(
             S3Client s3,
             @Value("${promptline.s3.bucket}") String bucket,
             @Value("${promptline.s3.uiKey}") String uiKey,
-            @Value("${promptline.s3.policyKey}") String policyKey
+            @Value("${promptline.s3.policyKey}") String policyKey,
+            @Value("${promptline.s3.cacheTtlSeconds:300}") long cacheTtlSeconds
     ) {
         this.s3 = s3;
         this.bucket = bucket;
         this.uiKey = uiKey;
         this.policyKey = policyKey;
+        this.ttlMs = Math.max(1, cacheTtlSeconds) * 1000;
     }
 
     public RuntimeBlob getUiConfig() {
-        var cached = uiCache.get();
-        if (cached != null) return cached;
-
-        var fresh = readJsonFromS3(uiKey);
-        uiCache.set(fresh);
-        return fresh;
+        return cached(uiCache, uiKey);
     }
 
     public RuntimeBlob getPolicy() {
-        var cached = policyCache.get();
-        if (cached != null) return cached;
+        return cached(policyCache, policyKey);
+    }
+
+    private RuntimeBlob cached(AtomicReference<Cached> cache, String key) {
+        var cached = cache.get();
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.loadedAtMs() < ttlMs) return cached.blob();
 
-        var fresh = readJsonFromS3(policyKey);
-        policyCache.set(fresh);
+        var fresh = readJsonFromS3(key);
+        cache.set(new Cached(fresh, now));
         return fresh;
     }
 
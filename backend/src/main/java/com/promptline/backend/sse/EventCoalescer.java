@@ -0,0 +1,136 @@
+package com.promptline.backend.sse;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-key coalescing stage in front of {@link SseHub}.
+ *
+ * Non-terminal events for the same key (e.g. a planId) that arrive within the window
+ * collapse into one event carrying the latest state. Terminal events are always delivered:
+ * they drop whatever is still pending for the key and go out immediately. A non-terminal
+ * update that races with (or arrives shortly after) the terminal event of its key is dropped,
+ * so clients never see RUNNING after DONE/ERROR.
+ */
+@Component
+public class EventCoalescer {
+
+    private final SseHub hub;
+    private final long windowMs;
+    private final ScheduledExecutorService scheduler;
+
+    // keys that had their terminal event recently
+    private static final long TERMINATED_TTL_MS = 30_000;
+
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> terminated = new ConcurrentHashMap<>();
+
+    private static final class Slot {
+        String id;
+        String eventName;
+        String jsonPayload;
+        boolean scheduled;
+        // set under the slot lock once it left `slots`; a submit holding a stale reference retries
+        boolean removed;
+    }
+
+    public EventCoalescer(SseHub hub, PromptlineSseProperties props) {
+        this.hub = hub;
+        this.windowMs = Math.max(0, props.getCoalesceWindowMs());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void submit(String key, String eventName, String jsonPayload, boolean terminal) {
+        submit(UUID.randomUUID().toString(), key, eventName, jsonPayload, terminal);
+    }
+
+    /**
+     * @param id event id of this update; a coalesced event goes out with the id of the latest update
+     */
+    public void submit(String id, String key, String eventName, String jsonPayload, boolean terminal) {
+        if (windowMs == 0 || key == null) {
+            hub.broadcast(id, eventName, jsonPayload);
+            return;
+        }
+
+        if (terminal) {
+            // marked before the slot goes, so a racing update that retries sees it
+            Long mark = System.nanoTime();
+            terminated.put(key, mark);
+            scheduler.schedule(() -> terminated.remove(key, mark), TERMINATED_TTL_MS, TimeUnit.MILLISECONDS);
+            Slot slot = slots.remove(key);
+            if (slot == null) {
+                hub.broadcast(id, eventName, jsonPayload);
+                return;
+            }
+            // Hold the slot lock so a concurrent flush cannot land after the terminal event
+            synchronized (slot) {
+                slot.removed = true;
+                slot.scheduled = false;
+                slot.jsonPayload = null;
+                hub.broadcast(id, eventName, jsonPayload);
+            }
+            return;
+        }
+
+        while (true) {
+            if (terminated.containsKey(key)) return; // late update for a finished key
+            Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            synchronized (slot) {
+                // a terminal event or a flush removed it between computeIfAbsent and the lock:
+                // updating it would schedule a stale flush after the terminal event (retry: the
+                // terminated check drops the update, a flushed slot is replaced by a fresh one)
+                if (slot.removed) continue;
+                if (terminated.containsKey(key)) {
+                    // the terminal event went out before this slot existed
+                    slot.removed = true;
+                    slots.remove(key, slot);
+                    return;
+                }
+                slot.id = id;
+                slot.eventName = eventName;
+                slot.jsonPayload = jsonPayload;
+                if (!slot.scheduled) {
+                    slot.scheduled = true;
+                    scheduler.schedule(() -> flush(key, slot), windowMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    private void flush(String key, Slot slot) {
+        synchronized (slot) {
+            if (!slot.scheduled) return; // superseded by a terminal event
+
+            String id = slot.id;
+            String eventName = slot.eventName;
+            String jsonPayload = slot.jsonPayload;
+            slot.scheduled = false;
+            slot.jsonPayload = null;
+            slot.removed = true;
+            slots.remove(key, slot);
+
+            try {
+                hub.broadcast(id, eventName, jsonPayload);
+            } catch (Exception e) {
+                System.err.println("coalesced broadcast failed key=" + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,58 @@
+package com.promptline.backend.sse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded, sequence-numbered log of recent events for WebSocket resume.
+ * Entries leave when every connected client has acknowledged them, or when capacity is hit.
+ */
+final class EventReplayLog {
+
+    record Entry(long seq, String id, String eventName, JsonNode data) {}
+
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long lastSeq = 0;
+
+    EventReplayLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    synchronized Entry append(String id, String eventName, JsonNode data) {
+        Entry e = new Entry(++lastSeq, id, eventName, data);
+        entries.addLast(e);
+        while (entries.size() > capacity) entries.removeFirst();
+        return e;
+    }
+
+    synchronized List<Entry> since(long seq) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.seq() > seq) out.add(e);
+        }
+        return out;
+    }
+
+    synchronized void pruneThrough(long seq) {
+        while (!entries.isEmpty() && entries.peekFirst().seq() <= seq) entries.removeFirst();
+    }
+
+    /** True when events after `seq` were dropped (capacity or pruning), so a resume would have a gap. */
+    synchronized boolean hasGapAfter(long seq) {
+        if (seq > lastSeq) return true; // not a seq of this log
+        long oldest = entries.isEmpty() ? lastSeq + 1 : entries.peekFirst().seq();
+        return seq < oldest - 1;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
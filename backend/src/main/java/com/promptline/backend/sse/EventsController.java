@@ -1,9 +1,12 @@
 package com.promptline.backend.sse;
 
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.UUID;
+
 @RestController
 public class EventsController {
 
@@ -13,9 +16,10 @@ public class EventsController {
         this.hub = hub;
     }
 
+    /** chatId: also stream that chat's MESSAGE_DELTA events (sent only to the chat's subscribers). */
     @GetMapping("/events")
-    public SseEmitter events() {
-        return hub.connect();
+    public SseEmitter events(@RequestParam(required = false) UUID chatId) {
+        return hub.connect(chatId);
     }
 }
 
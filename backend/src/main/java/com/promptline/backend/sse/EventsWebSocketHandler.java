@@ -0,0 +1,266 @@
+package com.promptline.backend.sse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link SseHub} event stream over WebSocket at /ws/events.
+ *
+ * Protocol:
+ * - connect with ?since=<seq>&epoch=<epoch> to replay events after seq from the replay log;
+ *   add &chatId=<id> to also get that chat's MESSAGE_DELTA events (no seq: not replayed)
+ * - server sends {"type":"hello","seq":<last seq>,"epoch":<epoch>} then batched frames
+ *   {"type":"events","events":[{"seq","id","name","data"}]}
+ * - when the events after `since` cannot be replayed (older than the log, or since/epoch from
+ *   another node or an earlier process: the log is per node and in memory), the server sends
+ *   {"type":"resync","seq":<last seq>,"epoch":<epoch>} instead of replaying, and the client
+ *   must refetch its state; live events follow as usual
+ * - client sends {"ack":<seq>} after processing; once every client has acked a seq,
+ *   the replay log drops it (checked on the next flush, not per ack)
+ *
+ * Compression is negotiated per connection (permessage-deflate) when the client offers it.
+ */
+@Component
+public class EventsWebSocketHandler extends TextWebSocketHandler {
+
+    private static final int MAX_EVENTS_PER_FRAME = 500;
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+
+    private final ObjectMapper om;
+    private final EventReplayLog replay;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    // set by acks and disconnects; the flusher recomputes the minimum ack at most once per tick
+    private volatile boolean ackChanged;
+    // identifies this node's replay log; seqs are only comparable within one epoch
+    private final String epoch = UUID.randomUUID().toString();
+
+    private static final class Client {
+        final WebSocketSession session;
+        final UUID chatId;
+        final ConcurrentLinkedQueue<EventReplayLog.Entry> pending = new ConcurrentLinkedQueue<>();
+        volatile long acked;
+        // false until hello/resync is sent: the client holds back pruning but gets no events yet
+        volatile boolean ready;
+
+        Client(WebSocketSession session, UUID chatId, long acked) {
+            this.session = session;
+            this.chatId = chatId;
+            this.acked = acked;
+        }
+    }
+
+    public EventsWebSocketHandler(SseHub hub, ObjectMapper om, PromptlineSseProperties props) {
+        this.om = om;
+        this.replay = new EventReplayLog(props.getWebsocket().getReplayCapacity());
+
+        long window = Math.max(1, props.getWebsocket().getBatchWindowMs());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-events-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushAll, window, window, TimeUnit.MILLISECONDS);
+
+        hub.subscribe(this::onEvent);
+        hub.subscribeChat(this::onChatEvent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    // ---- hub -> clients ----
+
+    private void onEvent(String id, String eventName, String jsonPayload) {
+        JsonNode data = toJson(jsonPayload);
+        // Append and fan-out under the log lock so a resuming client never sees a gap or reorder
+        synchronized (replay) {
+            EventReplayLog.Entry e = replay.append(id, eventName, data);
+            for (Client c : clients.values()) c.pending.add(e);
+        }
+    }
+
+    // chat-scoped events skip the replay log (seq 0); they ride along with the next batch
+    private void onChatEvent(UUID chatId, String id, String eventName, String jsonPayload) {
+        EventReplayLog.Entry e = null;
+        for (Client c : clients.values()) {
+            if (!chatId.equals(c.chatId)) continue;
+            if (e == null) e = new EventReplayLog.Entry(0, id, eventName, toJson(jsonPayload));
+            c.pending.add(e);
+        }
+    }
+
+    private void flushAll() {
+        if (ackChanged) {
+            ackChanged = false;
+            pruneAcked();
+        }
+        for (Map.Entry<String, Client> entry : clients.entrySet()) {
+            Client c = entry.getValue();
+            if (!c.ready) continue;
+            try {
+                while (!c.pending.isEmpty()) {
+                    List<EventReplayLog.Entry> batch = new ArrayList<>();
+                    EventReplayLog.Entry e;
+                    while (batch.size() < MAX_EVENTS_PER_FRAME && (e = c.pending.poll()) != null) batch.add(e);
+                    if (batch.isEmpty()) break;
+                    c.session.sendMessage(new TextMessage(encode(batch)));
+                }
+            } catch (Exception ex) {
+                // Send limits exceeded or the socket is gone: drop the client, it can resume with ?since
+                clients.remove(entry.getKey());
+                ackChanged = true;
+                closeQuietly(c.session);
+            }
+        }
+    }
+
+    // ---- session lifecycle ----
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession safe = new ConcurrentWebSocketSessionDecorator(
+                session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES);
+
+        long since = parseSince(session);
+        String clientEpoch = queryParam(session, "epoch");
+        long lastSeq;
+        boolean resync;
+        Client c;
+        // Registered under the log lock so no event is missed, but only flushed once hello is out
+        synchronized (replay) {
+            lastSeq = replay.lastSeq();
+            resync = since >= 0 && (!epoch.equals(clientEpoch) || replay.hasGapAfter(since));
+            boolean resume = since >= 0 && !resync;
+            c = new Client(safe, parseChatId(session), resume ? since : lastSeq);
+            if (resume) c.pending.addAll(replay.since(since));
+            clients.put(session.getId(), c);
+        }
+
+        ObjectNode hello = om.createObjectNode();
+        hello.put("type", resync ? "resync" : "hello");
+        hello.put("seq", lastSeq);
+        hello.put("epoch", epoch);
+        ArrayNode ext = hello.putArray("extensions");
+        for (WebSocketExtension x : session.getExtensions()) ext.add(x.getName());
+        safe.sendMessage(new TextMessage(om.writeValueAsString(hello)));
+        c.ready = true;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Client c = clients.get(session.getId());
+        if (c == null) return;
+
+        try {
+            JsonNode msg = om.readTree(message.getPayload());
+            if (msg.has("ack")) {
+                long seq = msg.path("ack").asLong(0);
+                if (seq > c.acked) {
+                    c.acked = seq;
+                    ackChanged = true;
+                }
+            }
+        } catch (Exception ignored) {
+            // unknown client messages are ignored
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        clients.remove(session.getId());
+        ackChanged = true;
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        clients.remove(session.getId());
+        ackChanged = true;
+        closeQuietly(session);
+    }
+
+    // ---- helpers ----
+
+    private void pruneAcked() {
+        long min = Long.MAX_VALUE;
+        for (Client c : clients.values()) min = Math.min(min, c.acked);
+        if (min != Long.MAX_VALUE) replay.pruneThrough(min);
+    }
+
+    private String encode(List<EventReplayLog.Entry> batch) throws Exception {
+        ObjectNode frame = om.createObjectNode();
+        frame.put("type", "events");
+        ArrayNode events = frame.putArray("events");
+        for (EventReplayLog.Entry e : batch) {
+            ObjectNode n = events.addObject();
+            if (e.seq() > 0) n.put("seq", e.seq());
+            n.put("id", e.id());
+            n.put("name", e.eventName());
+            n.set("data", e.data());
+        }
+        return om.writeValueAsString(frame);
+    }
+
+    private JsonNode toJson(String payload) {
+        if (payload == null) return om.nullNode();
+        try {
+            return om.readTree(payload);
+        } catch (Exception e) {
+            return om.getNodeFactory().textNode(payload);
+        }
+    }
+
+    private static long parseSince(WebSocketSession session) {
+        String v = queryParam(session, "since");
+        try {
+            return v == null ? -1 : Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static UUID parseChatId(WebSocketSession session) {
+        String v = queryParam(session, "chatId");
+        try {
+            return v == null ? null : UUID.fromString(v);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String queryParam(WebSocketSession session, String name) {
+        if (session.getUri() == null) return null;
+        return UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(name);
+    }
+
+    private static void closeQuietly(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception ignored) {}
+    }
+}
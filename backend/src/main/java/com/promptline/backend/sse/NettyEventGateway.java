@@ -0,0 +1,121 @@
+package com.promptline.backend.sse;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Serves the {@link SseHub} event stream over a non-blocking Netty server on its own port.
+ *
+ * Each broadcast is encoded into an SSE frame once and the same bytes are wrapped
+ * (not copied) for every connection. A connection costs a channel plus a small outbound
+ * buffer; there is no async servlet context per client. Slow consumers drop frames
+ * instead of buffering without bound (best-effort multicast). Connecting with ?chatId=<id>
+ * adds that chat's scoped events (MESSAGE_DELTA) to the stream.
+ */
+@Component
+@ConditionalOnProperty(prefix = "promptline.sse.gateway", name = "enabled", havingValue = "true")
+public class NettyEventGateway {
+
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SseHub hub;
+    private final PromptlineSseProperties.Gateway cfg;
+
+    // chatId null = broadcast to every connection
+    private record Frame(UUID chatId, byte[] bytes) {}
+
+    private final Sinks.Many<Frame> frames = Sinks.many().multicast().directBestEffort();
+    private DisposableServer server;
+
+    public NettyEventGateway(SseHub hub, PromptlineSseProperties props) {
+        this.hub = hub;
+        this.cfg = props.getGateway();
+    }
+
+    @PostConstruct
+    public void start() {
+        Flux<byte[]> heartbeat = Flux.interval(Duration.ofSeconds(cfg.getHeartbeatSeconds()))
+                .map(i -> HEARTBEAT)
+                .share();
+
+        server = HttpServer.create()
+                .host(cfg.getHost())
+                .port(cfg.getPort())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8 * 1024, 32 * 1024))
+                .route(routes -> routes.get("/events", (req, res) -> {
+                    byte[] hello = frame(null, "CONNECTED", "{\"at\":\"" + Instant.now() + "\"}");
+                    UUID chatId = chatId(req.uri());
+                    Flux<byte[]> events = frames.asFlux()
+                            .filter(f -> f.chatId() == null || f.chatId().equals(chatId))
+                            .map(Frame::bytes);
+                    Flux<byte[]> stream = Flux.concat(
+                            Flux.just(hello),
+                            Flux.merge(events, heartbeat)
+                    );
+                    return res.sse()
+                            .header("Cache-Control", "no-cache")
+                            .send(stream.map(Unpooled::wrappedBuffer));
+                }))
+                .bindNow();
+
+        hub.subscribe(this::onEvent);
+        hub.subscribeChat(this::onChatEvent);
+        System.out.println("SSE gateway listening on " + cfg.getHost() + ":" + server.port());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) server.disposeNow();
+    }
+
+    private void onEvent(String id, String eventName, String jsonPayload) {
+        emit(new Frame(null, frame(id, eventName, jsonPayload)));
+    }
+
+    private void onChatEvent(UUID chatId, String id, String eventName, String jsonPayload) {
+        emit(new Frame(chatId, frame(id, eventName, jsonPayload)));
+    }
+
+    private void emit(Frame f) {
+        // Sinks require serialized emission; events arrive from several threads
+        synchronized (frames) {
+            frames.tryEmitNext(f);
+        }
+    }
+
+    private static UUID chatId(String uri) {
+        List<String> v = new QueryStringDecoder(uri).parameters().get("chatId");
+        try {
+            return v == null || v.isEmpty() ? null : UUID.fromString(v.get(0));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static byte[] frame(String id, String eventName, String data) {
+        StringBuilder sb = new StringBuilder(64 + (data == null ? 0 : data.length()));
+        if (id != null) sb.append("id: ").append(id).append('\n');
+        sb.append("event: ").append(eventName).append('\n');
+        for (String line : (data == null ? "" : data).split("\n", -1)) {
+            sb.append("data: ").append(line).append('\n');
+        }
+        sb.append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
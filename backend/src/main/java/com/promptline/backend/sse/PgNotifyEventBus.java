@@ -0,0 +1,353 @@
+package com.promptline.backend.sse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster-wide {@link SseEventBus} over Postgres LISTEN/NOTIFY.
+ *
+ * - publish() delivers locally right away and queues the event for NOTIFY
+ * - the queue is bounded (queueCapacity): while Postgres is slow or down, events beyond it
+ *   reach this node only
+ * - a publisher thread drains the queue in batches and packs several events per NOTIFY;
+ *   a failed batch is retried with backoff (in order) until it goes out
+ * - events above the spill threshold are written to sse_event_spill and only referenced by id
+ * - a listener thread holds a dedicated (non-pooled) connection, LISTENs and fans out locally
+ * - every node dedupes by event id, so its own notifications and redeliveries are dropped
+ */
+@Component
+@ConditionalOnProperty(prefix = "promptline.sse", name = "bus", havingValue = "postgres")
+public class PgNotifyEventBus implements SseEventBus {
+
+    // Postgres rejects NOTIFY payloads of 8000 bytes or more
+    static final int MAX_NOTIFY_BYTES = 7900;
+    // {"node":"<uuid>","events":[ ... ]} around the entries of one NOTIFY
+    static final int ENVELOPE_BYTES = envelopeHead(UUID.randomUUID().toString()).length() + 2;
+
+    private final SseHub hub;
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate named;
+    private final TransactionTemplate tx;
+    private final DataSourceProperties dataSource;
+    private final ObjectMapper om;
+    private final PromptlineSseProperties.Postgres cfg;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final LinkedBlockingQueue<Envelope> outbound;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, Boolean> seen;
+
+    private volatile boolean running = true;
+    private Thread publisher;
+    private Thread listener;
+
+    private record Envelope(String id, String eventName, String jsonPayload) {}
+
+    public PgNotifyEventBus(
+            SseHub hub,
+            JdbcTemplate jdbc,
+            NamedParameterJdbcTemplate named,
+            TransactionTemplate tx,
+            DataSourceProperties dataSource,
+            ObjectMapper om,
+            PromptlineSseProperties props
+    ) {
+        this.hub = hub;
+        this.jdbc = jdbc;
+        this.named = named;
+        this.tx = tx;
+        this.dataSource = dataSource;
+        this.om = om;
+        this.cfg = props.getPostgres();
+        this.outbound = new LinkedBlockingQueue<>(Math.max(1, cfg.getQueueCapacity()));
+
+        if (!cfg.getChannel().matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("invalid promptline.sse.postgres.channel: " + cfg.getChannel());
+        }
+        // an entry just under the threshold still has to fit one NOTIFY with its envelope
+        int maxSpillThreshold = MAX_NOTIFY_BYTES - ENVELOPE_BYTES;
+        if (cfg.getSpillThresholdBytes() < 1 || cfg.getSpillThresholdBytes() > maxSpillThreshold) {
+            throw new IllegalArgumentException("promptline.sse.postgres.spill-threshold-bytes must be 1.."
+                    + maxSpillThreshold + ": " + cfg.getSpillThresholdBytes());
+        }
+
+        int capacity = Math.max(100, cfg.getDedupeCapacity());
+        this.seen = new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        publisher = new Thread(this::publishLoop, "sse-pg-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+
+        listener = new Thread(this::listenLoop, "sse-pg-listener");
+        listener.setDaemon(true);
+        listener.start();
+
+        hub.attachBus(this);
+        System.out.println("SSE bus: postgres channel=" + cfg.getChannel() + " node=" + nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (publisher != null) publisher.interrupt();
+        if (listener != null) listener.interrupt();
+    }
+
+    @Override
+    public void publish(String id, String eventName, String jsonPayload) {
+        if (!markSeen(id)) return;
+
+        hub.deliverLocal(id, eventName, jsonPayload);
+        if (!outbound.offer(new Envelope(id, eventName, jsonPayload)) && dropped.getAndIncrement() == 0) {
+            System.err.println("SSE pg queue full (" + cfg.getQueueCapacity() + "): events reach this node only");
+        }
+    }
+
+    // ---- outbound ----
+
+    private void publishLoop() {
+        while (running) {
+            try {
+                Envelope first = outbound.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+
+                List<Envelope> batch = new ArrayList<>();
+                batch.add(first);
+                outbound.drainTo(batch, Math.max(0, cfg.getBatchSize() - 1));
+
+                sendWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Already delivered locally; retried (later events wait behind it) so other nodes get it too,
+    // up to maxSendAttempts: a batch that cannot be sent must not stop fan-out for good
+    private void sendWithRetry(List<Envelope> batch) throws InterruptedException {
+        long backoffMs = 100;
+        int maxAttempts = Math.max(1, cfg.getMaxSendAttempts());
+        for (int attempt = 1; running; attempt++) {
+            try {
+                sendBatch(batch);
+                long lost = dropped.getAndSet(0);
+                if (attempt > 1 || lost > 0) {
+                    System.out.println("SSE pg publish recovered after " + attempt + " attempts"
+                            + (lost > 0 ? ", " + lost + " events were not sent to other nodes" : ""));
+                }
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    System.err.println("SSE pg publish gave up after " + attempt + " attempts, " + batch.size()
+                            + " events were not sent to other nodes: " + e.getMessage());
+                    return;
+                }
+                if (attempt == 1) System.err.println("SSE pg publish failed, retrying: " + e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(5_000, backoffMs * 2);
+            }
+        }
+    }
+
+    private void sendBatch(List<Envelope> batch) throws Exception {
+        List<Object[]> spills = new ArrayList<>();
+        List<String> entries = new ArrayList<>(batch.size());
+        Timestamp now = Timestamp.from(Instant.now());
+
+        for (Envelope e : batch) {
+            String data = e.jsonPayload() == null ? "" : e.jsonPayload();
+            String entry = om.writeValueAsString(entry(e.id(), e.eventName(), data, false));
+
+            if (utf8Length(entry) > cfg.getSpillThresholdBytes()) {
+                spills.add(new Object[]{e.id(), e.eventName(), data, now});
+                entry = om.writeValueAsString(entry(e.id(), e.eventName(), null, true));
+            }
+            entries.add(entry);
+        }
+
+        List<String> messages = pack(nodeId, entries);
+
+        // Spill rows and notifications commit together, so listeners never see a dangling reference
+        tx.executeWithoutResult(status -> {
+            if (!spills.isEmpty()) {
+                jdbc.batchUpdate("""
+                        insert into sse_event_spill (id, event_name, payload, created_at)
+                        values (?, ?, ?, ?)
+                        on conflict (id) do nothing
+                        """, spills);
+            }
+            for (String m : messages) {
+                jdbc.queryForList("select pg_notify(?, ?)", cfg.getChannel(), m);
+            }
+        });
+    }
+
+    // entries in order, as few NOTIFY payloads as fit MAX_NOTIFY_BYTES (UTF-8)
+    static List<String> pack(String nodeId, List<String> entries) {
+        String head = envelopeHead(nodeId);
+        String tail = "]}";
+        int overhead = utf8Length(head) + utf8Length(tail);
+
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(head);
+        int size = overhead;
+        int count = 0;
+
+        for (String entry : entries) {
+            int len = utf8Length(entry) + (count > 0 ? 1 : 0);
+            if (count > 0 && size + len > MAX_NOTIFY_BYTES) {
+                out.add(sb.append(tail).toString());
+                sb = new StringBuilder(head);
+                size = overhead;
+                count = 0;
+                len = utf8Length(entry);
+            }
+            if (count > 0) sb.append(',');
+            sb.append(entry);
+            size += len;
+            count++;
+        }
+        if (count > 0) out.add(sb.append(tail).toString());
+        return out;
+    }
+
+    // ---- inbound ----
+
+    private void listenLoop() {
+        while (running) {
+            // Dedicated connection: LISTEN state must survive, so it cannot go back to the pool
+            try (Connection conn = DriverManager.getConnection(
+                    dataSource.determineUrl(),
+                    dataSource.determineUsername(),
+                    dataSource.determinePassword())) {
+
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + cfg.getChannel());
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(500);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        handle(n.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                System.err.println("SSE pg listener disconnected: " + e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            JsonNode msg = om.readTree(payload);
+            if (nodeId.equals(msg.path("node").asText())) return;
+
+            List<JsonNode> fresh = new ArrayList<>();
+            List<String> spilledIds = new ArrayList<>();
+            for (JsonNode ev : msg.path("events")) {
+                String id = ev.path("id").asText();
+                if (!markSeen(id)) continue;
+                fresh.add(ev);
+                if (ev.path("spilled").asBoolean(false)) spilledIds.add(id);
+            }
+
+            Map<String, String> spilled = spilledIds.isEmpty() ? Map.of() : loadSpilled(spilledIds);
+
+            for (JsonNode ev : fresh) {
+                String id = ev.path("id").asText();
+                String data = ev.path("spilled").asBoolean(false)
+                        ? spilled.get(id)
+                        : ev.path("data").asText();
+                if (data == null) {
+                    System.err.println("SSE pg spilled payload missing id=" + id);
+                    continue;
+                }
+                hub.deliverLocal(id, ev.path("name").asText(), data);
+            }
+        } catch (Exception e) {
+            System.err.println("SSE pg notification dropped: " + e.getMessage());
+        }
+    }
+
+    private Map<String, String> loadSpilled(List<String> ids) {
+        Map<String, String> out = new HashMap<>();
+        named.query(
+                "select id, payload from sse_event_spill where id in (:ids)",
+                Map.of("ids", ids),
+                (RowCallbackHandler) rs -> out.put(rs.getString("id"), rs.getString("payload"))
+        );
+        return out;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void pruneSpill() {
+        Instant cutoff = Instant.now().minusSeconds(cfg.getSpillRetentionSeconds());
+        jdbc.update("delete from sse_event_spill where created_at < ?", Timestamp.from(cutoff));
+    }
+
+    // ---- helpers ----
+
+    private boolean markSeen(String id) {
+        synchronized (seen) {
+            return seen.put(id, Boolean.TRUE) == null;
+        }
+    }
+
+    private static Map<String, Object> entry(String id, String eventName, String data, boolean spilled) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("name", eventName);
+        if (spilled) m.put("spilled", true);
+        else m.put("data", data);
+        return m;
+    }
+
+    private static String envelopeHead(String nodeId) {
+        return "{\"node\":\"" + nodeId + "\",\"events\":[";
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.promptline.backend.sse;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "promptline.sse")
+public class PromptlineSseProperties {
+
+    /**
+     * Window in which bursts of per-key events (e.g. PLAN_EXECUTION_UPDATED for one plan)
+     * are collapsed into the latest state. 0 disables coalescing.
+     */
+    private long coalesceWindowMs = 150;
+
+    /**
+     * local    = events reach only clients connected to this node
+     * postgres = events fan out to every replica via Postgres LISTEN/NOTIFY
+     */
+    private String bus = "local";
+
+    private Postgres postgres = new Postgres();
+
+    private Gateway gateway = new Gateway();
+
+    private WebSocket websocket = new WebSocket();
+
+    public long getCoalesceWindowMs() { return coalesceWindowMs; }
+    public void setCoalesceWindowMs(long coalesceWindowMs) { this.coalesceWindowMs = coalesceWindowMs; }
+
+    public String getBus() { return bus; }
+    public void setBus(String bus) { this.bus = bus; }
+
+    public Postgres getPostgres() { return postgres; }
+    public void setPostgres(Postgres postgres) { this.postgres = postgres; }
+
+    public Gateway getGateway() { return gateway; }
+    public void setGateway(Gateway gateway) { this.gateway = gateway; }
+
+    public WebSocket getWebsocket() { return websocket; }
+    public void setWebsocket(WebSocket websocket) { this.websocket = websocket; }
+
+    public static class Postgres {
+        private String channel = "promptline_events";
+        private int batchSize = 64;
+        // events waiting for NOTIFY; when full (Postgres slow or down) new events reach this node only
+        private int queueCapacity = 10_000;
+        // NOTIFY payloads are capped at 8000 bytes; larger events go through the spill table
+        private int spillThresholdBytes = 4000;
+        private long spillRetentionSeconds = 300;
+        private int dedupeCapacity = 10_000;
+        // a batch that still fails after this many tries (backoff 100ms..5s) is dropped
+        private int maxSendAttempts = 8;
+
+        public String getChannel() { return channel; }
+        public void setChannel(String channel) { this.channel = channel; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getSpillThresholdBytes() { return spillThresholdBytes; }
+        public void setSpillThresholdBytes(int spillThresholdBytes) { this.spillThresholdBytes = spillThresholdBytes; }
+
+        public long getSpillRetentionSeconds() { return spillRetentionSeconds; }
+        public void setSpillRetentionSeconds(long spillRetentionSeconds) { this.spillRetentionSeconds = spillRetentionSeconds; }
+
+        public int getDedupeCapacity() { return dedupeCapacity; }
+        public void setDedupeCapacity(int dedupeCapacity) { this.dedupeCapacity = dedupeCapacity; }
+
+        public int getMaxSendAttempts() { return maxSendAttempts; }
+        public void setMaxSendAttempts(int maxSendAttempts) { this.maxSendAttempts = maxSendAttempts; }
+    }
+
+    /**
+     * Non-blocking Netty server that serves /events on its own port, for idle
+     * connection counts per node that the servlet SseEmitter path cannot hold.
+     */
+    public static class Gateway {
+        private boolean enabled = false;
+        private String host = "0.0.0.0";
+        private int port = 8081;
+        private long heartbeatSeconds = 25;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getHost() { return host; }
+        public void setHost(String host) { this.host = host; }
+
+        public int getPort() { return port; }
+        public void setPort(int port) { this.port = port; }
+
+        public long getHeartbeatSeconds() { return heartbeatSeconds; }
+        public void setHeartbeatSeconds(long heartbeatSeconds) { this.heartbeatSeconds = heartbeatSeconds; }
+    }
+
+    public static class WebSocket {
+        // events queued for a session within this window go out as one frame
+        private long batchWindowMs = 50;
+        // recent events kept for resume; pruned once every connected session has acked them
+        private int replayCapacity = 10_000;
+        // Origin patterns allowed to open /ws/events (e.g. https://app.example.com); empty = same origin only
+        private List<String> allowedOrigins = new ArrayList<>();
+
+        public long getBatchWindowMs() { return batchWindowMs; }
+        public void setBatchWindowMs(long batchWindowMs) { this.batchWindowMs = batchWindowMs; }
+
+        public int getReplayCapacity() { return replayCapacity; }
+        public void setReplayCapacity(int replayCapacity) { this.replayCapacity = replayCapacity; }
+
+        public List<String> getAllowedOrigins() { return allowedOrigins; }
+        public void setAllowedOrigins(List<String> allowedOrigins) { this.allowedOrigins = allowedOrigins; }
+    }
+}
@@ -0,0 +1,9 @@
+package com.promptline.backend.sse;
+
+/**
+ * Cluster-wide transport behind {@link SseHub#broadcast}. Implementations must deliver
+ * each event to every node's {@link SseHub#deliverLocal} at most once per event id.
+ */
+public interface SseEventBus {
+    void publish(String id, String eventName, String jsonPayload);
+}
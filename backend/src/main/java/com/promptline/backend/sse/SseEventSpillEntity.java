@@ -0,0 +1,38 @@
+package com.promptline.backend.sse;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Holds event payloads too large for a NOTIFY message. The notification only carries the id;
+ * listeners load the payload from here. Rows are pruned after a short retention.
+ */
+@Entity
+@Table(
+    name = "sse_event_spill",
+    indexes = {
+        @Index(name = "idx_sse_event_spill_created", columnList = "created_at")
+    }
+)
+public class SseEventSpillEntity {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(name = "event_name", nullable = false, length = 64)
+    private String eventName;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    protected SseEventSpillEntity() {}
+
+    public String getId() { return id; }
+    public String getEventName() { return eventName; }
+    public String getPayload() { return payload; }
+    public Instant getCreatedAt() { return createdAt; }
+}
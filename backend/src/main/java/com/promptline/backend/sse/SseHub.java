@@ -5,21 +5,61 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Component
 public class SseHub {
 
+    /**
+     * In-process observer of every event delivered on this node
+     * (e.g. cache invalidation on CONFIG_UPDATED coming from another replica).
+     */
+    public interface Listener {
+        void onEvent(String id, String eventName, String jsonPayload);
+    }
+
+    /**
+     * In-process observer of chat-scoped events (deliverToChat), e.g. the WebSocket handler
+     * passing them to the connections subscribed to that chat.
+     */
+    public interface ChatListener {
+        void onChatEvent(UUID chatId, String id, String eventName, String jsonPayload);
+    }
+
     private final Set<SseEmitter> emitters = ConcurrentHashMap.newKeySet();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // emitters connected with ?chatId=, per chat
+    private final Map<UUID, Set<SseEmitter>> chatEmitters = new ConcurrentHashMap<>();
+    private final List<ChatListener> chatListeners = new CopyOnWriteArrayList<>();
+
+    // When set, broadcasts fan out cluster-wide through the bus instead of only locally
+    private volatile SseEventBus bus;
 
     public SseEmitter connect() {
+        return connect(null);
+    }
+
+    /** chatId: also receive that chat's scoped events (MESSAGE_DELTA); null for broadcasts only. */
+    public SseEmitter connect(UUID chatId) {
         SseEmitter emitter = new SseEmitter(0L); // no timeout
         emitters.add(emitter);
+        if (chatId != null) {
+            // add inside compute: a concurrent remove() may be dropping the chat's emptied set
+            chatEmitters.compute(chatId, (k, set) -> {
+                Set<SseEmitter> s = set != null ? set : ConcurrentHashMap.newKeySet();
+                s.add(emitter);
+                return s;
+            });
+        }
 
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
-        emitter.onError((e) -> emitters.remove(emitter));
+        emitter.onCompletion(() -> remove(emitter, chatId));
+        emitter.onTimeout(() -> remove(emitter, chatId));
+        emitter.onError((e) -> remove(emitter, chatId));
 
         // Optional: send a hello event
         try {
@@ -31,13 +71,83 @@ public class SseHub {
         return emitter;
     }
 
+    public void attachBus(SseEventBus bus) {
+        this.bus = bus;
+    }
+
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void subscribeChat(ChatListener listener) {
+        chatListeners.add(listener);
+    }
+
     public void broadcast(String eventName, String jsonPayload) {
+        broadcast(UUID.randomUUID().toString(), eventName, jsonPayload);
+    }
+
+    public void broadcast(String id, String eventName, String jsonPayload) {
+        SseEventBus b = bus;
+        if (b != null) {
+            b.publish(id, eventName, jsonPayload);
+        } else {
+            deliverLocal(id, eventName, jsonPayload);
+        }
+    }
+
+    /**
+     * Fans an event out to the listeners and emitters connected to this node only.
+     */
+    public void deliverLocal(String id, String eventName, String jsonPayload) {
+        for (Listener l : listeners) {
+            try {
+                l.onEvent(id, eventName, jsonPayload);
+            } catch (Exception e) {
+                System.err.println("SSE listener failed for " + eventName + ": " + e.getMessage());
+            }
+        }
+
         for (SseEmitter emitter : emitters) {
             try {
-                emitter.send(SseEmitter.event().name(eventName).data(jsonPayload));
+                emitter.send(SseEmitter.event().id(id).name(eventName).data(jsonPayload));
             } catch (IOException e) {
                 emitters.remove(emitter);
             }
         }
     }
+
+    /**
+     * Sends an event only to this node's connections subscribed to `chatId`. Not sent through
+     * the bus and not kept for replay: meant for high-frequency, transient events (token deltas)
+     * whose result is delivered separately (the persisted message).
+     */
+    public void deliverToChat(UUID chatId, String eventName, String jsonPayload) {
+        String id = UUID.randomUUID().toString();
+        for (ChatListener l : chatListeners) {
+            try {
+                l.onChatEvent(chatId, id, eventName, jsonPayload);
+            } catch (Exception e) {
+                System.err.println("SSE chat listener failed for " + eventName + ": " + e.getMessage());
+            }
+        }
+
+        for (SseEmitter emitter : chatEmitters.getOrDefault(chatId, Set.of())) {
+            try {
+                emitter.send(SseEmitter.event().id(id).name(eventName).data(jsonPayload));
+            } catch (IOException e) {
+                remove(emitter, chatId);
+            }
+        }
+    }
+
+    private void remove(SseEmitter emitter, UUID chatId) {
+        emitters.remove(emitter);
+        if (chatId != null) {
+            chatEmitters.computeIfPresent(chatId, (k, set) -> {
+                set.remove(emitter);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
 }
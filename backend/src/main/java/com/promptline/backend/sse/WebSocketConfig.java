@@ -0,0 +1,42 @@
+package com.promptline.backend.sse;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final EventsWebSocketHandler eventsHandler;
+    private final PromptlineSseProperties props;
+
+    public WebSocketConfig(EventsWebSocketHandler eventsHandler, PromptlineSseProperties props) {
+        this.eventsHandler = eventsHandler;
+        this.props = props;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Tomcat offers permessage-deflate; it is used whenever the client requests it.
+        // Browsers send cookies cross-site on a WebSocket handshake: only configured origins
+        // (plus same-origin, always allowed) may connect.
+        registry.addHandler(eventsHandler, "/ws/events")
+                .setAllowedOriginPatterns(props.getWebsocket().getAllowedOrigins().toArray(String[]::new));
+    }
+
+    /**
+     * @EnableWebSocket registers its own (SockJS) TaskScheduler, which would otherwise be
+     * the one @Scheduled picks up. The bean named "taskScheduler" wins that lookup.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("scheduled-");
+        return scheduler;
+    }
+}
@@ -0,0 +1,52 @@
+package com.promptline.backend;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * Integration tests against the docker-compose Postgres ("docker compose up db"). Opt-in:
+ * they run only when PROMPTLINE_IT_DB_URL is set, e.g.
+ *
+ *   PROMPTLINE_IT_DB_URL=jdbc:postgresql://localhost:5432/promptline mvn test
+ *
+ * Tables live in their own schema (promptline_it), so a dev database is left alone.
+ */
+public final class LocalPostgres {
+
+    public static final String URL_ENV = "PROMPTLINE_IT_DB_URL";
+    private static final String SCHEMA = "promptline_it";
+
+    private LocalPostgres() {}
+
+    public static String url() {
+        return System.getenv(URL_ENV);
+    }
+
+    public static String user() {
+        return envOr("PROMPTLINE_IT_DB_USER", "promptline");
+    }
+
+    public static String password() {
+        return envOr("PROMPTLINE_IT_DB_PASSWORD", "promptline");
+    }
+
+    /** A DataSource on the test schema (created if missing). */
+    public static DriverManagerDataSource dataSource() throws Exception {
+        try (Connection c = DriverManager.getConnection(url(), user(), password());
+             Statement st = c.createStatement()) {
+            st.execute("create schema if not exists " + SCHEMA);
+        }
+        String url = url() + (url().contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA;
+        DriverManagerDataSource ds = new DriverManagerDataSource(url, user(), password());
+        ds.setDriverClassName("org.postgresql.Driver");
+        return ds;
+    }
+
+    private static String envOr(String name, String fallback) {
+        String v = System.getenv(name);
+        return v == null || v.isBlank() ? fallback : v;
+    }
+}
@@ -0,0 +1,86 @@
+package com.promptline.backend.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeltaBatcherTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final List<String> events = new ArrayList<>();
+
+    private DeltaBatcher batcher(long flushMs, int flushChars) {
+        return new DeltaBatcher((index, text) -> events.add(index + ":" + text), now::get, flushMs, flushChars);
+    }
+
+    @Test
+    void firstDeltaGoesOutAtOnceAndTheRestIsMergedPerWindow() {
+        DeltaBatcher b = batcher(50, 1_000);
+
+        b.accept("Hel");
+        b.accept("lo");
+        b.accept(", ");
+        now.addAndGet(50);
+        b.accept("world");
+        b.accept("!");
+        b.flush();
+
+        assertEquals(List.of("0:Hel", "1:lo, world", "2:!"), events);
+    }
+
+    @Test
+    void flushesOnceEnoughTextIsPending() {
+        DeltaBatcher b = batcher(60_000, 4);
+
+        b.accept("a");
+        b.accept("bc");
+        b.accept("de");
+        b.accept("f");
+        b.flush();
+
+        assertEquals(List.of("0:a", "1:bcde", "2:f"), events);
+    }
+
+    @Test
+    void flushWithNothingPendingSendsNothing() {
+        DeltaBatcher b = batcher(50, 1_000);
+
+        b.flush();
+        b.accept("");
+        b.accept(null);
+        b.flush();
+
+        assertEquals(List.of(), events);
+    }
+
+    @Test
+    void gatedDeltasAreHeldUntilOpenedThenForwardedInOrder() {
+        DeltaBatcher b = batcher(0, 1_000);
+        GatedDeltas gate = new GatedDeltas(b);
+
+        gate.accept("one ");
+        gate.accept("two ");
+        assertEquals(List.of(), events);
+
+        gate.open();
+        gate.accept("three");
+        b.flush();
+
+        assertEquals(List.of("0:one ", "1:two ", "2:three"), events);
+    }
+
+    @Test
+    void closedGateDropsEverything() {
+        DeltaBatcher b = batcher(0, 1_000);
+        GatedDeltas gate = new GatedDeltas(b);
+
+        gate.accept("speculative");
+        b.flush();
+
+        assertEquals(List.of(), events);
+    }
+}
@@ -0,0 +1,120 @@
+package com.promptline.backend.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageSubmissionsTest {
+
+    private final UUID chatId = UUID.randomUUID();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PromptlineChatProperties props = new PromptlineChatProperties();
+    private final AtomicInteger starts = new AtomicInteger();
+
+    private Supplier<CompletableFuture<PlanProposedResponse>> start(CompletableFuture<PlanProposedResponse> turn) {
+        return () -> {
+            starts.incrementAndGet();
+            return turn;
+        };
+    }
+
+    private double count(String result) {
+        return registry.get("chat.submissions").tag("result", result).counter().count();
+    }
+
+    private static PlanProposedResponse response() {
+        return new PlanProposedResponse(null, null);
+    }
+
+    @Test
+    void duplicateWhileRunningJoinsTheRunningTurn() {
+        MessageSubmissions subs = new MessageSubmissions(props, registry);
+        CompletableFuture<PlanProposedResponse> turn = new CompletableFuture<>();
+
+        CompletableFuture<PlanProposedResponse> first = subs.submit(chatId, null, "set theme to dark", start(turn));
+        CompletableFuture<PlanProposedResponse> second = subs.submit(chatId, null, " set theme to dark ", start(turn));
+
+        assertEquals(1, starts.get());
+        assertSame(first, second);
+        assertFalse(second.isDone());
+
+        PlanProposedResponse res = response();
+        turn.complete(res);
+        assertSame(res, second.join());
+        assertEquals(1.0, count("coalesced"));
+    }
+
+    @Test
+    void duplicateAfterCompletionReplaysTheStoredResponse() {
+        MessageSubmissions subs = new MessageSubmissions(props, registry);
+        PlanProposedResponse res = response();
+
+        subs.submit(chatId, "key-1", "hello", start(CompletableFuture.completedFuture(res)));
+        CompletableFuture<PlanProposedResponse> again =
+                subs.submit(chatId, "key-1", "hello", start(CompletableFuture.completedFuture(response())));
+
+        assertEquals(1, starts.get());
+        assertSame(res, again.join());
+        assertEquals(1.0, count("replayed"));
+    }
+
+    @Test
+    void reusingAKeyForDifferentContentIsRejected() {
+        MessageSubmissions subs = new MessageSubmissions(props, registry);
+        subs.submit(chatId, "key-1", "hello", start(new CompletableFuture<>()));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> subs.submit(chatId, "key-1", "something else", start(new CompletableFuture<>())));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        assertEquals(1, starts.get());
+        assertEquals(1.0, count("conflict"));
+    }
+
+    @Test
+    void failedTurnIsForgottenSoARetryRunsAgain() {
+        MessageSubmissions subs = new MessageSubmissions(props, registry);
+        CompletableFuture<PlanProposedResponse> failed = new CompletableFuture<>();
+        CompletableFuture<PlanProposedResponse> first = subs.submit(chatId, "key-1", "hello", start(failed));
+        failed.completeExceptionally(new IllegalStateException("LLM down"));
+        assertTrue(first.isCompletedExceptionally());
+
+        PlanProposedResponse res = response();
+        CompletableFuture<PlanProposedResponse> retry =
+                subs.submit(chatId, "key-1", "hello", start(CompletableFuture.completedFuture(res)));
+
+        assertEquals(2, starts.get());
+        assertSame(res, retry.join());
+    }
+
+    @Test
+    void runningTurnIsNeverEvicted() {
+        props.getIdempotency().setMaxEntries(1);
+        MessageSubmissions subs = new MessageSubmissions(props, registry);
+        CompletableFuture<PlanProposedResponse> running = new CompletableFuture<>();
+
+        CompletableFuture<PlanProposedResponse> a = subs.submit(chatId, "a", "first", start(running));
+        subs.submit(chatId, "b", "second", start(CompletableFuture.completedFuture(response())));
+        subs.submit(chatId, "c", "third", start(new CompletableFuture<>()));
+
+        // over the limit: the completed entry went, both running ones stayed
+        assertEquals(2.0, registry.get("chat.submissions.stored").gauge().value());
+        assertSame(a, subs.submit(chatId, "a", "first", start(new CompletableFuture<>())));
+        assertEquals(3, starts.get());
+
+        subs.submit(chatId, "b", "second", start(new CompletableFuture<>()));
+        assertEquals(4, starts.get());
+    }
+}
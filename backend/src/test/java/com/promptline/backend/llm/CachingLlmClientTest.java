@@ -0,0 +1,143 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingLlmClientTest {
+
+    /** Router that blocks until released, counting upstream calls. */
+    private static final class SlowRouter implements LlmClient {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean failing;
+
+        @Override
+        public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) throw new IllegalStateException("router down");
+            return true;
+        }
+
+        @Override
+        public String generateTitleFromFirstUserMessage(String firstMessage) {
+            return "title";
+        }
+
+        @Override
+        public String generateAssistantReply(String chatTitle, String userMessage) {
+            return "reply";
+        }
+
+        @Override
+        public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+            return "{}";
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SlowRouter upstream = new SlowRouter();
+    // blocked calls each need their own thread; the common pool may be too small
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final CachingLlmClient cache = new CachingLlmClient(upstream, "model", 100, 60, registry);
+
+    private CompletableFuture<Boolean> route(String message) {
+        return CompletableFuture.supplyAsync(() -> cache.shouldProposePlan("Chat", List.of(), message), threads);
+    }
+
+    private double count(String result) {
+        return registry.get("llm.cache.requests").tag("op", "shouldProposePlan").tag("result", result)
+                .counter().count();
+    }
+
+    private void awaitCoalesced(int waiters) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count("coalesced") < waiters && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(waiters, count("coalesced"));
+    }
+
+    @Test
+    void concurrentMissesShareOneUpstreamCall() throws Exception {
+        CompletableFuture<Boolean> leader = route("set theme to dark");
+        assertTrue(upstream.entered.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) waiters.add(route("set  theme to dark "));
+        awaitCoalesced(3);
+        upstream.release.countDown();
+
+        assertTrue(leader.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<Boolean> w : waiters) assertTrue(w.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstream.calls.get());
+
+        // and the result is cached for the next caller
+        assertTrue(cache.shouldProposePlan("Chat", List.of(), "set theme to dark"));
+        assertEquals(1, upstream.calls.get());
+        assertEquals(1.0, count("hit"));
+    }
+
+    @Test
+    void failureReachesTheWaitersButIsNotCached() throws Exception {
+        upstream.failing = true;
+        CompletableFuture<Boolean> leader = route("hello");
+        assertTrue(upstream.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> waiter = route("hello");
+        awaitCoalesced(1);
+        upstream.release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        assertInstanceOf(IllegalStateException.class, waiterError.getCause());
+
+        upstream.failing = false;
+        assertTrue(cache.shouldProposePlan("Chat", List.of(), "hello"));
+        assertEquals(2, upstream.calls.get());
+    }
+
+    @Test
+    void interruptedWaiterStopsWaitingWithoutCancellingTheLeader() throws Exception {
+        CompletableFuture<Boolean> leader = route("hello");
+        assertTrue(upstream.entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Throwable> waiterError = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                cache.shouldProposePlan("Chat", List.of(), "hello");
+                waiterError.complete(null);
+            } catch (Throwable t) {
+                waiterError.complete(t);
+            }
+        });
+        waiter.start();
+        awaitCoalesced(1);
+        waiter.interrupt();
+
+        assertInstanceOf(CancellationException.class, waiterError.get(5, TimeUnit.SECONDS));
+        upstream.release.countDown();
+        assertTrue(leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstream.calls.get());
+    }
+}
@@ -0,0 +1,199 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutingLlmClientTest {
+
+    /** Answers with its own name, or fails while `failing` is set. */
+    private static final class FakeEndpoint implements LlmClient {
+        final String name;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+        volatile CountDownLatch entered;
+        volatile CountDownLatch release;
+
+        FakeEndpoint(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String generateAssistantReply(String chatTitle, String userMessage) {
+            calls.incrementAndGet();
+            if (entered != null) entered.countDown();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing) throw new IllegalStateException(name + " down");
+            return name;
+        }
+
+        @Override
+        public String streamAssistantReply(String chatTitle, String userMessage, Consumer<String> onDelta) {
+            calls.incrementAndGet();
+            onDelta.accept("partial");
+            throw new IllegalStateException(name + " dropped the stream");
+        }
+
+        @Override
+        public String generateTitleFromFirstUserMessage(String firstMessage) {
+            return name;
+        }
+
+        @Override
+        public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+            return name;
+        }
+
+        @Override
+        public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+            return false;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FakeEndpoint a = new FakeEndpoint("a");
+    private final FakeEndpoint b = new FakeEndpoint("b");
+
+    // alpha 0 keeps both costs equal, so power-of-two-choices picks either endpoint at random
+    private static PromptlineLlmProperties.Routing routing(int ejectAfterFailures, long ejectBaseMs) {
+        PromptlineLlmProperties.Routing cfg = new PromptlineLlmProperties.Routing();
+        cfg.setEwmaAlpha(0);
+        cfg.setEjectAfterFailures(ejectAfterFailures);
+        cfg.setEjectErrorRate(1.0);
+        cfg.setEjectBaseMs(ejectBaseMs);
+        cfg.setEjectMaxMs(60_000);
+        return cfg;
+    }
+
+    private RoutingLlmClient client(PromptlineLlmProperties.Routing cfg, FakeEndpoint... fakes) {
+        List<RoutingLlmClient.Named> named = Arrays.stream(fakes)
+                .map(f -> new RoutingLlmClient.Named(f.name, f))
+                .toList();
+        return new RoutingLlmClient(named, cfg, registry);
+    }
+
+    private boolean ejected(String endpoint) {
+        return registry.get("llm.endpoint.ejected").tag("endpoint", endpoint).gauge().value() == 1;
+    }
+
+    private String reply(RoutingLlmClient client) {
+        return client.generateAssistantReply("t", "hi");
+    }
+
+    // calls until `a` has been picked `times` times (random picks; bounded)
+    private void callUntilPicked(RoutingLlmClient client, int times) {
+        for (int i = 0; i < 500 && a.calls.get() < times; i++) reply(client);
+        assertEquals(times, a.calls.get());
+    }
+
+    @Test
+    void failedCallIsRetriedOnTheOtherEndpoint() {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(1_000, 60_000), a, b);
+
+        for (int i = 0; i < 20; i++) assertEquals("b", reply(client));
+        assertTrue(a.calls.get() > 0);
+    }
+
+    @Test
+    void endpointIsEjectedAfterConsecutiveFailures() {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(2, 60_000), a, b);
+
+        callUntilPicked(client, 2);
+        assertTrue(ejected("a"));
+
+        for (int i = 0; i < 50; i++) assertEquals("b", reply(client));
+        assertEquals(2, a.calls.get());
+    }
+
+    @Test
+    void successfulProbeRestoresTheEndpoint() throws Exception {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(1, 20), a, b);
+        callUntilPicked(client, 1);
+        assertTrue(ejected("a"));
+
+        a.failing = false;
+        Thread.sleep(40);
+        assertEquals("a", reply(client)); // the first call after the ejection is the probe
+        assertFalse(ejected("a"));
+    }
+
+    @Test
+    void failedProbeEjectsAgain() throws Exception {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(1, 200), a, b);
+        callUntilPicked(client, 1);
+
+        Thread.sleep(250);
+        assertEquals("b", reply(client)); // probe to a fails, retried on b
+        assertEquals(2, a.calls.get());
+        assertTrue(ejected("a"));
+
+        // ejected again (for twice as long): no traffic until the next probe
+        for (int i = 0; i < 20; i++) assertEquals("b", reply(client));
+        assertEquals(2, a.calls.get());
+    }
+
+    @Test
+    void onlyOneProbeRunsAtATime() throws Exception {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(1, 20), a, b);
+        callUntilPicked(client, 1);
+
+        a.failing = false;
+        a.entered = new CountDownLatch(1);
+        a.release = new CountDownLatch(1);
+        Thread.sleep(40);
+        CompletableFuture<String> probe = CompletableFuture.supplyAsync(() -> reply(client));
+        assertTrue(a.entered.await(5, TimeUnit.SECONDS));
+
+        // while the probe is in flight, everything else goes to b
+        for (int i = 0; i < 20; i++) assertEquals("b", reply(client));
+        assertEquals(2, a.calls.get());
+
+        a.release.countDown();
+        assertEquals("a", probe.get(5, TimeUnit.SECONDS));
+        assertFalse(ejected("a"));
+    }
+
+    @Test
+    void allEjectedFailsOpenOnTheEndpointDueBackFirst() {
+        a.failing = true;
+        RoutingLlmClient client = client(routing(1, 60_000), a);
+        assertThrows(IllegalStateException.class, () -> reply(client));
+        assertTrue(ejected("a"));
+
+        a.failing = false;
+        assertEquals("a", reply(client));
+    }
+
+    @Test
+    void streamIsNotRetriedOnceADeltaWasSent() {
+        RoutingLlmClient client = client(routing(1_000, 60_000), a, b);
+
+        StringBuilder seen = new StringBuilder();
+        assertThrows(IllegalStateException.class, () -> client.streamAssistantReply("t", "hi", seen::append));
+        assertEquals(1, a.calls.get() + b.calls.get());
+        assertEquals("partial", seen.toString());
+    }
+}
@@ -0,0 +1,234 @@
+package com.promptline.backend.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduledLlmClientTest {
+
+    /** Strong-tier calls record their start and hold their slot until the gate opens. */
+    private static final class GatedClient implements LlmClient {
+        final List<String> started = new CopyOnWriteArrayList<>();
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        private String hold(String name) {
+            started.add(name);
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return name;
+        }
+
+        @Override
+        public String generateAssistantReply(String chatTitle, String userMessage) {
+            return hold(userMessage);
+        }
+
+        @Override
+        public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+            return hold(userMessage);
+        }
+
+        @Override
+        public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+            return true;
+        }
+
+        @Override
+        public String generateTitleFromFirstUserMessage(String firstMessage) {
+            return "title";
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GatedClient upstream = new GatedClient();
+    // blocked calls each need their own thread; the common pool may be too small
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+    private ScheduledLlmClient scheduler(int strongConcurrency, long strongQueueTimeoutMs) {
+        return scheduler(upstream, strongConcurrency, strongQueueTimeoutMs);
+    }
+
+    private ScheduledLlmClient scheduler(LlmClient delegate, int strongConcurrency, long strongQueueTimeoutMs) {
+        PromptlineLlmProperties.Scheduler props = new PromptlineLlmProperties.Scheduler();
+        props.setStrongConcurrency(strongConcurrency);
+        props.setStrongQueueTimeoutMs(strongQueueTimeoutMs);
+        return new ScheduledLlmClient(delegate, props, registry);
+    }
+
+    private CompletableFuture<String> async(Supplier<String> call) {
+        return CompletableFuture.supplyAsync(call, threads);
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tag("tier", "strong").gauge().value();
+    }
+
+    private void awaitQueued(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (gauge("llm.scheduler.queue.depth") != depth && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals((double) depth, gauge("llm.scheduler.queue.depth"));
+    }
+
+    private void awaitStarted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (upstream.started.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(count, upstream.started.size());
+    }
+
+    @Test
+    void callsBeyondTheLaneLimitWaitAndStartByPriority() throws Exception {
+        ScheduledLlmClient client = scheduler(1, 15_000);
+        CompletableFuture<String> first = async(() -> client.generateAssistantReply("Chat", "r1"));
+        awaitStarted(1);
+
+        CompletableFuture<String> plan = async(() -> client.generatePlanJson("Chat", List.of(), "plan"));
+        awaitQueued(1);
+        CompletableFuture<String> reply = async(() -> client.generateAssistantReply("Chat", "r2"));
+        awaitQueued(2);
+        assertEquals(1.0, gauge("llm.scheduler.active"));
+        assertEquals(List.of("r1"), upstream.started);
+
+        upstream.gate.countDown();
+        assertEquals("r1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("plan", plan.get(5, TimeUnit.SECONDS));
+        assertEquals("r2", reply.get(5, TimeUnit.SECONDS));
+        // the reply queued after the plan but outranks it
+        assertEquals(List.of("r1", "r2", "plan"), upstream.started);
+        assertEquals(0.0, gauge("llm.scheduler.active"));
+    }
+
+    @Test
+    void fastLaneDoesNotQueueBehindStrongCalls() throws Exception {
+        ScheduledLlmClient client = scheduler(1, 15_000);
+        CompletableFuture<String> busy = async(() -> client.generateAssistantReply("Chat", "r1"));
+        awaitStarted(1);
+
+        assertTrue(client.shouldProposePlan("Chat", List.of(), "hello"));
+        assertEquals("title", client.generateTitleFromFirstUserMessage("hello"));
+
+        upstream.gate.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rejectsRightAwayWhenTheEstimatedWaitExceedsTheDeadline() throws Exception {
+        // the service-time estimate starts at 1s, so a 100 ms deadline cannot be met
+        ScheduledLlmClient client = scheduler(1, 100);
+        CompletableFuture<String> busy = async(() -> client.generateAssistantReply("Chat", "r1"));
+        awaitStarted(1);
+
+        assertThrows(LlmRejectedException.class, () -> client.generateAssistantReply("Chat", "r2"));
+        assertEquals(1.0, registry.get("llm.scheduler.rejected").tag("tier", "strong").tag("reason", "estimate")
+                .counter().count());
+
+        upstream.gate.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rejectsAQueuedCallOnceItsDeadlinePasses() throws Exception {
+        ScheduledLlmClient client = scheduler(1, 1_500);
+        CompletableFuture<String> busy = async(() -> client.generateAssistantReply("Chat", "r1"));
+        awaitStarted(1);
+
+        CompletableFuture<String> queued = async(() -> client.generateAssistantReply("Chat", "r2"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LlmRejectedException.class, e.getCause());
+        assertEquals(1.0, registry.get("llm.scheduler.rejected").tag("tier", "strong").tag("reason", "deadline")
+                .counter().count());
+        assertEquals(0.0, gauge("llm.scheduler.queue.depth"));
+
+        upstream.gate.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+        assertFalse(upstream.started.contains("r2"));
+    }
+
+    @Test
+    void interruptedWaiterLeavesTheQueue() throws Exception {
+        ScheduledLlmClient client = scheduler(1, 15_000);
+        CompletableFuture<String> busy = async(() -> client.generateAssistantReply("Chat", "r1"));
+        awaitStarted(1);
+
+        CompletableFuture<Throwable> waiterError = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                client.generateAssistantReply("Chat", "r2");
+                waiterError.complete(null);
+            } catch (Throwable t) {
+                waiterError.complete(t);
+            }
+        });
+        waiter.start();
+        awaitQueued(1);
+        waiter.interrupt();
+
+        assertInstanceOf(IllegalStateException.class, waiterError.get(5, TimeUnit.SECONDS));
+        assertEquals(0.0, gauge("llm.scheduler.queue.depth"));
+
+        upstream.gate.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+        assertEquals(0.0, gauge("llm.scheduler.active"));
+        assertEquals(List.of("r1"), upstream.started);
+    }
+
+    @Test
+    void forkedRequestsTakeASlotFromTheCallersLane() {
+        List<Boolean> acquired = new CopyOnWriteArrayList<>();
+        AtomicReference<ScheduledLlmClient.LaneSlots> lane = new AtomicReference<>();
+        LlmClient forking = new LlmClient() {
+            @Override
+            public String generateAssistantReply(String chatTitle, String userMessage) {
+                // like a hedge: one more request next to the running one
+                lane.set(ScheduledLlmClient.currentLane());
+                acquired.add(lane.get().tryAcquire());
+                acquired.add(lane.get().tryAcquire());
+                return "reply";
+            }
+
+            @Override
+            public String generatePlanJson(String chatTitle, List<String> chatHistory, String userMessage) {
+                return "{}";
+            }
+
+            @Override
+            public boolean shouldProposePlan(String chatTitle, List<String> chatHistory, String userMessage) {
+                return false;
+            }
+
+            @Override
+            public String generateTitleFromFirstUserMessage(String firstMessage) {
+                return "title";
+            }
+        };
+        ScheduledLlmClient client = scheduler(forking, 2, 15_000);
+
+        assertEquals("reply", client.generateAssistantReply("Chat", "hi"));
+        assertEquals(List.of(true, false), acquired);
+        assertNull(ScheduledLlmClient.currentLane());
+
+        // the forked request outlives the call and still holds its slot
+        assertEquals(1.0, gauge("llm.scheduler.active"));
+        lane.get().release();
+        assertEquals(0.0, gauge("llm.scheduler.active"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.promptline.backend.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamingJsonObjectTest {
+
+    private static final String PLAN = """
+            {"planVersion":"v1","intent":"runtime_config_change","env":"live","summary":"Set theme {dark}",
+             "requiresConfirmation":true,"changes":[{"target":"ui","op":"set","path":"theme","value":"dark"}]}""";
+
+    private static StreamingJsonObject.State feedChars(StreamingJsonObject s, String text) {
+        StreamingJsonObject.State state = s.state();
+        for (int i = 0; i < text.length(); i++) state = s.feed(text.substring(i, i + 1));
+        return state;
+    }
+
+    @Test
+    void skipsProseAndStopsAtTheClosingBrace() {
+        StreamingJsonObject s = StreamingJsonObject.any();
+
+        assertEquals(StreamingJsonObject.State.MORE, s.feed("Sure! ```json\n{\"a\": \"}{\", "));
+        assertEquals(StreamingJsonObject.State.COMPLETE, s.feed("\"b\": [1, {\"c\": 2}]}\n``` and more {"));
+        assertEquals("{\"a\": \"}{\", \"b\": [1, {\"c\": 2}]}", s.json());
+    }
+
+    @Test
+    void completesWhenFedOneCharacterAtATime() {
+        StreamingJsonObject s = StreamingJsonObject.plan();
+
+        assertEquals(StreamingJsonObject.State.COMPLETE, feedChars(s, PLAN));
+        assertEquals(PLAN, s.json());
+    }
+
+    @Test
+    void escapedQuotesDoNotEndAString() {
+        assertEquals("{\"a\":\"say \\\"}\\\" now\"}", StreamingJsonObject.extractFirst("x {\"a\":\"say \\\"}\\\" now\"} y"));
+    }
+
+    @Test
+    void malformedJsonIsInvalidBeforeItEnds() {
+        StreamingJsonObject s = StreamingJsonObject.any();
+
+        assertEquals(StreamingJsonObject.State.INVALID, s.feed("{\"a\": 1 \"b\""));
+        assertNull(s.json());
+    }
+
+    @Test
+    void planFieldsAreCheckedAsTheyArrive() {
+        StreamingJsonObject wrongVersion = StreamingJsonObject.plan();
+        assertEquals(StreamingJsonObject.State.INVALID, wrongVersion.feed("{\"planVersion\":\"v2\","));
+        assertEquals("planVersion must be v1", wrongVersion.error());
+
+        StreamingJsonObject unconfirmed = StreamingJsonObject.plan();
+        assertEquals(StreamingJsonObject.State.INVALID, unconfirmed.feed("{\"requiresConfirmation\":false,"));
+
+        StreamingJsonObject badOp = StreamingJsonObject.plan();
+        assertEquals(StreamingJsonObject.State.INVALID,
+                badOp.feed("{\"changes\":[{\"target\":\"ui\",\"op\":\"delete\","));
+        assertEquals("changes[0].op must be set", badOp.error());
+
+        StreamingJsonObject badTarget = StreamingJsonObject.plan();
+        assertEquals(StreamingJsonObject.State.INVALID, badTarget.feed("{\"changes\":[{\"target\":\"db\","));
+
+        StreamingJsonObject notAnObject = StreamingJsonObject.plan();
+        assertEquals(StreamingJsonObject.State.INVALID, notAnObject.feed("{\"changes\":[\"set theme\""));
+    }
+
+    @Test
+    void nestedValuesAreNotCheckedAsPlanFields() {
+        StreamingJsonObject s = StreamingJsonObject.plan();
+
+        String plan = PLAN.replace("\"value\":\"dark\"", "\"value\":{\"op\":\"x\",\"planVersion\":\"v9\"}");
+        assertEquals(StreamingJsonObject.State.COMPLETE, feedChars(s, plan));
+    }
+
+    @Test
+    void extractFirstReturnsNullWithoutACompleteObject() {
+        assertNull(StreamingJsonObject.extractFirst(null));
+        assertNull(StreamingJsonObject.extractFirst("no json here"));
+        assertNull(StreamingJsonObject.extractFirst("{\"a\": 1"));
+    }
+}
@@ -0,0 +1,49 @@
+package com.promptline.backend.llm.usage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmCallContextTest {
+
+    @Test
+    void routingMarkMadeOnAPropagatedThreadIsSeenByTheTurn() {
+        UUID chatId = UUID.randomUUID();
+
+        boolean routed = LlmCallContext.withChat(chatId, () -> {
+            Runnable router = LlmCallContext.propagate(() -> {
+                assertEquals(chatId, LlmCallContext.chatId());
+                LlmCallContext.markRoutedWithoutLlm();
+            });
+            CompletableFuture.runAsync(router).join();
+            return LlmCallContext.routedWithoutLlm();
+        });
+
+        assertTrue(routed);
+        assertNull(LlmCallContext.chatId());
+        assertFalse(LlmCallContext.routedWithoutLlm());
+    }
+
+    @Test
+    void everyTurnStartsUnmarked() {
+        UUID chatId = UUID.randomUUID();
+        LlmCallContext.withChat(chatId, () -> {
+            LlmCallContext.markRoutedWithoutLlm();
+            return null;
+        });
+
+        assertFalse(LlmCallContext.withChat(chatId, LlmCallContext::routedWithoutLlm));
+    }
+
+    @Test
+    void markOutsideATurnIsIgnored() {
+        LlmCallContext.markRoutedWithoutLlm();
+        assertFalse(LlmCallContext.routedWithoutLlm());
+    }
+}
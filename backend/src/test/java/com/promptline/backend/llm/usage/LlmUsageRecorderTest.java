@@ -0,0 +1,82 @@
+package com.promptline.backend.llm.usage;
+
+import com.promptline.backend.LocalPostgres;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** llm_calls retention; see {@link LocalPostgres} to run it. */
+@EnabledIfEnvironmentVariable(named = LocalPostgres.URL_ENV, matches = ".+")
+class LlmUsageRecorderTest {
+
+    private JdbcTemplate jdbc;
+    private final UUID chatId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbc = new JdbcTemplate(LocalPostgres.dataSource());
+        jdbc.execute("""
+                create table if not exists llm_calls (
+                    id bigint generated by default as identity primary key,
+                    created_at timestamptz not null,
+                    chat_id uuid,
+                    purpose varchar(40) not null,
+                    model varchar(200) not null,
+                    endpoint varchar(200),
+                    prompt_tokens int not null,
+                    completion_tokens int not null,
+                    latency_ms bigint not null,
+                    outcome varchar(20) not null
+                )""");
+    }
+
+    private LlmUsageRecorder recorder(int retentionDays) {
+        PromptlineLlmProperties props = new PromptlineLlmProperties();
+        props.getUsage().setRetentionDays(retentionDays);
+        return new LlmUsageRecorder(jdbc, new SimpleMeterRegistry(), props);
+    }
+
+    private void record(LlmUsageRecorder recorder, Duration age) {
+        recorder.record(new LlmCallRecord(Instant.now().minus(age), chatId, "reply", "test-model", null,
+                10, 5, 100, LlmCallRecord.OK));
+    }
+
+    private int rows() {
+        return jdbc.queryForObject("select count(*) from llm_calls where chat_id = ?", Integer.class, chatId);
+    }
+
+    @Test
+    void pruneDeletesOnlyRowsPastTheRetention() {
+        LlmUsageRecorder recorder = recorder(30);
+        record(recorder, Duration.ofDays(45));
+        record(recorder, Duration.ofDays(31));
+        record(recorder, Duration.ofDays(29));
+        record(recorder, Duration.ofMinutes(1));
+        recorder.flush();
+        assertEquals(4, rows());
+
+        recorder.prune();
+
+        assertEquals(2, rows());
+    }
+
+    @Test
+    void zeroRetentionKeepsEverything() {
+        LlmUsageRecorder recorder = recorder(0);
+        record(recorder, Duration.ofDays(400));
+        recorder.flush();
+
+        recorder.prune();
+
+        assertEquals(1, rows());
+    }
+}
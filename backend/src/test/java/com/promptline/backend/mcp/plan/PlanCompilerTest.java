@@ -0,0 +1,114 @@
+package com.promptline.backend.mcp.plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.llm.PromptlineLlmProperties;
+import com.promptline.backend.runtime.RuntimeConfigStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanCompilerTest {
+
+    private static final RuntimeConfigStore.RuntimeBlob UI = new RuntimeConfigStore.RuntimeBlob("""
+            {"theme":"dark","fontScale":1.0,"chat":{"enabled":true},"search":{"enabled":false}}
+            """, "config/ui.json");
+    private static final RuntimeConfigStore.RuntimeBlob POLICY = new RuntimeConfigStore.RuntimeBlob("""
+            {"allowlist":["/healthz"],"rateLimit":{"rpm":60}}
+            """, "config/policy.json");
+
+    private final ObjectMapper om = new ObjectMapper();
+    private final PromptlineLlmProperties props = new PromptlineLlmProperties();
+
+    // the live configs without S3
+    private final RuntimeConfigStore store = new RuntimeConfigStore(null, "bucket", "ui", "policy", 300) {
+        @Override
+        public RuntimeBlob getUiConfig() {
+            return UI;
+        }
+
+        @Override
+        public RuntimeBlob getPolicy() {
+            return POLICY;
+        }
+    };
+
+    private final PlanCompiler compiler = new PlanCompiler(store, om, props, new SimpleMeterRegistry());
+
+    private String changes(String request) {
+        PlanProposalV1 plan = compiler.compile(request);
+        assertNotNull(plan, request);
+        StringBuilder sb = new StringBuilder();
+        for (PlanChange c : plan.changes()) {
+            if (!sb.isEmpty()) sb.append("; ");
+            sb.append(c.target()).append(' ').append(c.path()).append('=').append(c.value());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void compilesSimpleRequests() {
+        assertEquals("ui theme=\"light\"", changes("set ui theme to light"));
+        assertEquals("policy rateLimit.rpm=120", changes("policy rateLimit.rpm = 120"));
+        assertEquals("policy rateLimit.rpm=90", changes("Please change rate limit rpm to 90."));
+        assertEquals("ui theme=\"light\"", changes("theme: light"));
+    }
+
+    @Test
+    void producesAValidPlan() {
+        PlanProposalV1 plan = compiler.compile("set theme to light");
+
+        assertNotNull(plan);
+        assertEquals("v1", plan.planVersion());
+        assertTrue(plan.requiresConfirmation());
+        assertEquals(List.of(), new PlanValidator().validate(plan));
+    }
+
+    @Test
+    void laterClausesCarryTheVerb() {
+        assertEquals("policy rateLimit.rpm=100; ui theme=\"light\"", changes("raise rpm to 100 and theme to light"));
+    }
+
+    @Test
+    void coercesToTheCurrentType() {
+        assertEquals("ui chat.enabled=false", changes("switch chat enabled to off"));
+        assertEquals("ui fontScale=1.25", changes("set fontScale to 1.25"));
+        assertEquals("policy allowlist=[\"/healthz\",\"/metrics\"]",
+                changes("set allowlist to [\"/healthz\", \"/metrics\"]"));
+
+        assertNull(compiler.compile("set rpm to 1.5"));
+        assertNull(compiler.compile("set chat enabled to maybe"));
+        assertNull(compiler.compile("set allowlist to /metrics"));
+        assertNull(compiler.compile("set theme to whatever you think looks best"));
+        assertEquals("ui theme=\"solarized dark\"", changes("set theme to \"solarized dark\""));
+        assertEquals("ui theme=\"high-contrast\"", changes("set theme to high-contrast"));
+    }
+
+    @Test
+    void fallsThroughWhenUnsure() {
+        assertNull(compiler.compile("set enabled to false"), "ambiguous path");
+        assertNull(compiler.compile("set colour to red"), "unknown path");
+        assertNull(compiler.compile("theme to light"), "no verb");
+        assertNull(compiler.compile("raise rpm to 10"), "raise to a lower value");
+        assertNull(compiler.compile("set theme to light and theme to dark"), "same path twice");
+        assertNull(compiler.compile("how do I make the app look darker?"), "conversation");
+    }
+
+    @Test
+    void disabledCompilerReturnsNull() {
+        props.getPlanCompiler().setEnabled(false);
+
+        assertNull(compiler.compile("set theme to light"));
+    }
+
+    @Test
+    void splitClausesIgnoresSeparatorsInsideValues() {
+        assertEquals(List.of("set a to 1", "b = [1, 2]", "c to \"x and y\""),
+                PlanCompiler.splitClauses("set a to 1 and b = [1, 2]; c to \"x and y\""));
+    }
+}
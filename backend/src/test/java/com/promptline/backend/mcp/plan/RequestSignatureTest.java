@@ -0,0 +1,69 @@
+package com.promptline.backend.mcp.plan;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestSignatureTest {
+
+    @Test
+    void tokenizeDropsFillerWordsAndSentencePunctuation() {
+        assertEquals(List.of("set", "theme", "dark"), RequestSignature.tokenize("Please set the theme to 'dark'."));
+        assertEquals(List.of(), RequestSignature.tokenize(null));
+    }
+
+    @Test
+    void tokenizeKeepsLiterals() {
+        assertEquals(List.of("set", "ui.theme", "#fff", "and", "rpm", "1.5"),
+                RequestSignature.tokenize("set ui.theme to #FFF and rpm to 1.5!"));
+        assertEquals(List.of("set", "offset", "-5", "dark-mode", ".5"),
+                RequestSignature.tokenize("set offset to -5, dark-mode .5"));
+    }
+
+    @Test
+    void tokenizeNormalizesWidthAndCase() {
+        assertEquals(List.of("set", "theme", "dark"), RequestSignature.tokenize("SET Theme ｄａｒｋ"));
+    }
+
+    @Test
+    void politeVariantsShareAKey() {
+        RequestSignature a = RequestSignature.of("set theme to dark");
+        RequestSignature b = RequestSignature.of("Could you please set the theme to dark? Thanks");
+
+        assertEquals(a.key(), b.key());
+        assertEquals(1.0, a.jaccard(b));
+        assertArrayEquals(a.minHash, b.minHash);
+    }
+
+    @Test
+    void wordOrderCountsThroughShingles() {
+        RequestSignature a = RequestSignature.of("set theme dark");
+        RequestSignature b = RequestSignature.of("dark theme set");
+
+        // same tokens, no common adjacent pair: 3 of 7 shingles shared
+        assertEquals(3.0 / 7, a.jaccard(b), 1e-9);
+    }
+
+    @Test
+    void minHashAgreementTracksJaccard() {
+        RequestSignature a = RequestSignature.of("set ui theme dark");
+        RequestSignature b = RequestSignature.of("set policy rate limit rpm 120");
+
+        int agree = 0;
+        for (int i = 0; i < RequestSignature.HASHES; i++) if (a.minHash[i] == b.minHash[i]) agree++;
+        assertTrue(a.jaccard(b) < 0.2);
+        assertTrue(agree < RequestSignature.HASHES / 2);
+    }
+
+    @Test
+    void numericTokensHaveADigit() {
+        assertTrue(RequestSignature.isNumeric("120"));
+        assertTrue(RequestSignature.isNumeric("v2"));
+        assertFalse(RequestSignature.isNumeric("dark"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.promptline.backend.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.LocalPostgres;
+import com.promptline.backend.sse.EventCoalescer;
+import com.promptline.backend.sse.PromptlineSseProperties;
+import com.promptline.backend.sse.SseHub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Per-chat ordering when ids commit out of order; see {@link LocalPostgres} to run it. */
+@EnabledIfEnvironmentVariable(named = LocalPostgres.URL_ENV, matches = ".+")
+class OutboxDispatcherTest {
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private EventCoalescer coalescer;
+    private OutboxDispatcher dispatcher;
+    private EventOutbox outbox;
+    private final UUID chatId = UUID.randomUUID();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DataSource ds = LocalPostgres.dataSource();
+        jdbc = new JdbcTemplate(ds);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(ds));
+        jdbc.execute("""
+                create table if not exists event_outbox (
+                    id bigint generated by default as identity primary key,
+                    chat_id uuid not null,
+                    event_name varchar(64) not null,
+                    payload text not null,
+                    coalesce_key varchar(64),
+                    terminal boolean not null,
+                    created_at timestamptz not null,
+                    dispatched_at timestamptz,
+                    claimed_until timestamptz
+                )""");
+        jdbc.update("update event_outbox set dispatched_at = now() where dispatched_at is null");
+
+        SseHub hub = new SseHub();
+        hub.subscribe((id, eventName, payload) -> {
+            if (payload.contains(chatId.toString())) published.add(eventName);
+        });
+        coalescer = new EventCoalescer(hub, new PromptlineSseProperties());
+        dispatcher = new OutboxDispatcher(jdbc, new NamedParameterJdbcTemplate(ds), tx, hub, coalescer);
+        outbox = new EventOutbox(jdbcRepository(), jdbc, dispatcher, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    // OutboxRepository without JPA: save() inserts on the caller's (JDBC) transaction
+    private OutboxRepository jdbcRepository() {
+        return (OutboxRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{OutboxRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("save")) throw new UnsupportedOperationException(method.getName());
+                    OutboxEventEntity e = (OutboxEventEntity) args[0];
+                    jdbc.update("""
+                            insert into event_outbox (chat_id, event_name, payload, coalesce_key, terminal, created_at)
+                            values (?, ?, ?, ?, ?, ?)
+                            """, e.getChatId(), e.getEventName(), e.getPayload(), e.getCoalesceKey(), e.isTerminal(),
+                            Timestamp.from(Instant.now()));
+                    return e;
+                });
+    }
+
+    private void enqueue(String eventName) {
+        outbox.enqueue(chatId, eventName, Map.of("chatId", chatId.toString()));
+    }
+
+    @Test
+    void laterEventOfAChatWaitsForAnEarlierOneStillInFlight() throws Exception {
+        CountDownLatch firstEnqueued = new CountDownLatch(1);
+        CountDownLatch commitFirst = new CountDownLatch(1);
+
+        // T1 enqueues FIRST and keeps its transaction open
+        CompletableFuture<Void> t1 = CompletableFuture.runAsync(() -> tx.executeWithoutResult(s -> {
+            enqueue("FIRST");
+            firstEnqueued.countDown();
+            try {
+                commitFirst.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(firstEnqueued.await(10, TimeUnit.SECONDS));
+
+        // T2 enqueues SECOND for the same chat; without the lock it would commit a higher id first
+        CompletableFuture<Void> t2 = CompletableFuture.runAsync(() -> tx.executeWithoutResult(s -> enqueue("SECOND")));
+        Thread.sleep(300);
+        assertFalse(t2.isDone(), "second enqueue must wait for the first transaction");
+
+        dispatcher.drainOnce();
+        assertEquals(List.of(), published);
+
+        commitFirst.countDown();
+        t1.get(10, TimeUnit.SECONDS);
+        t2.get(10, TimeUnit.SECONDS);
+
+        dispatcher.drainOnce();
+        assertEquals(List.of("FIRST", "SECOND"), published);
+    }
+
+    @Test
+    void eventsOfOtherChatsAreNotHeldBack() throws Exception {
+        CountDownLatch enqueued = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UUID otherChat = UUID.randomUUID();
+
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> tx.executeWithoutResult(s -> {
+            outbox.enqueue(otherChat, "OTHER", Map.of("chatId", otherChat.toString()));
+            enqueued.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(enqueued.await(10, TimeUnit.SECONDS));
+
+        tx.executeWithoutResult(s -> enqueue("MINE"));
+        dispatcher.drainOnce();
+        assertEquals(List.of("MINE"), published);
+
+        release.countDown();
+        other.get(10, TimeUnit.SECONDS);
+    }
+}
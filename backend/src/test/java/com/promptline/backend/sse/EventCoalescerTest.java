@@ -0,0 +1,101 @@
+package com.promptline.backend.sse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventCoalescerTest {
+
+    private static final long WINDOW_MS = 50;
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    private EventCoalescer coalescer(long windowMs) {
+        SseHub hub = new SseHub();
+        hub.subscribe((id, eventName, jsonPayload) -> delivered.add(id + " " + eventName + " " + jsonPayload));
+        PromptlineSseProperties props = new PromptlineSseProperties();
+        props.setCoalesceWindowMs(windowMs);
+        return new EventCoalescer(hub, props);
+    }
+
+    // waits for `count` events, then a few more windows to catch anything extra
+    private List<String> awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (delivered.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        Thread.sleep(WINDOW_MS * 3);
+        return List.copyOf(delivered);
+    }
+
+    @Test
+    void updatesWithinTheWindowCollapseIntoTheLatest() throws InterruptedException {
+        EventCoalescer c = coalescer(WINDOW_MS);
+        try {
+            c.submit("e1", "plan-1", "PLAN_PROGRESS", "{\"step\":1}", false);
+            c.submit("e2", "plan-1", "PLAN_PROGRESS", "{\"step\":2}", false);
+            c.submit("e3", "plan-1", "PLAN_PROGRESS", "{\"step\":3}", false);
+
+            assertEquals(List.of("e3 PLAN_PROGRESS {\"step\":3}"), awaitDelivered(1));
+        } finally {
+            c.shutdown();
+        }
+    }
+
+    @Test
+    void keysAreCoalescedSeparately() throws InterruptedException {
+        EventCoalescer c = coalescer(WINDOW_MS);
+        try {
+            c.submit("e1", "plan-1", "PLAN_PROGRESS", "1", false);
+            c.submit("e2", "plan-2", "PLAN_PROGRESS", "2", false);
+
+            List<String> events = awaitDelivered(2);
+            assertEquals(2, events.size());
+            assertTrue(events.containsAll(List.of("e1 PLAN_PROGRESS 1", "e2 PLAN_PROGRESS 2")));
+        } finally {
+            c.shutdown();
+        }
+    }
+
+    @Test
+    void terminalEventGoesOutAtOnceAndDropsThePendingUpdate() throws InterruptedException {
+        EventCoalescer c = coalescer(WINDOW_MS);
+        try {
+            c.submit("e1", "plan-1", "PLAN_PROGRESS", "running", false);
+            c.submit("e2", "plan-1", "PLAN_DONE", "done", true);
+
+            assertEquals(List.of("e2 PLAN_DONE done"), List.copyOf(delivered));
+            assertEquals(List.of("e2 PLAN_DONE done"), awaitDelivered(1));
+        } finally {
+            c.shutdown();
+        }
+    }
+
+    @Test
+    void updateAfterTheTerminalEventIsDropped() throws InterruptedException {
+        EventCoalescer c = coalescer(WINDOW_MS);
+        try {
+            c.submit("e1", "plan-1", "PLAN_DONE", "done", true);
+            c.submit("e2", "plan-1", "PLAN_PROGRESS", "running", false);
+
+            assertEquals(List.of("e1 PLAN_DONE done"), awaitDelivered(1));
+        } finally {
+            c.shutdown();
+        }
+    }
+
+    @Test
+    void zeroWindowDeliversEveryUpdateDirectly() {
+        EventCoalescer c = coalescer(0);
+        try {
+            c.submit("e1", "plan-1", "PLAN_PROGRESS", "1", false);
+            c.submit("e2", "plan-1", "PLAN_PROGRESS", "2", false);
+
+            assertEquals(List.of("e1 PLAN_PROGRESS 1", "e2 PLAN_PROGRESS 2"), List.copyOf(delivered));
+        } finally {
+            c.shutdown();
+        }
+    }
+}
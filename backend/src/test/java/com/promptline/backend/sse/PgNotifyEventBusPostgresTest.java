@@ -0,0 +1,144 @@
+package com.promptline.backend.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.promptline.backend.LocalPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Two bus instances (two "nodes") over one Postgres; see {@link LocalPostgres} to run it. */
+@EnabledIfEnvironmentVariable(named = LocalPostgres.URL_ENV, matches = ".+")
+class PgNotifyEventBusPostgresTest {
+
+    private record Received(String id, String eventName, String payload) {}
+
+    private DriverManagerDataSource ds;
+    private JdbcTemplate jdbc;
+    // a channel of its own, so parallel runs and a running app do not interfere
+    private final String channel = "promptline_it_" + UUID.randomUUID().toString().replace("-", "");
+    private final List<PgNotifyEventBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ds = LocalPostgres.dataSource();
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("""
+                create table if not exists sse_event_spill (
+                    id varchar(64) primary key,
+                    event_name varchar(64) not null,
+                    payload text not null,
+                    created_at timestamptz not null
+                )""");
+    }
+
+    @AfterEach
+    void tearDown() {
+        buses.forEach(PgNotifyEventBus::stop);
+    }
+
+    private SseHub node(List<Received> received) {
+        SseHub hub = new SseHub();
+        hub.subscribe((id, eventName, payload) -> received.add(new Received(id, eventName, payload)));
+
+        DataSourceProperties dsProps = new DataSourceProperties();
+        dsProps.setUrl(ds.getUrl());
+        dsProps.setUsername(LocalPostgres.user());
+        dsProps.setPassword(LocalPostgres.password());
+
+        PromptlineSseProperties props = new PromptlineSseProperties();
+        props.getPostgres().setChannel(channel);
+
+        PgNotifyEventBus bus = new PgNotifyEventBus(hub, jdbc, new NamedParameterJdbcTemplate(ds),
+                new TransactionTemplate(new DataSourceTransactionManager(ds)), dsProps, new ObjectMapper(), props);
+        bus.start();
+        buses.add(bus);
+        return hub;
+    }
+
+    // the listener thread LISTENs asynchronously: publish until the other node hears one
+    private static void awaitListening(SseHub from, List<Received> to) throws InterruptedException {
+        for (int i = 0; i < 50 && to.stream().noneMatch(r -> r.eventName().equals("WARMUP")); i++) {
+            from.broadcast("warmup-" + UUID.randomUUID(), "WARMUP", "{}");
+            Thread.sleep(200);
+        }
+        assertTrue(to.stream().anyMatch(r -> r.eventName().equals("WARMUP")), "second node never received");
+    }
+
+    private static List<Received> awaitEvents(List<Received> received, String eventName, int n) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<Received> got = received.stream().filter(r -> r.eventName().equals(eventName)).toList();
+            if (got.size() >= n) return got;
+            Thread.sleep(100);
+        }
+        return received.stream().filter(r -> r.eventName().equals(eventName)).toList();
+    }
+
+    @Test
+    void eventPublishedOnOneNodeReachesTheOther() throws Exception {
+        List<Received> onA = new CopyOnWriteArrayList<>();
+        List<Received> onB = new CopyOnWriteArrayList<>();
+        SseHub a = node(onA);
+        node(onB);
+        awaitListening(a, onB);
+
+        a.broadcast("evt-1", "PLAN_PROPOSED", "{\"planId\":\"p1\"}");
+
+        assertEquals(List.of(new Received("evt-1", "PLAN_PROPOSED", "{\"planId\":\"p1\"}")),
+                awaitEvents(onB, "PLAN_PROPOSED", 1));
+        // local delivery on the publishing node, not echoed back a second time
+        Thread.sleep(500);
+        assertEquals(1, onA.stream().filter(r -> r.eventName().equals("PLAN_PROPOSED")).count());
+    }
+
+    @Test
+    void largePayloadGoesThroughTheSpillTable() throws Exception {
+        List<Received> onB = new CopyOnWriteArrayList<>();
+        SseHub a = node(new CopyOnWriteArrayList<>());
+        node(onB);
+        awaitListening(a, onB);
+
+        String big = "{\"text\":\"" + "x".repeat(20_000) + "\"}";
+        String id = "evt-big-" + UUID.randomUUID();
+        a.broadcast(id, "BIG", big);
+
+        List<Received> got = awaitEvents(onB, "BIG", 1);
+        assertEquals(1, got.size());
+        assertEquals(big, got.get(0).payload());
+        assertEquals(1, jdbc.queryForObject("select count(*) from sse_event_spill where id = ?", Integer.class, id));
+    }
+
+    @Test
+    void repeatedEventIdIsDeliveredOnce() throws Exception {
+        List<Received> onB = new CopyOnWriteArrayList<>();
+        SseHub a = node(new CopyOnWriteArrayList<>());
+        SseHub c = node(new CopyOnWriteArrayList<>());
+        node(onB);
+        awaitListening(a, onB);
+        awaitListening(c, onB);
+
+        // the same outbox event published twice (e.g. redelivered by another dispatcher)
+        a.broadcast("outbox-42", "DUP", "{\"n\":1}");
+        c.broadcast("outbox-42", "DUP", "{\"n\":1}");
+        a.broadcast("outbox-43", "DUP", "{\"n\":2}");
+
+        awaitEvents(onB, "DUP", 2);
+        Thread.sleep(500);
+        assertEquals(List.of("outbox-42", "outbox-43"),
+                onB.stream().filter(r -> r.eventName().equals("DUP")).map(Received::id).toList());
+    }
+}
@@ -0,0 +1,84 @@
+package com.promptline.backend.sse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PgNotifyEventBusTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    private static String entry(int i, String data) {
+        return "{\"id\":\"e" + i + "\",\"name\":\"X\",\"data\":\"" + data + "\"}";
+    }
+
+    @Test
+    void smallBatchIsOneNotification() throws Exception {
+        List<String> messages = PgNotifyEventBus.pack("n1", List.of(entry(1, "a"), entry(2, "b")));
+
+        assertEquals(1, messages.size());
+        JsonNode msg = om.readTree(messages.get(0));
+        assertEquals("n1", msg.path("node").asText());
+        assertEquals("e1", msg.path("events").get(0).path("id").asText());
+        assertEquals("e2", msg.path("events").get(1).path("id").asText());
+    }
+
+    @Test
+    void largeBatchIsSplitUnderTheLimitInOrder() throws Exception {
+        // multi-byte text: the limit is in UTF-8 bytes, not chars
+        String data = "é".repeat(700);
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) entries.add(entry(i, data));
+
+        List<String> messages = PgNotifyEventBus.pack("n1", entries);
+
+        assertTrue(messages.size() > 1);
+        List<String> ids = new ArrayList<>();
+        for (String m : messages) {
+            assertTrue(m.getBytes(StandardCharsets.UTF_8).length <= PgNotifyEventBus.MAX_NOTIFY_BYTES);
+            for (JsonNode e : om.readTree(m).path("events")) ids.add(e.path("id").asText());
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) expected.add("e" + i);
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void emptyBatchSendsNothing() {
+        assertEquals(List.of(), PgNotifyEventBus.pack("n1", List.of()));
+    }
+
+    @Test
+    void spillThresholdMustLeaveRoomForTheEnvelope() {
+        PromptlineSseProperties props = new PromptlineSseProperties();
+        props.getPostgres().setSpillThresholdBytes(PgNotifyEventBus.MAX_NOTIFY_BYTES);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new PgNotifyEventBus(new SseHub(), null, null, null, null, om, props));
+
+        props.getPostgres().setSpillThresholdBytes(PgNotifyEventBus.MAX_NOTIFY_BYTES - PgNotifyEventBus.ENVELOPE_BYTES);
+        new PgNotifyEventBus(new SseHub(), null, null, null, null, om, props);
+    }
+
+    @Test
+    void fullEntryAtTheThresholdFitsOneNotification() {
+        int threshold = PgNotifyEventBus.MAX_NOTIFY_BYTES - PgNotifyEventBus.ENVELOPE_BYTES;
+        String prefix = "{\"id\":\"e1\",\"name\":\"X\",\"data\":\"";
+        String entry = prefix + "x".repeat(threshold - prefix.length() - 2) + "\"}";
+        assertEquals(threshold, entry.length());
+
+        List<String> messages = PgNotifyEventBus.pack(UUID.randomUUID().toString(), List.of(entry));
+
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).getBytes(StandardCharsets.UTF_8).length <= PgNotifyEventBus.MAX_NOTIFY_BYTES);
+    }
+}